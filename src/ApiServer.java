@@ -0,0 +1,51 @@
+import controller.HttpApi;
+import model.AlertEngine;
+import model.BackupService;
+import model.ConnectionManager;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Headless entry point: serves the inventory as a JSON HTTP API instead of starting the desktop UI.
+ * See {@link HttpApi} for the routes.
+ *
+ * @author Jordan A.
+ */
+public class ApiServer {
+    /// Port used unless {@code --port=<n>} or {@code -Dapi.port} says otherwise.
+    private static final int DEFAULT_PORT = 8080;
+
+    /**
+     * Starts the server and keeps running until the JVM is stopped.
+     * {@code --bind=<address>} selects the interface (default {@code 127.0.0.1}, i.e. this machine only),
+     * {@code --port=<n>} the port and {@code --threads=<n>} the number of request threads (default 16).
+     *
+     * @param args command line arguments
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        String bind = System.getProperty("api.bind", "127.0.0.1");
+        int port = Integer.getInteger("api.port", DEFAULT_PORT);
+        int threads = Integer.getInteger("api.threads", 16);
+        for (String arg : args) {
+            if (arg.startsWith("--bind=")) {
+                bind = arg.substring("--bind=".length());
+            } else if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+
+        ConnectionManager.getInstance();    // open the database before accepting requests
+        HttpApi api = new HttpApi(new InetSocketAddress(bind, port), threads);
+        api.start();
+        BackupService.getInstance().startSchedule();
+        AlertEngine.getInstance().start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> api.stop(2), "api-stop"));
+        System.out.println("Inventory API listening on http://" + bind + ":" + api.getPort() + "/api/");
+    }
+}
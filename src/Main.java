@@ -1,10 +1,118 @@
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import model.AlertEngine;
+import model.BackupService;
+import model.ConnectionManager;
+import model.Metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
 public class Main {
+    /// Default file a Flight Recorder recording is dumped to on exit.
+    private static final String DEFAULT_JFR_FILE = "logs/inventory.jfr";
+
+    /// Default file {@code --restore} writes to; the live database is never overwritten implicitly.
+    private static final String DEFAULT_RESTORE_FILE = "data/database.restored.accdb";
+
     /**
      * The main method that launches the JavaFX application.
+     * When started with {@code -Dmetrics.file=<path>}, a metrics snapshot is written there on exit.
+     * When started with {@code --jfr} or {@code --jfr=<path>}, a continuous Flight Recorder
+     * recording keeps the last 30 minutes (at most 64 MB) and is dumped to the file on exit.
+     * {@code --backup} snapshots the database and exits; {@code --restore=<snapshot id or ISO-8601 time>}
+     * restores that snapshot, or the database as of that time, to {@code --restore-to=<path>} and exits.
+     * Otherwise, snapshots are taken in the background every {@code backup.intervalMinutes} minutes.
      *
      * @param args command line arguments
      */
     public static void main(String[] args) {
-        MainApp.launch(MainApp.class, args);
+        String metricsFile = System.getProperty("metrics.file");
+        if (metricsFile != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() ->
+                    Metrics.getInstance().snapshot().writeTo(Path.of(metricsFile)), "metrics-dump"));
+        }
+
+        List<String> appArgs = new ArrayList<>();
+        boolean backup = false;
+        String restore = null;
+        Path restoreTo = Path.of(DEFAULT_RESTORE_FILE);
+        for (String arg : args) {
+            if (arg.equals("--jfr")) {
+                startFlightRecording(Path.of(DEFAULT_JFR_FILE));
+            } else if (arg.startsWith("--jfr=")) {
+                startFlightRecording(Path.of(arg.substring("--jfr=".length())));
+            } else if (arg.equals("--backup")) {
+                backup = true;
+            } else if (arg.startsWith("--restore=")) {
+                restore = arg.substring("--restore=".length());
+            } else if (arg.startsWith("--restore-to=")) {
+                restoreTo = Path.of(arg.substring("--restore-to=".length()));
+            } else {
+                appArgs.add(arg);
+            }
+        }
+        if (backup || restore != null) {
+            runBackupCommand(backup, restore, restoreTo);
+            return;
+        }
+        BackupService.getInstance().startSchedule();
+        AlertEngine.getInstance().start();
+        MainApp.launch(MainApp.class, appArgs.toArray(new String[0]));
     }
-}
\ No newline at end of file
+
+    /**
+     * Runs {@code --backup} and/or {@code --restore} without starting the UI.
+     * The backup reads the file directly, so run it while no workstation is writing.
+     *
+     * @param backup    whether to take a snapshot
+     * @param restore   snapshot id or ISO-8601 instant to restore, or null
+     * @param restoreTo file the restore writes
+     */
+    private static void runBackupCommand(boolean backup, String restore, Path restoreTo) {
+        BackupService backups = BackupService.getInstance();
+        if (backup) {
+            BackupService.Snapshot s = backups.snapshot(ConnectionManager.getDatabasePath());
+            System.out.println("Snapshot " + s.id() + ": " + s.chunks() + " chunks, "
+                    + s.newChunks() + " new (" + s.newBytes() + " bytes stored)");
+        }
+        if (restore != null) {
+            BackupService.Snapshot s;
+            try {
+                s = backups.restoreAsOf(Instant.parse(restore), restoreTo);
+            } catch (DateTimeParseException notATime) {
+                backups.restore(restore, restoreTo);
+                s = null;
+            }
+            System.out.println("Restored " + (s == null ? restore : s.id()) + " to " + restoreTo);
+        }
+    }
+
+    /**
+     * Starts a ring-buffer recording with the low-overhead "default" JFR settings.
+     * The custom inventory events are enabled by default, so they are captured too.
+     *
+     * @param destination file the recording is written to when the JVM exits
+     */
+    private static void startFlightRecording(Path destination) {
+        try {
+            if (destination.getParent() != null) destination.getParent().toFile().mkdirs();
+            Recording recording = new Recording(Configuration.getConfiguration("default"));
+            recording.setName("inventory");
+            recording.setToDisk(true);
+            recording.setMaxAge(Duration.ofMinutes(30));
+            recording.setMaxSize(64L * 1024 * 1024);
+            recording.setDestination(destination);
+            recording.setDumpOnExit(true);
+            recording.start();
+        } catch (IOException | ParseException ex) {
+            throw new RuntimeException("Cannot start flight recording: " + destination, ex);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 import model.User;
+import model.UserContext;
 import java.util.Optional;
 
 /*
@@ -51,6 +52,8 @@ public class MainApp extends Application {
     }
 
     private void showDashboardScreen(User user) throws Exception {
+        UserContext.set(user);  // Permission checks and the audit trail apply to this user from now on
+
         // Load the DashboardView.fxml from resources (ensure it's located under /resources/fxml)
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/dashboard.fxml"));
         Parent root = loader.load();  // Load the FXML file into the root element
@@ -67,6 +70,7 @@ public class MainApp extends Application {
 
     public void logout() throws Exception {
         primaryStage.hide();
+        UserContext.set(null);
         showLoginScreen();
     }
 
@@ -10,17 +10,30 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.Window;
 import model.ColumnData;
+import model.InvalidValueException;
+import model.RowSchema;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
- * @author Abraham A.
+ * Form for a new row, with an editor per column chosen by its type: a check box for yes/no columns,
+ * a text field with a hint of the expected format otherwise. Values are checked against the table's
+ * {@link RowSchema} as they are typed, and Save stays disabled until every one fits its column.
+ * @author Abraham A., Jordan A.
  */
 public class AddRowDialog extends Stage {
 
-    private final Map<String, TextField> inputs = new HashMap<>();
+    /// Style marking a field whose value does not fit its column.
+    private static final String INVALID_STYLE = "-fx-border-color: #d9534f; -fx-border-width: 1.5;";
+
+    /// Current value of each column's editor, in form order.
+    private final Map<String, Supplier<Object>> inputs = new LinkedHashMap<>();
+
+    /// Problem of each column whose value does not fit, in form order.
+    private final Map<String, String> problems = new LinkedHashMap<>();
 
     public AddRowDialog(Window owner,
                         String table,
@@ -31,33 +44,66 @@ public class AddRowDialog extends Stage {
         initModality(Modality.APPLICATION_MODAL);
         setTitle("Add new entry – " + table);
 
+        RowSchema schema = RowSchema.of(table, columns);
+
         GridPane grid = new GridPane();
         grid.setVgap(8);
         grid.setHgap(15);
         grid.setPadding(new Insets(15));
 
+        Button save = new Button("Save");
+        Label problemLabel = new Label();
+        problemLabel.setStyle("-fx-text-fill: #d9534f;");
+        problemLabel.setWrapText(true);
+        problemLabel.setMaxWidth(400);
+
         int r = 0;
         for (ColumnData col : columns) {
             // skip AUTOINCREMENT primary key
             if (col.isPrimaryKey() && col.getType().equalsIgnoreCase("COUNTER"))
                 continue;
 
-            Label lbl = new Label(col.getName() + ":");
+            String name = col.getName();
+            Label lbl = new Label(name + ":");
+            if (schema.kind(name) == RowSchema.Kind.BOOLEAN) {
+                CheckBox cb = new CheckBox();
+                inputs.put(name, cb::isSelected);
+                grid.addRow(r++, lbl, cb);
+                continue;
+            }
+
             TextField tf = new TextField();
             tf.setPrefWidth(240);
+            tf.setPromptText(schema.hint(name));
+            tf.textProperty().addListener((obs, old, text) -> {
+                String problem = schema.problem(name, text.trim());
+                tf.setStyle(problem == null ? "" : INVALID_STYLE);
+                tf.setTooltip(problem == null ? null : new Tooltip(problem));
+                if (problem == null) problems.remove(name);
+                else problems.put(name, problem);
+                problemLabel.setText(problems.isEmpty() ? "" : problems.values().iterator().next());
+                save.setDisable(!problems.isEmpty());
+            });
 
-            inputs.put(col.getName(), tf);
+            inputs.put(name, () -> {
+                String v = tf.getText().trim();
+                return v.isEmpty() ? null : v;
+            });
             grid.addRow(r++, lbl, tf);
         }
+        grid.add(problemLabel, 0, r, 2, 1);
 
-        Button save = new Button("Save");
         save.setDefaultButton(true);
         save.setOnAction(e -> {
-            Map<String, Object> values = new HashMap<>();
-            inputs.forEach((k, tf) -> {
-                String v = tf.getText().trim();
-                values.put(k, v.isEmpty() ? null : v);
-            });
+            Map<String, Object> entered = new LinkedHashMap<>();
+            inputs.forEach((k, input) -> entered.put(k, input.get()));
+            Map<String, Object> values;
+            try {
+                values = schema.convertRow(entered);
+            } catch (InvalidValueException ex) {
+                problemLabel.setText(ex.getMessage());
+                return;
+            }
             handler.save(values);
             close();
         });
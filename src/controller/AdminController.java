@@ -1,14 +1,24 @@
 package controller;
 
+import javafx.animation.PauseTransition;
 import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
-import model.QueryManager;
+import javafx.stage.FileChooser;
+import javafx.util.Duration;
+import model.AccessControl;
+import model.AccessDeniedException;
 import model.User;
+import model.UserImporter;
 import model.UserManager;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -19,17 +29,39 @@ import java.util.Optional;
  */
 public class AdminController {
 
-    @FXML private TableView<Map<String, Object>> usersTable;          // parent TableView
-    @FXML private TableColumn<Map<String, Object>, String> userTable; // username column
-    @FXML private TableColumn<Map<String, Object>, String> roleTable; // role column
+    @FXML private TableView<User> usersTable;          // parent TableView
+    @FXML private TableColumn<User, String> userTable; // username column
+    @FXML private TableColumn<User, String> roleTable; // role column
 
     @FXML private Button addBtn;
     @FXML private Button removeBtn;
+    @FXML private Button importBtn;
 
-    private TableView<Map<String, Object>> tv;   // reference used in handlers
+    @FXML private TextField searchField;         // username prefix
+    @FXML private ChoiceBox<String> roleFilter;  // role, or ALL_ROLES
+    @FXML private Button prevBtn;
+    @FXML private Button nextBtn;
+    @FXML private Label pageLabel;
+
+    @FXML private Tab performanceTab;
+    @FXML private PerformanceController performanceController; // injected from fx:include "performance"
+
+    private TableView<User> tv;   // reference used in handlers
+
+    /// Users shown per page.
+    private static final int PAGE_SIZE = 100;
+
+    /// Role filter entry that shows every role.
+    private static final String ALL_ROLES = "All roles";
+
+    /// Reloads the page once typing in the search field pauses, instead of on every keystroke.
+    private final PauseTransition searchDelay = new PauseTransition(Duration.millis(250));
+
+    /// Position of the current page's first user, and how many users match the filter.
+    private int offset;
+    private int total;
 
     private final UserManager userManager = new UserManager();
-    private final QueryManager queryManager = new QueryManager();
     private User currentUser;
 
     @FXML
@@ -38,22 +70,39 @@ public class AdminController {
         tv = (usersTable != null) ? usersTable : userTable.getTableView();
 
         /* Column cell value factories */
-        userTable.setCellValueFactory(cell -> {
-            Object v = cell.getValue().get("username");
-            return new ReadOnlyStringWrapper(v == null ? "" : v.toString());
-        });
-
-        roleTable.setCellValueFactory(cell -> {
-            Object v = cell.getValue().get("role");
-            return new ReadOnlyStringWrapper(v == null ? "" : v.toString());
-        });
+        userTable.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getName()));
+        roleTable.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getRole()));
 
         /* Button actions */
         addBtn.setOnAction(e -> addUser());
         removeBtn.setOnAction(e -> removeUser());
+        importBtn.setOnAction(e -> importUsers());
+
+        /* Search and paging; any filter change starts again at the first page */
+        roleFilter.getItems().add(ALL_ROLES);
+        roleFilter.getItems().addAll(AccessControl.getInstance().roles());
+        roleFilter.setValue(ALL_ROLES);
+        roleFilter.setOnAction(e -> loadPage(0));
+        searchDelay.setOnFinished(e -> loadPage(0));
+        searchField.textProperty().addListener((obs, o, n) -> searchDelay.playFromStart());
+        searchField.setOnAction(e -> {
+            searchDelay.stop();
+            loadPage(0);
+        });
+        prevBtn.setOnAction(e -> loadPage(Math.max(0, offset - PAGE_SIZE)));
+        nextBtn.setOnAction(e -> loadPage(offset + PAGE_SIZE));
+
+        /* Performance tab only polls metrics while it is selected and the module is on screen */
+        performanceTab.selectedProperty().addListener((obs, was, is) -> {
+            if (is) performanceController.start();
+            else performanceController.stop();
+        });
+        tv.sceneProperty().addListener((obs, o, scene) -> {
+            if (scene == null) performanceController.stop();
+        });
 
         /* Initial load */
-        refreshTable();
+        loadPage(0);
     }
 
     private void addUser() {
@@ -78,7 +127,8 @@ public class AdminController {
         }
 
         /* Prompt for role */
-        ChoiceDialog<String> roleDlg = new ChoiceDialog<>("user", List.of("admin", "user", "guest"));
+        List<String> roles = AccessControl.getInstance().roles();
+        ChoiceDialog<String> roleDlg = new ChoiceDialog<>(roles.contains("user") ? "user" : roles.get(0), roles);
         roleDlg.setTitle("Select user role");
         roleDlg.setHeaderText("Role for " + username.get());
         Optional<String> role = roleDlg.showAndWait();
@@ -87,34 +137,143 @@ public class AdminController {
             return;
         }
 
-        /* Create user and refresh table */
-        userManager.createUser(username.get().trim(), password.get().trim(), role.get());
-        refreshTable();
+        /* Create user and show it if it belongs on this page */
+        User created = new User(username.get().trim(), role.get());
+        userManager.createUser(created.getName(), password.get().trim(), created.getRole());
+        if (matchesFilter(created)) {
+            total++;
+            placeOnPage(created);
+            updatePager();
+        }
     }
 
     private void removeUser() {
-        Map<String, Object> row = tv.getSelectionModel().getSelectedItem();
-        if (row != null) {
-            String username = (String) row.get("username");
-            userManager.deleteUser(username);
-            refreshTable();
+        User selected = tv.getSelectionModel().getSelectedItem();
+        if (selected != null) {
+            userManager.deleteUser(selected.getName());
+            tv.getItems().remove(selected);
+            total--;
+            if (tv.getItems().isEmpty() && total > 0) loadPage(offset);
+            else updatePager();
         }
     }
 
+    /**
+     * Creates the accounts listed in a CSV file chosen by the administrator, in the background,
+     * and reports how many were created, which were skipped and how fast it went.
+     */
+    private void importUsers() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import users");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV: username,password[,role]", "*.csv"));
+        File file = chooser.showOpenDialog(tv.getScene().getWindow());
+        if (file == null) return;
+
+        Task<UserImporter.Result> task = new Task<>() {
+            @Override
+            protected UserImporter.Result call() throws IOException {
+                try (Reader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                    return new UserImporter().importCsv(in);
+                }
+            }
+        };
+        task.setOnSucceeded(e -> {
+            importBtn.setDisable(false);
+            loadPage(0);
+            Alert info = new Alert(Alert.AlertType.INFORMATION, task.getValue().format());
+            info.setTitle("Import users");
+            info.setHeaderText(file.getName());
+            info.showAndWait();
+        });
+        task.setOnFailed(e -> {
+            importBtn.setDisable(false);
+            Alert error = new Alert(Alert.AlertType.ERROR, task.getException().getMessage());
+            error.setTitle("Import users");
+            error.setHeaderText("No account was created");
+            error.showAndWait();
+        });
+
+        importBtn.setDisable(true);
+        pageLabel.setText("Importing " + file.getName() + "...");
+        Thread worker = new Thread(task, "user-import");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
     public void setCurrentUser(User user) {
         this.currentUser = user;
         applyRolePermissions();
     }
 
+    /* no user (e.g. the view loaded before login completed) gets no management rights */
     private void applyRolePermissions() {
-        if (!currentUser.getRole().equalsIgnoreCase("admin")) {
-            addBtn.setDisable(true);
-            removeBtn.setDisable(true);
+        AccessControl access = AccessControl.getInstance();
+        boolean manage = access.isAllowed(currentUser, AccessControl.Action.MANAGE_USERS, null);
+        addBtn.setDisable(!manage);
+        removeBtn.setDisable(!manage);
+        importBtn.setDisable(!manage);
+        performanceTab.setDisable(!access.isAllowed(currentUser, AccessControl.Action.TUNE_PERFORMANCE, null));
+    }
+
+    /**
+     * Shows the page of matching users starting at the given position.
+     */
+    private void loadPage(int start) {
+        UserManager.UserPage page;
+        try {
+            page = userManager.listUsers(searchField.getText(), selectedRole(), start, PAGE_SIZE);
+        } catch (AccessDeniedException ex) {
+            /* only roles that manage users may see who the users are */
+            offset = total = 0;
+            tv.getItems().clear();
+            updatePager();
+            pageLabel.setText("Only administrators can list users");
+            return;
         }
+        if (page.users().isEmpty() && start > 0 && page.total() > 0) {
+            // the last page emptied since it was counted; show the new last page instead
+            page = userManager.listUsers(searchField.getText(), selectedRole(),
+                    (page.total() - 1) / PAGE_SIZE * PAGE_SIZE, PAGE_SIZE);
+        }
+        offset = page.offset();
+        total = page.total();
+        tv.getItems().setAll(page.users());
+        updatePager();
+    }
+
+    /**
+     * Inserts a newly created user in name order if it sorts into the current page; a user sorting onto another
+     * page is only counted, so the page the administrator is looking at does not jump.
+     */
+    private void placeOnPage(User user) {
+        List<User> items = tv.getItems();
+        int i = 0;
+        while (i < items.size() && items.get(i).getName().compareToIgnoreCase(user.getName()) < 0) i++;
+        boolean beforePage = i == 0 && offset > 0;
+        boolean afterPage = i == items.size() && items.size() >= PAGE_SIZE;
+        if (beforePage || afterPage) return;
+        items.add(i, user);
+        if (items.size() > PAGE_SIZE) items.remove(PAGE_SIZE);
+        tv.getSelectionModel().select(user);
+    }
+
+    private boolean matchesFilter(User user) {
+        String prefix = searchField.getText().trim();
+        String role = selectedRole();
+        return user.getName().regionMatches(true, 0, prefix, 0, prefix.length())
+                && (role == null || role.equalsIgnoreCase(user.getRole()));
+    }
+
+    private String selectedRole() {
+        String role = roleFilter.getValue();
+        return role == null || ALL_ROLES.equals(role) ? null : role;
     }
 
-    private void refreshTable() {
-        List<Map<String, Object>> rows = queryManager.selectAll("Users");
-        tv.getItems().setAll(rows);
+    private void updatePager() {
+        int shown = tv.getItems().size();
+        pageLabel.setText(total == 0 ? "No users"
+                : (offset + 1) + "–" + (offset + shown) + " of " + total);
+        prevBtn.setDisable(offset == 0);
+        nextBtn.setDisable(offset + shown >= total);
     }
 }
@@ -0,0 +1,152 @@
+package controller;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+import model.AlertEngine;
+import model.ColumnData;
+import model.MetadataService;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Lists the alert rules and lets an admin add and remove them. Edits run off the FX thread, since each
+ * re-checks every row.
+ * @author Jordan A.
+ */
+public class AlertRulesDialog extends Stage {
+
+    private final TableView<AlertEngine.Rule> rulesTable = new TableView<>();
+    private final ComboBox<String> tableBox = new ComboBox<>();
+    private final ComboBox<String> columnBox = new ComboBox<>();
+    private final ComboBox<AlertEngine.Kind> kindBox = new ComboBox<>();
+    private final TextField thresholdField = new TextField();
+    private final TextField messageField = new TextField();
+    private final Button addBtn = new Button("Add rule");
+    private final Button removeBtn = new Button("Remove selected");
+    private final Label statusLabel = new Label();
+    private final MetadataService metadata = new MetadataService();
+
+    public AlertRulesDialog(Window owner) {
+        initOwner(owner);
+        initModality(Modality.APPLICATION_MODAL);
+        setTitle("Alert rules");
+
+        rulesTable.getColumns().add(column("Table", AlertEngine.Rule::table));
+        rulesTable.getColumns().add(column("Column", AlertEngine.Rule::column));
+        rulesTable.getColumns().add(column("Kind", r -> r.kind().name()));
+        rulesTable.getColumns().add(column("Threshold", r -> String.valueOf(r.threshold())));
+        rulesTable.getColumns().add(column("Message", AlertEngine.Rule::message));
+        rulesTable.setPrefSize(640, 260);
+
+        tableBox.getItems().setAll(metadata.listTables());
+        tableBox.setPromptText("Table");
+        tableBox.setOnAction(e -> columnBox.getItems().setAll(columnNames(tableBox.getValue())));
+        columnBox.setPromptText("Column");
+        kindBox.getItems().setAll(AlertEngine.Kind.values());
+        kindBox.setValue(AlertEngine.Kind.BELOW);
+        thresholdField.setPromptText("Threshold / days");
+        thresholdField.setPrefColumnCount(8);
+        messageField.setPromptText("Message, e.g. Out of stock");
+
+        addBtn.setOnAction(e -> addRule());
+        removeBtn.setOnAction(e -> removeRule());
+        removeBtn.disableProperty().bind(rulesTable.getSelectionModel().selectedItemProperty().isNull());
+
+        HBox form = new HBox(8, tableBox, columnBox, kindBox, thresholdField, messageField, addBtn);
+        HBox actions = new HBox(10, removeBtn, statusLabel);
+        VBox root = new VBox(8, rulesTable, form, actions);
+        root.setPadding(new Insets(10));
+        setScene(new Scene(root));
+
+        reload();
+    }
+
+    private static TableColumn<AlertEngine.Rule, String> column(String title,
+                                                                Function<AlertEngine.Rule, String> value) {
+        TableColumn<AlertEngine.Rule, String> col = new TableColumn<>(title);
+        col.setCellValueFactory(c -> new ReadOnlyStringWrapper(value.apply(c.getValue())));
+        return col;
+    }
+
+    private List<String> columnNames(String table) {
+        if (table == null) return List.of();
+        return metadata.getColumns(table).stream()
+                .filter(c -> !c.isPrimaryKey())
+                .map(ColumnData::getName)
+                .toList();
+    }
+
+    private void addRule() {
+        String table = tableBox.getValue();
+        String column = columnBox.getValue();
+        AlertEngine.Kind kind = kindBox.getValue();
+        double threshold;
+        try {
+            threshold = Double.parseDouble(thresholdField.getText().trim());
+        } catch (NumberFormatException ex) {
+            statusLabel.setText("The threshold must be a number");
+            return;
+        }
+        if (table == null || column == null || kind == null) {
+            statusLabel.setText("Choose a table, a column and a kind");
+            return;
+        }
+        String message = messageField.getText();
+        inBackground("Adding rule...", () -> {
+            AlertEngine.getInstance().addRule(table, column, kind, threshold, message);
+            return "Rule added";
+        });
+    }
+
+    private void removeRule() {
+        AlertEngine.Rule rule = rulesTable.getSelectionModel().getSelectedItem();
+        if (rule == null) return;
+        inBackground("Removing rule...", () -> {
+            AlertEngine.getInstance().removeRule(rule.id());
+            return "Rule removed";
+        });
+    }
+
+    /** Runs an edit, which also re-checks every row, off the FX thread and then shows the rules again. */
+    private void inBackground(String busy, Supplier<String> edit) {
+        addBtn.setDisable(true);
+        statusLabel.setText(busy);
+        new Thread(() -> {
+            String done;
+            try {
+                done = edit.get();
+            } catch (RuntimeException ex) {
+                done = "Failed: " + ex.getMessage();
+            }
+            String status = done;
+            Platform.runLater(() -> {
+                addBtn.setDisable(false);
+                reload();
+                statusLabel.setText(status);
+            });
+        }, "alert-rules").start();
+    }
+
+    private void reload() {
+        try {
+            rulesTable.getItems().setAll(AlertEngine.getInstance().rules());
+        } catch (RuntimeException ex) {
+            statusLabel.setText("Loading rules failed: " + ex.getMessage());
+        }
+    }
+}
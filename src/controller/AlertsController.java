@@ -0,0 +1,126 @@
+package controller;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.fxml.FXML;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextArea;
+import model.AccessControl;
+import model.AlertEngine;
+import model.HazardCompatibility;
+import model.UserContext;
+
+import java.util.List;
+
+/**
+ * Lists the current inventory alerts, such as low stock, and keeps the list up to date while it is shown.
+ * @author Jordan A.
+ */
+public class AlertsController {
+
+    @FXML private TableView<AlertEngine.Alert> alertsTable;
+    @FXML private TableColumn<AlertEngine.Alert, String> tableCol;
+    @FXML private TableColumn<AlertEngine.Alert, String> keyCol;
+    @FXML private TableColumn<AlertEngine.Alert, String> itemCol;
+    @FXML private TableColumn<AlertEngine.Alert, String> alertCol;
+    @FXML private TableColumn<AlertEngine.Alert, String> valueCol;
+    @FXML private Button rescanBtn;
+    @FXML private Button hazardBtn;
+    @FXML private Button rulesBtn;
+    @FXML private Label statusLabel;
+
+    /// Stops the alert updates once the view is closed.
+    private Runnable unsubscribe;
+
+    @FXML
+    public void initialize() {
+        tableCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().table()));
+        keyCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().key()));
+        itemCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().label()));
+        alertCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().rule().message()));
+        valueCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(
+                c.getValue().rule().column() + " = " + c.getValue().value()));
+
+        AlertEngine engine = AlertEngine.getInstance();
+        show(engine.current());
+        unsubscribe = engine.subscribe(alerts -> Platform.runLater(() -> show(alerts)));
+        alertsTable.sceneProperty().addListener((obs, o, scene) -> {
+            if (scene == null && unsubscribe != null) {
+                unsubscribe.run();
+                unsubscribe = null;
+            }
+        });
+        rescanBtn.setOnAction(e -> rescan(engine));
+        hazardBtn.setOnAction(e -> hazardReport());
+
+        /* Only roles allowed to edit the rules see the editor */
+        boolean manage = AccessControl.getInstance().isAllowed(UserContext.get(), AccessControl.Action.MANAGE_ALERTS, null);
+        rulesBtn.setVisible(manage);
+        rulesBtn.setManaged(manage);
+        rulesBtn.setOnAction(e -> new AlertRulesDialog(alertsTable.getScene().getWindow()).showAndWait());
+    }
+
+    /** Scans the inventory for incompatible chemicals stored together, off the FX thread, and shows the report. */
+    private void hazardReport() {
+        hazardBtn.setDisable(true);
+        statusLabel.setText("Checking hazard compatibility...");
+        new Thread(() -> {
+            try {
+                List<HazardCompatibility.Violation> violations = HazardCompatibility.getInstance().scan();
+                Platform.runLater(() -> {
+                    hazardBtn.setDisable(false);
+                    show(alertsTable.getItems());
+                    showHazardReport(violations);
+                });
+            } catch (RuntimeException ex) {
+                Platform.runLater(() -> {
+                    hazardBtn.setDisable(false);
+                    statusLabel.setText("Hazard check failed: " + ex.getMessage());
+                });
+            }
+        }, "hazard-scan").start();
+    }
+
+    private void showHazardReport(List<HazardCompatibility.Violation> violations) {
+        StringBuilder sb = new StringBuilder();
+        violations.forEach(v -> sb.append(v.describe()).append(System.lineSeparator()).append(System.lineSeparator()));
+        Alert info = new Alert(violations.isEmpty() ? Alert.AlertType.INFORMATION : Alert.AlertType.WARNING);
+        info.setTitle("Hazard compatibility");
+        info.setHeaderText(violations.isEmpty() ? "No incompatible chemicals are stored together"
+                : violations.size() + " incompatible combination(s) stored together");
+        if (!violations.isEmpty()) {
+            TextArea text = new TextArea(sb.toString());
+            text.setEditable(false);
+            text.setWrapText(true);
+            text.setPrefSize(640, 360);
+            info.getDialogPane().setContent(text);
+        }
+        info.showAndWait();
+    }
+
+    private void show(List<AlertEngine.Alert> alerts) {
+        alertsTable.getItems().setAll(alerts);
+        statusLabel.setText(alerts.isEmpty() ? "No alerts" : alerts.size() + " alert(s)");
+    }
+
+    /** Reloads the rules and checks every row off the FX thread, e.g. after editing the rules. */
+    private void rescan(AlertEngine engine) {
+        rescanBtn.setDisable(true);
+        statusLabel.setText("Checking all rows...");
+        new Thread(() -> {
+            try {
+                engine.rescan();
+                Platform.runLater(() -> rescanBtn.setDisable(false));
+            } catch (RuntimeException ex) {
+                Platform.runLater(() -> {
+                    rescanBtn.setDisable(false);
+                    statusLabel.setText("Checking alerts failed: " + ex.getMessage());
+                });
+            }
+        }, "alerts-rescan").start();
+    }
+}
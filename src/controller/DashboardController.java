@@ -8,6 +8,7 @@ import javafx.scene.Parent;
 import javafx.scene.control.ToggleButton;
 import javafx.scene.control.ToggleGroup;
 import javafx.scene.layout.BorderPane;
+import model.AlertEngine;
 import model.User;
 
 import java.io.IOException;
@@ -25,10 +26,14 @@ public class DashboardController {
     @FXML private ToggleButton addBtn;
     @FXML private ToggleButton sdsBtn;
     @FXML private ToggleButton adminBtn;
+    @FXML private ToggleButton alertsBtn;
 
     private ToggleGroup sidebarGroup;
     private User loggedInUser;
 
+    /// Stops the alert count updates once the dashboard is closed, e.g. on logout.
+    private Runnable unsubscribe;
+
     public void setLoggedInUser(User user) {
         this.loggedInUser = user;
     }
@@ -39,7 +44,19 @@ public class DashboardController {
         searchBtn.setToggleGroup(sidebarGroup);
         sdsBtn.setToggleGroup(sidebarGroup);
         adminBtn.setToggleGroup(sidebarGroup);
+        alertsBtn.setToggleGroup(sidebarGroup);
         searchBtn.setSelected(true);
+
+        /* Alert count on the sidebar, updated as the engine finds or clears alerts */
+        AlertEngine engine = AlertEngine.getInstance();
+        showAlertCount(engine.current().size());
+        unsubscribe = engine.subscribe(alerts -> Platform.runLater(() -> showAlertCount(alerts.size())));
+        alertsBtn.sceneProperty().addListener((obs, o, scene) -> {
+            if (scene == null) stopAlertCount();
+            else scene.windowProperty().addListener((w, ow, window) -> {
+                if (window == null) stopAlertCount();
+            });
+        });
         Platform.runLater(() -> loadCenterModule("inventory.fxml"));
     }
 
@@ -55,6 +72,23 @@ public class DashboardController {
         loadCenterModule("sds.fxml");
     }
 
+    @FXML
+    private void handleAlerts() {
+        alertsBtn.setSelected(true);
+        loadCenterModule("alerts.fxml");
+    }
+
+    private void stopAlertCount() {
+        if (unsubscribe != null) {
+            unsubscribe.run();
+            unsubscribe = null;
+        }
+    }
+
+    private void showAlertCount(int count) {
+        alertsBtn.setText(count == 0 ? "Alerts" : "Alerts (" + count + ")");
+    }
+
     @FXML
     private void handleUser() {
         adminBtn.setSelected(true);
@@ -75,6 +109,9 @@ public class DashboardController {
             if (ctrl instanceof AdminController inv) {
                 inv.setCurrentUser(loggedInUser);
             }
+            if (ctrl instanceof SDSController sds) {
+                sds.setCurrentUser(loggedInUser);
+            }
             Parent root = searchBtn.getScene().getRoot();
             if (root instanceof BorderPane pane) {
                 pane.setCenter(content);
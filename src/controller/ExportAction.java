@@ -0,0 +1,121 @@
+package controller;
+
+import javafx.concurrent.Task;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.stage.FileChooser;
+import javafx.stage.Window;
+import model.GlobalSearch;
+import model.Query;
+import model.QueryManager;
+import model.TableExporter;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Asks for a target file and exports a query's rows, or a search's hits, to it on a background thread,
+ * reporting progress in a status label. Shared by the Inventory and SDS views.
+ * @author Jordan A.
+ */
+public final class ExportAction {
+
+    private ExportAction() { }
+
+    /**
+     * Shows a save dialog and, if a file is chosen, starts the export.
+     *
+     * @param owner  the window owning the file chooser
+     * @param query  the rows to export, e.g. the current table with its search and sort
+     * @param status receives progress and the outcome
+     * @param button disabled while the export runs
+     */
+    public static void run(Window owner, Query query, Label status, Button button) {
+        run(owner, query.getTable(), status, button, (target, format, task) -> {
+            long total = new QueryManager().count(query);
+            return new TableExporter().export(query, target, format, n -> task.progress(n, total), task::isCancelled);
+        });
+    }
+
+    /**
+     * Shows a save dialog and, if a file is chosen, exports the hits of a search across tables.
+     *
+     * @param owner  the window owning the file chooser
+     * @param hits   the hits as shown
+     * @param status receives progress and the outcome
+     * @param button disabled while the export runs
+     */
+    public static void run(Window owner, List<GlobalSearch.Hit> hits, Label status, Button button) {
+        List<GlobalSearch.Hit> snapshot = List.copyOf(hits);
+        run(owner, "Search results", status, button, (target, format, task) ->
+                new TableExporter().exportHits(snapshot, target, format, n -> task.progress(n, snapshot.size()), task::isCancelled));
+    }
+
+    /**
+     * Runs one export on the worker thread.
+     */
+    @FunctionalInterface
+    private interface Export {
+        long run(Path target, TableExporter.Format format, ExportTask task);
+    }
+
+    /**
+     * The background task, exposing progress reporting to an {@link Export}.
+     */
+    private static final class ExportTask extends Task<Long> {
+        private final Export export;
+        private final Path target;
+        private final TableExporter.Format format;
+
+        ExportTask(Export export, Path target, TableExporter.Format format) {
+            this.export = export;
+            this.target = target;
+            this.format = format;
+        }
+
+        @Override
+        protected Long call() {
+            return export.run(target, format, this);
+        }
+
+        void progress(long written, long total) {
+            updateProgress(written, total);
+            updateMessage("Exporting " + written + " / " + total + " rows...");
+        }
+    }
+
+    private static void run(Window owner, String name, Label status, Button button, Export export) {
+        FileChooser.ExtensionFilter csv  = new FileChooser.ExtensionFilter("CSV (*.csv)", "*.csv");
+        FileChooser.ExtensionFilter xlsx = new FileChooser.ExtensionFilter("Excel workbook (*.xlsx)", "*.xlsx");
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Export \"" + name + "\"");
+        chooser.getExtensionFilters().addAll(csv, xlsx);
+        chooser.setInitialFileName(name.replaceAll("[^A-Za-z0-9 _-]", "_") + ".csv");
+
+        File file = chooser.showSaveDialog(owner);
+        if (file == null) return;
+
+        // honour the chosen filter when the name was typed without an extension
+        String lower = file.getName().toLowerCase();
+        if (!lower.endsWith(".csv") && !lower.endsWith(".xlsx")) {
+            file = new File(file.getPath() + (chooser.getSelectedExtensionFilter() == xlsx ? ".xlsx" : ".csv"));
+        }
+        Path target = file.toPath();
+        ExportTask task = new ExportTask(export, target, TableExporter.Format.of(target));
+        task.messageProperty().addListener((obs, o, msg) -> status.setText(msg));
+        task.setOnSucceeded(e -> {
+            button.setDisable(false);
+            status.setText("Exported " + task.getValue() + " rows to " + target.getFileName());
+        });
+        task.setOnFailed(e -> {
+            button.setDisable(false);
+            status.setText("Export failed: " + task.getException().getMessage());
+        });
+
+        button.setDisable(true);
+        Thread worker = new Thread(task, "export");
+        worker.setDaemon(true);
+        worker.start();
+    }
+}
@@ -0,0 +1,410 @@
+package controller;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import model.AccessDeniedException;
+import model.ChemicalIndex;
+import model.ColumnData;
+import model.HazardConflictException;
+import model.Json;
+import model.LoginThrottledException;
+import model.MetadataService;
+import model.Metrics;
+import model.Query;
+import model.QueryManager;
+import model.ResultStore;
+import model.SessionManager;
+import model.StaleRowException;
+import model.User;
+import model.UserContext;
+import model.UserManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JSON-over-HTTP access to the inventory for clients without a desktop session, such as lab instruments.
+ * Built on the JDK's {@link HttpServer}; requests are handled on a fixed pool of worker threads that share
+ * the application's database connection.
+ * <p>
+ * Routes (all below {@code /api}, all but login require {@code Authorization: Bearer <token>}):
+ * <pre>
+ * POST /api/login                      {"username", "password"} → {"token", "expiresAt", "role"}
+ * POST /api/logout
+ * GET  /api/tables                     table names
+ * GET  /api/tables/{t}/columns         name, type and primary-key flag per column
+ * GET  /api/tables/{t}/rows            ?offset=0&amp;limit=100&amp;sort=col&amp;desc=true&amp;q=text
+ * GET  /api/tables/{t}/rows/{key}      one row
+ * POST /api/tables/{t}/rows            {column: value, ...} → the inserted row
+ * PUT  /api/tables/{t}/rows/{key}      {"values": {...}, "expected": {...}} → the row
+ * GET  /api/chemicals/{cas}            stored totals of a CAS number across all tables and locations
+ * </pre>
+ * Requests run as the token's user, so the model's {@link model.AccessControl} checks apply; a refused
+ * action answers 403. An update whose {@code expected} values no longer match answers 409, like a stale inline edit,
+ * as does a write that would store a chemical with incompatible ones. A value that does not fit its column's type,
+ * such as text in a number column or a CAS number with a wrong check digit, answers 400 without reaching the database.
+ * Logins after too many failures from the same client or for the same username answer 429 with {@code Retry-After}.
+ * The users table is not exposed.
+ *
+ * @author Jordan A.
+ */
+public class HttpApi {
+    /// Rows per page when the client does not ask for a limit.
+    private static final int DEFAULT_LIMIT = 100;
+
+    /// Largest page a client may request.
+    private static final int MAX_LIMIT = 1000;
+
+    /// Largest request body accepted.
+    private static final int MAX_BODY_BYTES = 1024 * 1024;
+
+    /// Holds password hashes; never served.
+    private static final String USERS_TABLE = "Users";
+
+    /**
+     * Error answered with a specific HTTP status.
+     */
+    private static final class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /** A freshly created resource, answered with 201. */
+    private record Created(Object body) { }
+
+    private final HttpServer server;
+    private final ExecutorService workers;
+    private final QueryManager queries = new QueryManager();
+    private final MetadataService metadata = new MetadataService();
+    private final UserManager users = new UserManager();
+    private final SessionManager sessions = SessionManager.getInstance();
+    private final Metrics metrics = Metrics.getInstance();
+
+    /**
+     * Binds the server; call {@link #start()} to begin serving.
+     *
+     * @param address the address and port to listen on; port 0 picks a free port
+     * @param threads number of worker threads
+     * @throws IOException if the address cannot be bound
+     */
+    public HttpApi(InetSocketAddress address, int threads) throws IOException {
+        server = HttpServer.create(address, 0);
+        AtomicInteger n = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "api-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(workers);
+        server.createContext("/api/", this::handle);
+    }
+
+    /**
+     * Starts serving requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits briefly for running ones and shuts the workers down.
+     *
+     * @param delaySeconds how long to wait for running requests
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the bound port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange ex) {
+        long start = System.nanoTime();
+        int status;
+        Object body;
+        try {
+            body = route(ex);
+            status = 200;
+            if (body instanceof Created created) {
+                status = 201;
+                body = created.body();
+            }
+        } catch (ApiException e) {
+            status = e.status;
+            body = Map.of("error", e.getMessage());
+        } catch (AccessDeniedException e) {
+            status = 403;
+            body = Map.of("error", e.getMessage());
+        } catch (StaleRowException | HazardConflictException e) {
+            status = 409;
+            body = Map.of("error", e.getMessage());
+        } catch (LoginThrottledException e) {
+            status = 429;
+            body = Map.of("error", e.getMessage());
+            ex.getResponseHeaders().set("Retry-After",
+                    String.valueOf(Math.max(1, (e.getRetryAfter().toMillis() + 999) / 1000)));
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = Map.of("error", String.valueOf(e.getMessage()));
+        } catch (RuntimeException e) {
+            status = 500;
+            body = Map.of("error", "Internal error");
+            metrics.increment("api.errors");
+        }
+        try {
+            byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            ex.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (IOException e) {
+            metrics.increment("api.disconnects");
+        } finally {
+            ex.close();
+            metrics.increment("api.status." + status);
+            metrics.timer("api.request").recordSince(start);
+        }
+    }
+
+    /**
+     * Dispatches one request by method and path.
+     *
+     * @return the value to answer with as JSON
+     */
+    private Object route(HttpExchange ex) {
+        String method = ex.getRequestMethod();
+        String[] path = ex.getRequestURI().getPath().substring("/api/".length()).split("/");
+
+        if (path.length == 1 && path[0].equals("login")) {
+            requireMethod(method, "POST");
+            return login(ex);
+        }
+        User user = authenticate(ex);
+        return UserContext.runAs(user, () -> route(ex, method, path));
+    }
+
+    /**
+     * Dispatches an authenticated request. Runs as the requesting user, so the model's permission
+     * checks and the audit trail apply to them.
+     */
+    private Object route(HttpExchange ex, String method, String[] path) {
+        if (path.length == 1 && path[0].equals("logout")) {
+            requireMethod(method, "POST");
+            sessions.revoke(bearer(ex));
+            return Map.of("ok", true);
+        }
+        if (path.length == 1 && path[0].equals("tables")) {
+            requireMethod(method, "GET");
+            return metadata.listTables().stream().filter(t -> !t.equals(USERS_TABLE)).toList();
+        }
+        if (path.length == 2 && path[0].equals("chemicals")) {
+            requireMethod(method, "GET");
+            return ChemicalIndex.getInstance().lookup(path[1]).map(HttpApi::chemical)
+                    .orElseThrow(() -> new ApiException(404, "No stored chemical with CAS number " + path[1]));
+        }
+        if (path.length >= 3 && path[0].equals("tables")) {
+            String table = table(path[1]);
+            if (path.length == 3 && path[2].equals("columns")) {
+                requireMethod(method, "GET");
+                return metadata.getColumns(table).stream().map(HttpApi::column).toList();
+            }
+            if (path[2].equals("rows")) {
+                if (path.length == 3) {
+                    if (method.equals("GET")) return page(table, query(ex));
+                    requireMethod(method, "POST");
+                    QueryManager.InsertedRow inserted = queries.insertRow(table, object(readBody(ex), "body"));
+                    if (inserted == null) throw new ApiException(400, "No values given");
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("key", inserted.key());
+                    result.put("row", inserted.row());
+                    return new Created(result);
+                }
+                if (path.length == 4) {
+                    String key = path[3];
+                    if (method.equals("GET")) {
+                        Map<String, Object> row = queries.selectByKey(table, key);
+                        if (row == null) throw new ApiException(404, "No row " + key + " in " + table);
+                        return row;
+                    }
+                    requireMethod(method, "PUT");
+                    Map<String, Object> request = object(readBody(ex), "body");
+                    Map<String, Object> values = object(request.get("values"), "values");
+                    Map<String, Object> expected = request.get("expected") == null
+                            ? null : object(request.get("expected"), "expected");
+                    queries.updateRow(table, values, key, expected);
+                    return queries.selectByKey(table, key);
+                }
+            }
+        }
+        throw new ApiException(404, "No such resource");
+    }
+
+    private Object login(HttpExchange ex) {
+        Map<String, Object> body = object(readBody(ex), "body");
+        Object username = body.get("username");
+        Object password = body.get("password");
+        if (!(username instanceof String u) || !(password instanceof String p)) {
+            throw new ApiException(400, "username and password are required");
+        }
+        User user = users.verifyLogin(u, p, ex.getRemoteAddress().getAddress().getHostAddress());
+        if (user == null) throw new ApiException(401, "Invalid username or password");
+        SessionManager.Session session = sessions.issue(user);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("token", session.token());
+        result.put("expiresAt", session.expiresAt());
+        result.put("role", user.getRole());
+        return result;
+    }
+
+    /**
+     * Answers one page of a table, optionally filtered by the same text search as the desktop views.
+     */
+    private Map<String, Object> page(String table, Map<String, String> params) {
+        int offset = intParam(params, "offset", 0);
+        int limit = Math.min(intParam(params, "limit", DEFAULT_LIMIT), MAX_LIMIT);
+        if (offset < 0 || limit <= 0) throw new ApiException(400, "offset must be >= 0 and limit > 0");
+
+        Query query = Query.from(table);
+        String text = params.get("q");
+        if (text != null && !text.isBlank()) {
+            Optional<Query.Condition> match = queries.textMatch(table, text);
+            if (match.isEmpty()) return pageResult(0, offset, limit, List.of());
+            query.where(match.get());
+        }
+        String sort = params.get("sort");
+        if (sort != null) query.orderBy(sort, !"true".equalsIgnoreCase(params.get("desc")));
+        int total = queries.count(query);      // also reports the query, filter and sort, to the index advisor
+        ResultStore rows = queries.select(query.limit(limit).offset(offset), false);
+        return pageResult(total, offset, limit, rows.toMaps());
+    }
+
+    private static Map<String, Object> pageResult(int total, int offset, int limit, List<Map<String, Object>> rows) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("total", total);
+        result.put("offset", offset);
+        result.put("limit", limit);
+        result.put("rows", rows);
+        return result;
+    }
+
+    private static Map<String, Object> column(ColumnData c) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("name", c.getName());
+        m.put("type", c.getType());
+        m.put("primaryKey", c.isPrimaryKey());
+        return m;
+    }
+
+    private static Map<String, Object> chemical(ChemicalIndex.Totals t) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("cas", t.cas());
+        m.put("names", t.names());
+        m.put("total", stored(t.total()));
+        m.put("locations", t.locations().stream().map(HttpApi::stored).toList());
+        return m;
+    }
+
+    private static Map<String, Object> stored(ChemicalIndex.LocationTotal t) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("location", t.location());
+        m.put("rows", t.rows());
+        m.put("containers", t.containers());
+        m.put("grams", t.grams());
+        m.put("millilitres", t.millilitres());
+        return m;
+    }
+
+    /** Resolves a table name from the path, refusing unknown tables and the users table. */
+    private String table(String name) {
+        if (name.equals(USERS_TABLE) || !metadata.hasTable(name)) {
+            throw new ApiException(404, "No table " + name);
+        }
+        return name;
+    }
+
+    private User authenticate(HttpExchange ex) {
+        return sessions.resolve(bearer(ex))
+                .orElseThrow(() -> new ApiException(401, "Missing or expired token"));
+    }
+
+    private static String bearer(HttpExchange ex) {
+        String header = ex.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.regionMatches(true, 0, "Bearer ", 0, 7)) return null;
+        return header.substring(7).trim();
+    }
+
+    private static void requireMethod(String method, String allowed) {
+        if (!method.equals(allowed)) throw new ApiException(405, "Use " + allowed);
+    }
+
+    private static Object readBody(HttpExchange ex) {
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) throw new ApiException(413, "Request body too large");
+            return Json.parse(new String(bytes, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new ApiException(400, "Cannot read request body");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(Object value, String what) {
+        if (!(value instanceof Map<?, ?>)) throw new ApiException(400, what + " must be a JSON object");
+        return (Map<String, Object>) value;
+    }
+
+    private static Map<String, String> query(HttpExchange ex) {
+        Map<String, String> params = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String v = params.get(name);
+        if (v == null || v.isEmpty()) return defaultValue;
+        try {
+            return Integer.parseInt(v);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, name + " must be a whole number");
+        }
+    }
+}
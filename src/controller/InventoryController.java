@@ -1,17 +1,21 @@
 package controller;
 
-import javafx.beans.property.SimpleStringProperty;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.TextFieldTableCell;
+import javafx.util.Duration;
 import model.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -30,14 +34,36 @@ public class InventoryController {
     @FXML private Label statusBar;
     @FXML private ToggleButton toggleBtn;
     @FXML private Button searchButton;
+    @FXML private Button globalSearchBtn;
     @FXML private Button casBttn;
     @FXML private Button adminBttn;
     @FXML private Button tableBttn;
     @FXML private Button addRowBtn;
+    @FXML private Button exportBtn;
 
     private User currentUser;
     private String currentTableName;
-    private final ObservableList<ObservableList<String>> fullData = FXCollections.observableArrayList();
+    private LazyRowList fullData = new LazyRowList(new ResultStore(List.of()));
+    private SearchIndex searchIndex = new SearchIndex(fullData.getStore());
+    private int pkIndex;
+
+    /// Stops the change feed for the previously loaded table.
+    private Runnable unsubscribe;
+
+    /// Filters the loaded rows once typing pauses, instead of on every keystroke.
+    private final PauseTransition searchDelay = new PauseTransition(Duration.millis(250));
+
+    /// Set while the controller itself changes items or sort order, so the sort policy does not re-query.
+    private boolean applyingSort;
+
+    /// Global search stops after this many hits.
+    private static final int GLOBAL_SEARCH_LIMIT = 500;
+
+    private final GlobalSearch globalSearch = new GlobalSearch();
+    private GlobalSearch.Search runningSearch;
+    private int searchGeneration;                 // ignores late batches from a replaced search
+    private final ObservableList<ObservableList<String>> globalRows = FXCollections.observableArrayList();
+    private final List<GlobalSearch.Hit> globalHits = new ArrayList<>();   // parallel to globalRows
 
     private final MetadataService metadata = new MetadataService();
     private final QueryManager    queries  = new QueryManager();
@@ -72,12 +98,34 @@ public class InventoryController {
         }
 
 
+        searchDelay.setOnFinished(evt -> filterLoaded());
+        searchField.textProperty().addListener((obs, o, n) -> searchDelay.playFromStart());
         searchField.setOnAction(evt -> doSearch());
         searchButton.setOnAction(evt -> doSearch());
         if (toggleBtn != null) toggleBtn.setOnAction(evt -> {
             if (!searchField.getText().trim().isEmpty()) doSearch();
         });
 
+        if (globalSearchBtn != null) globalSearchBtn.setOnAction(evt -> doGlobalSearch());
+        if (exportBtn != null) exportBtn.setOnAction(evt -> exportCurrentView());
+
+        dataTable.setSortPolicy(tv -> {
+            if (currentTableName == null) return TableView.DEFAULT_SORT_POLICY.call(tv);   // global search results
+            if (!applyingSort) showCurrentView();
+            return true;
+        });
+
+        dataTable.setRowFactory(tv -> {
+            TableRow<ObservableList<String>> row = new TableRow<>();
+            row.setOnMouseClicked(ev -> {
+                if (ev.getClickCount() == 2 && !row.isEmpty() && dataTable.getItems() == globalRows) {
+                    GlobalSearch.Hit hit = globalHits.get(row.getIndex());
+                    new RowDetailsDialog(dataTable.getScene().getWindow(), hit.table(), hit.row()).showAndWait();
+                }
+            });
+            return row;
+        });
+
         if (casBttn != null) casBttn.setOnAction(evt -> promptCas());
 
         if (addRowBtn != null) {
@@ -90,32 +138,35 @@ public class InventoryController {
     }
 
     private void updateInteractionControls(boolean enabled) {
-        if (searchField != null)      searchField.setDisable(!enabled);
+        // searchField stays enabled: "Search All Tables" works without a selected table
         if (searchButton != null)     searchButton.setDisable(!enabled);
-        if (addRowBtn != null && isAdmin())        addRowBtn.setDisable(!enabled);
+        if (addRowBtn != null && can(AccessControl.Action.INSERT)) addRowBtn.setDisable(!enabled);
     }
 
     private void loadTable(String tableName) {
         currentTableName = tableName;
+        if (runningSearch != null) runningSearch.cancel();
+        applyingSort = true;
         try {
+            dataTable.getSortOrder().clear();
             dataTable.getColumns().clear();
-            fullData.clear();
 
             List<ColumnData> meta  = metadata.getColumns(tableName);
             List<String>     names = meta.stream().map(ColumnData::getName).collect(Collectors.toList());
 
-            List<Map<String,Object>> rows = queries.selectAll(tableName);
-            for (Map<String,Object> m : rows) {
-                ObservableList<String> r = FXCollections.observableArrayList();
-                for (String c : names) r.add(Objects.toString(m.get(c), ""));
-                fullData.add(r);
-            }
+            fullData = new LazyRowList(queries.selectAllRows(tableName));
+            searchIndex = new SearchIndex(fullData.getStore(), meta);
+            pkIndex = Math.max(0, meta.stream().map(ColumnData::isPrimaryKey).toList().indexOf(true));
+
+            if (unsubscribe != null) unsubscribe.run();
+            unsubscribe = ChangeFeed.getInstance().subscribe(tableName,
+                    changes -> Platform.runLater(() -> applyRemoteChanges(tableName, changes)));
 
             for (int i = 0; i < names.size(); i++) {
                 final int idx = i;
                 final String colName = names.get(i);
                 TableColumn<ObservableList<String>, String> col = new TableColumn<>(colName);
-                col.setCellValueFactory(cd -> new SimpleStringProperty(cd.getValue().get(idx)));
+                col.setCellValueFactory(StoreRow.valueFactory(idx));
 
                 ColumnData cMeta = meta.get(i);
                 if (cMeta.isPrimaryKey() && "COUNTER".equalsIgnoreCase(cMeta.getType())) {
@@ -123,57 +174,235 @@ public class InventoryController {
                     col.setPrefWidth(0);
                 }
 
-                if (isAdmin()) {
+                if (can(AccessControl.Action.UPDATE)) {
                     col.setEditable(true);
                     col.setCellFactory(TextFieldTableCell.forTableColumn());
-                    col.setOnEditCommit(ev -> {
-                        ObservableList<String> row = ev.getRowValue();
-                        if (!ev.getNewValue().equals(ev.getOldValue())) {
-                            queries.updateRow(tableName, Map.of(colName, ev.getNewValue()), row.get(0));
-                            row.set(idx, ev.getNewValue());
-                            statusBar.setText("Updated " + colName);
-                        }
-                    });
-                    addRowBtn.setDisable(false);
+                    col.setOnEditCommit(ev ->
+                            commitEdit(tableName, ev.getRowValue(), idx, colName, ev.getOldValue(), ev.getNewValue()));
                 }
                 dataTable.getColumns().add(col);
             }
 
             dataTable.setItems(fullData);
-            dataTable.setEditable(isAdmin());
+            dataTable.setEditable(can(AccessControl.Action.UPDATE));
+            if (addRowBtn != null) addRowBtn.setDisable(!can(AccessControl.Action.INSERT));
             statusBar.setText("Loaded \"" + tableName + "\" (" + fullData.size() + " rows)");
 
         } catch (Exception e) {
             statusBar.setText("Error loading table \"" + tableName + "\": " + e.getMessage());
+        } finally {
+            applyingSort = false;
         }
     }
 
-    private void doSearch() {
+    /**
+     * Shows the current table filtered by the search field and ordered by the clicked column headers.
+     * Sorting is pushed down to SQL ORDER BY, so columns sort by their database type (numbers numerically),
+     * and the sorted rows are read page by page as they scroll into view.
+     * Without a sort order the in-memory rows and search index are used.
+     */
+    private void showCurrentView() {
+        String q = searchField.getText().trim();
+        if (dataTable.getSortOrder().isEmpty()) {
+            filterLoaded();
+            return;
+        }
+
+        Optional<Query> query = currentQuery();
+        if (query.isEmpty()) {
+            setItems(new LazyRowList(new ResultStore(fullData.getStore().getColumns())));
+            statusBar.setText("0 rows match \"" + q + "\"");
+            return;
+        }
+
+        try {
+            LazyRowList sorted = new LazyRowList(new PagedResultStore(queries, query.get()));
+            setItems(sorted);
+            statusBar.setText((q.isEmpty() ? sorted.size() + " rows" : sorted.size() + " rows match \"" + q + "\"")
+                    + ", sorted by " + dataTable.getSortOrder().get(0).getText());
+        } catch (Exception e) {
+            statusBar.setText("Sort error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Describes what the grid shows as a query: the current table, the search text matched against
+     * its text columns, and the clicked sort order.
+     *
+     * @return the query, or empty if the search text cannot match any row
+     */
+    private Optional<Query> currentQuery() {
+        Query query = Query.from(currentTableName);
+        String q = searchField.getText().trim();
+        if (!q.isEmpty()) {
+            Optional<Query.Condition> match = queries.textMatch(currentTableName, q);
+            if (match.isEmpty()) return Optional.empty();
+            query.where(match.get());
+        }
+        for (TableColumn<ObservableList<String>, ?> col : dataTable.getSortOrder()) {
+            query.orderBy(col.getText(), col.getSortType() == TableColumn.SortType.ASCENDING);
+        }
+        return Optional.of(query);
+    }
+
+    /** Exports the current table, search and sort order, or the hits of a search across all tables, to CSV or XLSX. */
+    private void exportCurrentView() {
+        if (currentTableName == null && dataTable.getItems() == globalRows && !globalHits.isEmpty()) {
+            ExportAction.run(dataTable.getScene().getWindow(), globalHits, statusBar, exportBtn);
+            return;
+        }
+        if (currentTableName == null) {
+            statusBar.setText("Select a table to export");
+            return;
+        }
+        Optional<Query> query = currentQuery();
+        if (query.isEmpty()) {
+            statusBar.setText("Nothing to export: no rows match the search");
+            return;
+        }
+        ExportAction.run(dataTable.getScene().getWindow(), query.get(), statusBar, exportBtn);
+    }
+
+    /** Replaces the table's items without triggering another sort. */
+    private void setItems(ObservableList<ObservableList<String>> items) {
+        applyingSort = true;
+        try {
+            dataTable.setItems(items);
+        } finally {
+            applyingSort = false;
+        }
+    }
+
+    /**
+     * Writes an inline edit, checking that the cell still holds the value it was edited from.
+     * A value that does not fit the column's type is refused before anything is sent to the database.
+     * If another workstation changed it first, the row is re-read and shown as it is now.
+     */
+    private void commitEdit(String tableName, ObservableList<String> row, int column, String colName,
+                            String oldValue, String entered) {
+        if (Objects.equals(entered, oldValue)) return;
+        Object typed;
+        try {
+            typed = RowSchema.of(tableName, metadata.getColumns(tableName)).convert(colName, entered);
+        } catch (InvalidValueException ex) {
+            dataTable.refresh();            // the cell shows its stored value again
+            statusBar.setText(ex.getMessage());
+            return;
+        }
+        String newValue = typed == null ? entered : typed.toString();
+        String pkValue = row.get(pkIndex);
+        String expected = row instanceof StoreRow r ? r.getStore().get(r.getStoreIndex(), column) : oldValue;
+        try {
+            queries.updateRow(tableName, Collections.singletonMap(colName, typed), pkValue,
+                    Collections.singletonMap(colName, expected));
+        } catch (HazardConflictException ex) {
+            dataTable.refresh();            // the cell shows its stored value again
+            statusBar.setText(ex.getMessage());
+            return;
+        } catch (StaleRowException ex) {
+            Map<String, Object> current = queries.selectByKey(tableName, pkValue);
+            if (current != null) {
+                if (row instanceof StoreRow r) {
+                    r.getStore().setRow(r.getStoreIndex(), current);
+                    r.reload();
+                }
+                applyLoadedRow(pkValue, current);
+            }
+            dataTable.refresh();
+            statusBar.setText(ex.getMessage());
+            return;
+        }
+        row.set(column, newValue);
+        if (row instanceof StoreRow r && r.getStore() == fullData.getStore()) {
+            searchIndex.refresh(r.getStoreIndex());
+        } else {
+            applyLoadedRow(pkValue, Map.of(colName, newValue));
+        }
+        statusBar.setText("Updated " + colName);
+    }
+
+    /**
+     * Shows rows that other workstations changed, as delivered by the {@link ChangeFeed}.
+     */
+    private void applyRemoteChanges(String tableName, List<ChangeFeed.Change> changes) {
+        if (!tableName.equals(currentTableName)) return;
+        int applied = 0;
+        for (ChangeFeed.Change c : changes) {
+            if (c.row() == null) continue;
+            if (!applyLoadedRow(c.key(), c.row())) appendLoadedRow(c.row());
+            applied++;
+        }
+        if (applied > 0) statusBar.setText(applied + " row(s) changed on another workstation");
+    }
+
+    /**
+     * Copies new values for one row into the loaded rows, keeping the search index and any
+     * view of the loaded rows current.
+     *
+     * @return false if the row is not loaded
+     */
+    private boolean applyLoadedRow(String pkValue, Map<String, Object> values) {
+        ResultStore store = fullData.getStore();
+        int r = store.indexOf(pkIndex, pkValue);
+        if (r < 0) return false;
+        store.setRow(r, values);
+        searchIndex.refresh(r);
+        fullData.refresh(r);
+        if (dataTable.getItems() instanceof LazyRowList shown && shown != fullData && shown.getStore() == store) {
+            shown.refresh(r);
+        }
+        return true;
+    }
+
+    /**
+     * Adds a new row to the loaded rows and the search index without reloading the table,
+     * then re-applies the current search or sort so the row shows up where it belongs.
+     */
+    private void appendLoadedRow(Map<String, Object> values) {
+        ResultStore store = fullData.getStore();
+        int r = store.add(new String[store.columnCount()]);
+        store.setRow(r, values);
+        searchIndex.catchUp();
+        fullData.rowsAppended(r);
+        if (dataTable.getItems() != fullData) filterLoaded();
+    }
+
+    /**
+     * Search-as-you-type over the rows already loaded. Runs after typing pauses;
+     * a query that extends the previous one only re-checks the previous matches.
+     */
+    private void filterLoaded() {
         if (currentTableName == null) return;
+        if (!dataTable.getSortOrder().isEmpty()) {
+            showCurrentView();
+            return;
+        }
         String q = searchField.getText().trim();
         if (q.isEmpty()) {
-            dataTable.setItems(fullData);
+            setItems(fullData);
             statusBar.setText("Showing all rows");
             return;
         }
+        int[] hits = searchIndex.filter(q);
+        setItems(new LazyRowList(fullData.getStore(), hits));
+        statusBar.setText(hits.length + " rows match \"" + q + "\"");
+    }
+
+    private void doSearch() {
+        if (currentTableName == null) return;
+        searchDelay.stop();
+        String q = searchField.getText().trim();
+        if (q.isEmpty() || !dataTable.getSortOrder().isEmpty()) {
+            filterLoaded();
+            return;
+        }
 
         try {
             if (toggleBtn != null && toggleBtn.isSelected()) {
-                FilteredList<ObservableList<String>> fl = new FilteredList<>(fullData,
-                        r -> r.stream().anyMatch(c -> c.toLowerCase().contains(q.toLowerCase())));
-                dataTable.setItems(fl);
-                statusBar.setText(fl.size() + " rows match \"" + q + "\"");
+                filterLoaded();
             } else {
-                List<Map<String,Object>> matches = queries.search(currentTableName, q);
-                List<String> cols = metadata.getColumns(currentTableName).stream()
-                        .map(ColumnData::getName).collect(Collectors.toList());
-                ObservableList<ObservableList<String>> data = FXCollections.observableArrayList();
-                for (Map<String,Object> m : matches) {
-                    ObservableList<String> r = FXCollections.observableArrayList();
-                    for (String c : cols) r.add(Objects.toString(m.get(c), ""));
-                    data.add(r);
-                }
-                dataTable.setItems(data);
+                LazyRowList data = new LazyRowList(queries.searchRows(currentTableName, q));
+                setItems(data);
                 statusBar.setText(data.size() + " rows found");
             }
         } catch (Exception e) {
@@ -181,6 +410,56 @@ public class InventoryController {
         }
     }
 
+    /**
+     * Searches every inventory table in parallel. Hits stream into the grid as each table answers,
+     * tagged with their table; double-clicking a hit shows the full row.
+     */
+    private void doGlobalSearch() {
+        String q = searchField.getText().trim();
+        if (q.isEmpty()) return;
+        searchDelay.stop();
+        if (runningSearch != null) runningSearch.cancel();
+
+        categoriesList.getSelectionModel().clearSelection();
+        currentTableName = null;
+        globalRows.clear();
+        globalHits.clear();
+
+        TableColumn<ObservableList<String>, String> tableCol = new TableColumn<>("Table");
+        tableCol.setCellValueFactory(StoreRow.valueFactory(0));
+        TableColumn<ObservableList<String>, String> matchCol = new TableColumn<>("Entry");
+        matchCol.setCellValueFactory(StoreRow.valueFactory(1));
+        matchCol.setPrefWidth(700);
+        dataTable.getColumns().setAll(List.of(tableCol, matchCol));
+        dataTable.setEditable(false);
+        dataTable.setItems(globalRows);
+        statusBar.setText("Searching all tables for \"" + q + "\"...");
+
+        int generation = ++searchGeneration;
+        runningSearch = globalSearch.start(new ArrayList<>(categoriesList.getItems()), q, GLOBAL_SEARCH_LIMIT,
+                hits -> Platform.runLater(() -> {
+                    if (generation != searchGeneration) return;
+                    List<ObservableList<String>> rows = new ArrayList<>(hits.size());
+                    for (GlobalSearch.Hit h : hits) rows.add(FXCollections.observableArrayList(h.table(), summarize(h.row())));
+                    globalHits.addAll(hits);
+                    globalRows.addAll(rows);
+                    statusBar.setText(globalRows.size() + " matches so far...");
+                }),
+                total -> Platform.runLater(() -> {
+                    if (generation != searchGeneration) return;
+                    statusBar.setText(total + " matches for \"" + q + "\" across all tables"
+                            + (total >= GLOBAL_SEARCH_LIMIT ? " (limit reached)" : ""));
+                }));
+    }
+
+    /** One-line "column: value; ..." rendering of a row, skipping empty values. */
+    private static String summarize(Map<String, Object> row) {
+        return row.entrySet().stream()
+                .filter(e -> e.getValue() != null && !e.getValue().toString().isBlank())
+                .map(e -> e.getKey() + ": " + e.getValue())
+                .collect(Collectors.joining("; "));
+    }
+
     private void promptCas() {
         TextInputDialog d = new TextInputDialog();
         d.setTitle("Lookup by CAS");
@@ -195,12 +474,12 @@ public class InventoryController {
     }
 
     private void applyRolePermissions() {
+        boolean manage = AccessControl.getInstance().isAllowed(currentUser, AccessControl.Action.MANAGE_USERS, null);
         if (adminBttn != null) {
-            adminBttn.setVisible(isAdmin());
-            adminBttn.setManaged(isAdmin());
+            adminBttn.setVisible(manage);
+            adminBttn.setManaged(manage);
         }
-        if (dataTable != null) dataTable.setEditable(isAdmin());
-        // if (addRowBtn != null)  addRowBtn.setDisable(!isAdmin());
+        if (dataTable != null) dataTable.setEditable(can(AccessControl.Action.UPDATE));
     }
 
     public void setCurrentUser(User user) {
@@ -208,16 +487,33 @@ public class InventoryController {
         applyRolePermissions();
     }
 
-    private boolean isAdmin() {
-        return currentUser != null && "admin".equalsIgnoreCase(currentUser.getRole());
+    /* whether the current user's role allows the action on the open table */
+    private boolean can(AccessControl.Action action) {
+        return AccessControl.getInstance().isAllowed(currentUser, action, currentTableName);
     }
 
     private void showAddDialog() {
         if (currentTableName == null) return;
         List<ColumnData> cols = metadata.getColumns(currentTableName);
         new AddRowDialog(dataTable.getScene().getWindow(), currentTableName, cols, v -> {
-            queries.insertRow(currentTableName, v);
-            loadTable(currentTableName);
+            QueryManager.InsertedRow inserted;
+            try {
+                inserted = queries.insertRow(currentTableName, v);
+            } catch (HazardConflictException ex) {
+                Alert alert = new Alert(Alert.AlertType.WARNING, ex.getMessage());
+                alert.setTitle("Incompatible storage");
+                alert.setHeaderText("Row not added");
+                alert.showAndWait();
+                statusBar.setText(ex.getMessage());
+                return;
+            }
+            if (inserted == null) return;
+            if (inserted.row() == null) {
+                loadTable(currentTableName);     // key not reported by the driver; fall back to a reload
+                return;
+            }
+            appendLoadedRow(inserted.row());
+            statusBar.setText("Added row " + inserted.key() + " to \"" + currentTableName + "\"");
         }).showAndWait();
     }
 }
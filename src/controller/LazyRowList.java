@@ -0,0 +1,89 @@
+package controller;
+
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
+import model.ResultStore;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * TableView item list backed by a {@link ResultStore}, optionally restricted to a subset of its rows.
+ * Row objects are only created when the table asks for them, i.e. for the rows on screen,
+ * and the most recently used ones are kept so scrolling back reuses their cell properties.
+ * @author Jordan A.
+ */
+public class LazyRowList extends ObservableListBase<ObservableList<String>> {
+
+    /// Number of materialized rows kept; comfortably more than fit on screen.
+    private static final int CACHE_SIZE = 256;
+
+    private final ResultStore store;
+
+    /// Store indices shown by this list, or null to show every row.
+    private final int[] view;
+
+    /// Recently materialized rows in access order, keyed by store index.
+    private final Map<Integer, StoreRow> materialized = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, StoreRow> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    public LazyRowList(ResultStore store) {
+        this(store, null);
+    }
+
+    /**
+     * Creates a list showing only the given rows of the store, in the given order.
+     *
+     * @param store the backing rows
+     * @param view  store indices to show, or null for all rows
+     */
+    public LazyRowList(ResultStore store, int[] view) {
+        this.store = store;
+        this.view = view;
+    }
+
+    public ResultStore getStore() {
+        return store;
+    }
+
+    /**
+     * Updates the cells of a row whose values were changed in the store directly,
+     * if that row is currently materialized.
+     *
+     * @param storeIndex the row's index in the store
+     */
+    public void refresh(int storeIndex) {
+        StoreRow row = materialized.get(storeIndex);
+        if (row != null) row.reload();
+    }
+
+    /**
+     * Shows rows appended to the store after this list was created.
+     * Only lists over the whole store grow; a filtered list keeps its fixed set of rows.
+     *
+     * @param from the store index of the first appended row
+     */
+    public void rowsAppended(int from) {
+        if (view != null || from >= store.size()) return;
+        beginChange();
+        nextAdd(from, store.size());
+        endChange();
+    }
+
+    @Override
+    public ObservableList<String> get(int index) {
+        Objects.checkIndex(index, size());
+        int row = view == null ? index : view[index];
+        return materialized.computeIfAbsent(row, i -> new StoreRow(store, i));
+    }
+
+    @Override
+    public int size() {
+        return view == null ? store.size() : view.length;
+    }
+}
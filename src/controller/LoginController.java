@@ -7,6 +7,7 @@ import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
 import javafx.scene.input.KeyCode;
 import javafx.stage.Stage;
+import model.LoginThrottledException;
 import model.User;
 import model.UserManager;
 
@@ -59,7 +60,18 @@ public class LoginController {
         String u = usernameField.getText();
         String p = passwordField.getText();
 
-        User user = userManager.verifyLogin(u, p);
+        User user;
+        try {
+            user = userManager.verifyLogin(u, p);
+        } catch (LoginThrottledException e) {
+            Alert alert = new Alert(Alert.AlertType.WARNING);
+            alert.setTitle("Login Failed");
+            alert.setHeaderText(null);
+            alert.setContentText(e.getMessage());
+            alert.showAndWait();
+            passwordField.clear();
+            return;
+        }
         if (user != null) {
             authenticatedUser = user;
             //closes login window and return control to MainApp
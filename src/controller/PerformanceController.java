@@ -0,0 +1,203 @@
+package controller;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.fxml.FXML;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextArea;
+import javafx.util.Duration;
+import model.ConnectionManager;
+import model.IndexAdvisor;
+import model.Metrics;
+
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PerformanceController backs the Performance tab of the admin module.
+ * It polls the {@link Metrics} registry on a two-second timer while the tab is showing
+ * and displays latencies, cache hit ratios, connection use, heap use and the slowest recent statements.
+ * It also offers the {@link IndexAdvisor}'s recommendations and creates the chosen indexes.
+ * @author Jordan A.
+ */
+public class PerformanceController {
+
+    @FXML private Label heapLabel;
+    @FXML private Label poolLabel;
+    @FXML private Label statementsLabel;
+    @FXML private Label cacheLabel;
+    @FXML private Button adviseIndexesBtn;
+    @FXML private Label advisorLabel;
+
+    @FXML private TableView<Metrics.TimerSnapshot> timersTable;
+    @FXML private TableColumn<Metrics.TimerSnapshot, String> timerNameCol;
+    @FXML private TableColumn<Metrics.TimerSnapshot, Number> countCol;
+    @FXML private TableColumn<Metrics.TimerSnapshot, Number> p50Col;
+    @FXML private TableColumn<Metrics.TimerSnapshot, Number> p95Col;
+    @FXML private TableColumn<Metrics.TimerSnapshot, Number> p99Col;
+    @FXML private TableColumn<Metrics.TimerSnapshot, Number> maxCol;
+
+    @FXML private TableView<Metrics.StatementSample> slowTable;
+    @FXML private TableColumn<Metrics.StatementSample, String> slowShapeCol;
+    @FXML private TableColumn<Metrics.StatementSample, Number> slowMsCol;
+    @FXML private TableColumn<Metrics.StatementSample, Number> slowRowsCol;
+    @FXML private TableColumn<Metrics.StatementSample, String> slowAtCol;
+
+    /// A column must have been filtered or sorted on this often to be recommended.
+    private static final int MIN_INDEX_USES = 5;
+
+    /// Where the before/after benchmark of created indexes is written.
+    private static final Path INDEX_REPORT = Path.of("logs", "index-report.txt");
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final Timeline refresher = new Timeline(new KeyFrame(Duration.seconds(2), e -> refresh()));
+
+    @FXML
+    public void initialize() {
+        timerNameCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().name()));
+        countCol.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().count()));
+        p50Col.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(round(c.getValue().p50Ms())));
+        p95Col.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(round(c.getValue().p95Ms())));
+        p99Col.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(round(c.getValue().p99Ms())));
+        maxCol.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(round(c.getValue().maxMs())));
+
+        slowShapeCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().shape()));
+        slowMsCol.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(round(c.getValue().elapsedMs())));
+        slowRowsCol.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().rows()));
+        slowAtCol.setCellValueFactory(c -> new ReadOnlyStringWrapper(TIME.format(c.getValue().at())));
+
+        refresher.setCycleCount(Timeline.INDEFINITE);
+        adviseIndexesBtn.setOnAction(e -> adviseIndexes());
+    }
+
+    /** Starts periodic refreshing; called when the tab becomes visible. */
+    public void start() {
+        refresh();
+        refresher.play();
+    }
+
+    /** Stops periodic refreshing so a hidden tab costs nothing. */
+    public void stop() {
+        refresher.stop();
+    }
+
+    private void refresh() {
+        Metrics.Snapshot snap = Metrics.getInstance().snapshot();
+
+        List<Metrics.TimerSnapshot> timers = new ArrayList<>(snap.timers());
+        timers.sort(Comparator.comparingDouble(Metrics.TimerSnapshot::p95Ms).reversed());
+        timersTable.getItems().setAll(timers);
+        slowTable.getItems().setAll(Metrics.getInstance().slowestRecent(20));
+
+        Runtime rt = Runtime.getRuntime();
+        long usedMb = (rt.totalMemory() - rt.freeMemory()) >> 20;
+        heapLabel.setText("Heap: " + usedMb + " / " + (rt.maxMemory() >> 20) + " MB");
+
+        ConnectionManager cm = ConnectionManager.getInstance();
+        poolLabel.setText("Connections busy: " + cm.getActiveStatements() + " / " + cm.getPoolSize());
+        statementsLabel.setText("Statements: " + snap.counter("sql.statements")
+                + " (" + snap.counter("sql.errors") + " errors)");
+        cacheLabel.setText(cacheRatios(snap.counters()));
+    }
+
+    /**
+     * Asks the advisor for recommendations off the FX thread, lets the admin confirm them,
+     * then creates the indexes in the background and shows the benchmark report.
+     */
+    private void adviseIndexes() {
+        adviseIndexesBtn.setDisable(true);
+        advisorLabel.setText("Checking workload and existing indexes...");
+        IndexAdvisor advisor = IndexAdvisor.getInstance();
+        new Thread(() -> {
+            try {
+                List<IndexAdvisor.Recommendation> recs = advisor.recommend(MIN_INDEX_USES);
+                Platform.runLater(() -> confirmIndexes(advisor, recs));
+            } catch (RuntimeException ex) {
+                Platform.runLater(() -> finishAdvice("Index advice failed: " + ex.getMessage()));
+            }
+        }, "index-advisor").start();
+    }
+
+    private void confirmIndexes(IndexAdvisor advisor, List<IndexAdvisor.Recommendation> recs) {
+        if (recs.isEmpty()) {
+            finishAdvice("No index recommended: no unindexed column was filtered or sorted on "
+                    + MIN_INDEX_USES + "+ times yet.");
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (IndexAdvisor.Recommendation r : recs) {
+            sb.append(String.format("%s.%s  (%d filters, %d sorts, %.1f ms total)%n",
+                    r.table(), r.column(), r.filters(), r.sorts(), r.totalMs()));
+        }
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, "", ButtonType.OK, ButtonType.CANCEL);
+        confirm.setTitle("Index advice");
+        confirm.setHeaderText("Create these indexes?");
+        confirm.getDialogPane().setContent(readOnlyText(sb.toString()));
+        if (confirm.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK) {
+            finishAdvice(recs.size() + " index(es) recommended, none created");
+            return;
+        }
+
+        advisorLabel.setText("Creating " + recs.size() + " index(es) and benchmarking...");
+        new Thread(() -> {
+            try {
+                IndexAdvisor.Report report = advisor.apply(recs);
+                report.writeTo(INDEX_REPORT);
+                Platform.runLater(() -> {
+                    finishAdvice("Report written to " + INDEX_REPORT);
+                    Alert info = new Alert(Alert.AlertType.INFORMATION);
+                    info.setTitle("Index advice");
+                    info.setHeaderText("Before / after benchmark");
+                    info.getDialogPane().setContent(readOnlyText(report.format()));
+                    info.showAndWait();
+                });
+            } catch (RuntimeException ex) {
+                Platform.runLater(() -> finishAdvice("Creating indexes failed: " + ex.getMessage()));
+            }
+        }, "index-advisor").start();
+    }
+
+    private void finishAdvice(String message) {
+        advisorLabel.setText(message);
+        adviseIndexesBtn.setDisable(false);
+    }
+
+    private static TextArea readOnlyText(String text) {
+        TextArea area = new TextArea(text);
+        area.setEditable(false);
+        area.setPrefColumnCount(80);
+        area.setStyle("-fx-font-family: monospace;");
+        return area;
+    }
+
+    /** Formats every {@code cache.<name>.hit/miss} counter pair as a hit ratio. */
+    private static String cacheRatios(Map<String, Long> counters) {
+        StringBuilder sb = new StringBuilder("Cache hits:");
+        counters.forEach((k, hits) -> {
+            if (k.startsWith("cache.") && k.endsWith(".hit")) {
+                String name = k.substring("cache.".length(), k.length() - ".hit".length());
+                long total = hits + counters.getOrDefault("cache." + name + ".miss", 0L);
+                sb.append(String.format(" %s %.1f%% of %d;", name, 100.0 * hits / Math.max(total, 1), total));
+            }
+        });
+        return sb.length() == "Cache hits:".length() ? "Cache hits: n/a" : sb.substring(0, sb.length() - 1);
+    }
+
+    private static double round(double ms) {
+        return Math.round(ms * 100) / 100.0;
+    }
+}
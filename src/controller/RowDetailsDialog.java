@@ -10,9 +10,11 @@ import javafx.scene.layout.GridPane;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.Window;
+import model.ChemicalIndex;
 
 import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 
 /**
@@ -36,6 +38,9 @@ public class RowDetailsDialog extends Stage {
             key.setStyle("-fx-font-weight: bold");
             Label value = new Label(Objects.toString(entry.getValue(), ""));
             grid.addRow(r++, key, value);
+            if (entry.getKey().toLowerCase().startsWith("cas") && !table.equals("SDS")) {
+                r = addStoredTotals(grid, r, entry.getValue());
+            }
         }
 
         Button close = new Button("Close");
@@ -47,4 +52,21 @@ public class RowDetailsDialog extends Stage {
 
         setScene(new Scene(root));
     }
+
+    /**
+     * Adds, below the CAS column, how much of each listed chemical is stored across all locations.
+     *
+     * @return the next free grid row
+     */
+    private static int addStoredTotals(GridPane grid, int r, Object casField) {
+        for (ChemicalIndex.Totals t : ChemicalIndex.getInstance().lookupAll(casField)) {
+            Label key = new Label("Stored " + t.cas() + ":");
+            key.setStyle("-fx-font-style: italic");
+            String where = t.locations().stream()
+                    .map(ChemicalIndex.LocationTotal::describe)
+                    .collect(Collectors.joining("\n"));
+            grid.addRow(r++, key, new Label(t.total().describe() + "\n" + where));
+        }
+        return r;
+    }
 }
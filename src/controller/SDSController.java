@@ -1,23 +1,35 @@
 package controller;
 
-import javafx.beans.property.SimpleStringProperty;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.TextFieldTableCell;
+import javafx.util.Duration;
+import model.AccessControl;
+import model.ChangeFeed;
 import model.ColumnData;
 import model.MetadataService;
+import model.Query;
 import model.QueryManager;
+import model.ResultStore;
+import model.RowSchema;
+import model.SearchIndex;
+import model.StaleRowException;
+import model.User;
 
 import java.awt.Desktop;
 import java.io.IOException;
 import java.nio.file.*;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -33,6 +45,7 @@ public class SDSController {
     @FXML private Button    dataSearchButton;
     @FXML private TableView<ObservableList<String>> SDSdataTable;
     @FXML private Button    addRowBtn;
+    @FXML private Button    exportBtn;
     @FXML private Label     dataStatusBar;
 
     /* file-browser widgets */
@@ -50,8 +63,15 @@ public class SDSController {
     private final QueryManager    queries   = new QueryManager();
     private final MetadataService metadata  = new MetadataService();
 
-    private final ObservableList<ObservableList<String>> fullData  = FXCollections.observableArrayList();
-    private final ObservableList<Path>                   fullFiles = FXCollections.observableArrayList();
+    private LazyRowList                      fullData  = new LazyRowList(new ResultStore(List.of()));
+    private SearchIndex                      dataIndex = new SearchIndex(fullData.getStore());
+    private int                              pkIndex;
+    private Runnable                         unsubscribe;   // stops the change feed of the previous load
+    private User                             currentUser;   // null until set: no editing
+
+    /* filters the table once typing pauses, instead of on every keystroke */
+    private final PauseTransition dataSearchDelay = new PauseTransition(Duration.millis(250));
+    private final ObservableList<Path>       fullFiles = FXCollections.observableArrayList();
 
     /* life-cycle */
     @FXML
@@ -62,9 +82,12 @@ public class SDSController {
         loadDirectory();
 
         /* table search / add */
+        dataSearchDelay.setOnFinished(e -> doDataSearch());
+        dataSearchField.textProperty().addListener((obs, o, n) -> dataSearchDelay.playFromStart());
         dataSearchField.setOnAction(e -> doDataSearch());
         dataSearchButton.setOnAction(e -> doDataSearch());
         addRowBtn.setOnAction(e -> showAddDialog());
+        exportBtn.setOnAction(e -> exportTable());
 
         /* file search + open */
         fileSearchField.setOnAction(e -> doFileSearch());
@@ -139,17 +162,20 @@ public class SDSController {
     private void loadTable() {
         try {
             SDSdataTable.getColumns().clear();
-            fullData.clear();
 
             List<ColumnData> colsMeta = metadata.getColumns(TABLE_NAME);
             List<String>     colNames = colsMeta.stream().map(ColumnData::getName).toList();
+            int pkIdx = Math.max(0, colsMeta.stream().map(ColumnData::isPrimaryKey).toList().indexOf(true));
 
             /* rows */
-            for (Map<String,Object> row : queries.selectAll(TABLE_NAME)) {
-                ObservableList<String> obs = FXCollections.observableArrayList();
-                for (String c : colNames) obs.add(Objects.toString(row.get(c), ""));
-                fullData.add(obs);
-            }
+            fullData = new LazyRowList(queries.selectAllRows(TABLE_NAME));
+            dataIndex = new SearchIndex(fullData.getStore(), colsMeta);
+            pkIndex = pkIdx;
+
+            /* edits from other workstations */
+            if (unsubscribe != null) unsubscribe.run();
+            unsubscribe = ChangeFeed.getInstance().subscribe(TABLE_NAME,
+                    changes -> Platform.runLater(() -> applyRemoteChanges(changes)));
 
             /* columns */
             for (int i = 0; i < colNames.size(); i++) {
@@ -157,17 +183,32 @@ public class SDSController {
                 final String colName = colNames.get(i);
 
                 TableColumn<ObservableList<String>, String> col = new TableColumn<>(colName);
-                col.setCellValueFactory(cd -> new SimpleStringProperty(cd.getValue().get(idx)));
+                col.setCellValueFactory(StoreRow.valueFactory(idx));
                 col.setCellFactory(TextFieldTableCell.forTableColumn());
                 col.setOnEditCommit(ev -> {
                     ObservableList<String> row = ev.getRowValue();
                     String oldVal = ev.getOldValue();
                     String newVal = ev.getNewValue();
                     if (!Objects.equals(oldVal, newVal)) {
-                        Object pk = row.get(0);               // first column = PK
-                        queries.updateRow(TABLE_NAME, Map.of(colName, newVal), pk);
-                        row.set(idx, newVal);
-                        dataStatusBar.setText("Updated " + colName);
+                        String problem = RowSchema.of(TABLE_NAME, metadata.getColumns(TABLE_NAME)).problem(colName, newVal);
+                        if (problem != null) {
+                            SDSdataTable.refresh();
+                            dataStatusBar.setText(problem);
+                            return;
+                        }
+                        String pk = row.get(pkIdx);
+                        String expected = row instanceof StoreRow r ? r.getStore().get(r.getStoreIndex(), idx) : oldVal;
+                        try {
+                            queries.updateRow(TABLE_NAME, Map.of(colName, newVal), pk, Collections.singletonMap(colName, expected));
+                            row.set(idx, newVal);
+                            if (row instanceof StoreRow r) dataIndex.refresh(r.getStoreIndex());
+                            dataStatusBar.setText("Updated " + colName);
+                        } catch (StaleRowException ex) {
+                            Map<String, Object> current = queries.selectByKey(TABLE_NAME, pk);
+                            if (current != null) applyLoadedRow(pk, current);
+                            SDSdataTable.refresh();
+                            dataStatusBar.setText(ex.getMessage());
+                        }
                     }
                 });
 
@@ -175,7 +216,7 @@ public class SDSController {
             }
 
             SDSdataTable.setItems(fullData);
-            SDSdataTable.setEditable(true);
+            applyRolePermissions();
             dataStatusBar.setText("Loaded \"" + TABLE_NAME + "\" (" + fullData.size() + " rows)");
 
         } catch (Exception e) {
@@ -183,29 +224,91 @@ public class SDSController {
         }
     }
 
+    private void applyRemoteChanges(List<ChangeFeed.Change> changes) {
+        int applied = 0;
+        for (ChangeFeed.Change c : changes) {
+            if (c.row() == null) continue;
+            if (!applyLoadedRow(c.key(), c.row())) appendLoadedRow(c.row());
+            applied++;
+        }
+        if (applied > 0) dataStatusBar.setText(applied + " row(s) changed on another workstation");
+    }
+
+    /* copies new values for one row into the loaded rows and whatever view of them is showing */
+    private boolean applyLoadedRow(String pkValue, Map<String, Object> values) {
+        ResultStore store = fullData.getStore();
+        int r = store.indexOf(pkIndex, pkValue);
+        if (r < 0) return false;
+        store.setRow(r, values);
+        dataIndex.refresh(r);
+        fullData.refresh(r);
+        if (SDSdataTable.getItems() instanceof LazyRowList shown && shown != fullData) shown.refresh(r);
+        return true;
+    }
+
+    /* adds a new row to the loaded rows and index, then re-applies the search */
+    private void appendLoadedRow(Map<String, Object> values) {
+        ResultStore store = fullData.getStore();
+        int r = store.add(new String[store.columnCount()]);
+        store.setRow(r, values);
+        dataIndex.catchUp();
+        fullData.rowsAppended(r);
+        if (SDSdataTable.getItems() != fullData) doDataSearch();
+    }
+
+    /* exports the SDS table, or the rows matching the search text */
+    private void exportTable() {
+        Query query = Query.from(TABLE_NAME);
+        String q = dataSearchField.getText().trim();
+        if (!q.isEmpty()) {
+            Optional<Query.Condition> match = queries.textMatch(TABLE_NAME, q);
+            if (match.isEmpty()) return;
+            query.where(match.get());
+        }
+        ExportAction.run(SDSdataTable.getScene().getWindow(), query, dataStatusBar, exportBtn);
+    }
+
     private void doDataSearch() {
+        dataSearchDelay.stop();
         String q = dataSearchField.getText().trim().toLowerCase();
         if (q.isEmpty()) {
             SDSdataTable.setItems(fullData);
             dataStatusBar.setText("Showing all rows");
             return;
         }
-        FilteredList<ObservableList<String>> filtered =
-                new FilteredList<>(fullData,
-                        row -> row.stream().anyMatch(cell -> cell.toLowerCase().contains(q)));
+        int[] hits = dataIndex.filter(q);
 
-        SDSdataTable.setItems(filtered);
-        dataStatusBar.setText(filtered.size() + " rows match \"" + q + "\"");
+        SDSdataTable.setItems(new LazyRowList(fullData.getStore(), hits));
+        dataStatusBar.setText(hits.length + " rows match \"" + q + "\"");
     }
 
     private void showAddDialog() {
         List<ColumnData> cols = metadata.getColumns(TABLE_NAME);
         new AddRowDialog(SDSdataTable.getScene().getWindow(), TABLE_NAME, cols, v -> {
-            queries.insertRow(TABLE_NAME, v);
-            loadTable();
+            QueryManager.InsertedRow inserted = queries.insertRow(TABLE_NAME, v);
+            if (inserted == null) return;
+            if (inserted.row() == null) {
+                loadTable();                 // key not reported by the driver; fall back to a reload
+                return;
+            }
+            appendLoadedRow(inserted.row());
+            dataStatusBar.setText("Added row " + inserted.key());
         }).showAndWait();
     }
 
+    /* permissions */
+    public void setCurrentUser(User user) {
+        this.currentUser = user;
+        applyRolePermissions();
+    }
+
+    private void applyRolePermissions() {
+        AccessControl access = AccessControl.getInstance();
+        SDSdataTable.setEditable(access.isAllowed(currentUser, AccessControl.Action.UPDATE, TABLE_NAME));
+        addRowBtn.setDisable(!access.isAllowed(currentUser, AccessControl.Action.INSERT, TABLE_NAME));
+        exportBtn.setDisable(!access.isAllowed(currentUser, AccessControl.Action.EXPORT, TABLE_NAME));
+    }
+
     /* helpers */
     private void showInfo(String msg) {
         javafx.application.Platform.runLater(() ->
@@ -0,0 +1,117 @@
+package controller;
+
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ModifiableObservableListBase;
+import javafx.collections.ObservableList;
+import javafx.scene.control.TableColumn;
+import javafx.util.Callback;
+import model.ResultStore;
+
+import java.util.Objects;
+
+/**
+ * Lightweight row view over one row of a {@link ResultStore}.
+ * Values are read from and written through to the store; SQL NULL reads as "".
+ * Cell properties are created on first use and then reused for every later render of the row.
+ * @author Jordan A.
+ */
+public class StoreRow extends ModifiableObservableListBase<String> {
+
+    private final ResultStore store;
+    private final int row;
+
+    /// One property per column, created lazily by {@link #property(int)}.
+    private StringProperty[] properties;
+
+    public StoreRow(ResultStore store, int row) {
+        this.store = store;
+        this.row = row;
+    }
+
+    /** @return the store this row reads from */
+    public ResultStore getStore() {
+        return store;
+    }
+
+    /** @return the index of this row in the backing store */
+    public int getStoreIndex() {
+        return row;
+    }
+
+    /**
+     * Returns the cached property for one column, creating it on first access.
+     *
+     * @param column the column index
+     * @return a property holding the column's display value
+     */
+    public StringProperty property(int column) {
+        if (properties == null) properties = new StringProperty[store.columnCount()];
+        if (properties[column] == null) properties[column] = new SimpleStringProperty(get(column));
+        return properties[column];
+    }
+
+    /**
+     * Pushes the store's current values into any cell properties already created,
+     * after the store was changed directly rather than through this row.
+     */
+    public void reload() {
+        if (properties == null) return;
+        for (int c = 0; c < properties.length; c++) {
+            if (properties[c] != null) properties[c].set(get(c));
+        }
+    }
+
+    /**
+     * Cell value factory for a column of a table whose items are {@link StoreRow}s.
+     * Falls back to a fresh property for any other kind of row.
+     *
+     * @param column the column index
+     * @return the factory to pass to {@link TableColumn#setCellValueFactory}
+     */
+    public static Callback<TableColumn.CellDataFeatures<ObservableList<String>, String>, ObservableValue<String>> valueFactory(int column) {
+        return cd -> cd.getValue() instanceof StoreRow r
+                ? r.property(column)
+                : new SimpleStringProperty(cd.getValue().get(column));
+    }
+
+    @Override
+    public String get(int index) {
+        return Objects.toString(store.get(row, index), "");
+    }
+
+    @Override
+    public int size() {
+        return store.columnCount();
+    }
+
+    @Override
+    protected String doSet(int index, String element) {
+        String old = get(index);
+        store.set(row, index, element);
+        if (properties != null && properties[index] != null) properties[index].set(element);
+        return old;
+    }
+
+    @Override
+    protected void doAdd(int index, String element) {
+        throw new UnsupportedOperationException("Rows have a fixed number of columns");
+    }
+
+    @Override
+    protected String doRemove(int index) {
+        throw new UnsupportedOperationException("Rows have a fixed number of columns");
+    }
+
+    /** Rows are identified by store and position, not by content, so duplicate rows stay distinct. */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof StoreRow that && that.store == store && that.row == row;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(store) * 31 + row;
+    }
+}
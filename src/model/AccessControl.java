@@ -0,0 +1,349 @@
+package model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Role-based authorization. Which role may do what is kept in the {@value #TABLE} table, one row per
+ * (role, action, table) grant, where a missing table name means every table. The table is created with the
+ * previous built-in rules on first use: admins may do everything, users may read and export everything and
+ * edit the SDS table, guests may only read. Actions added since, which no grant mentions yet, are granted to
+ * admins the next time the table is opened.
+ * <p>
+ * The grants are cached in memory as one bitset per role plus one per (role, table), so
+ * {@link #authorize} is a hash lookup and a bit test. The cache is dropped whenever grants change,
+ * here or, through the {@link ChangeFeed}, on another workstation.
+ *
+ * @author Jordan A.
+ */
+public class AccessControl {
+    /// Name of the grants table; hidden from the table lists.
+    public static final String TABLE = "RolePermissions";
+
+    /// Singleton instance.
+    private static AccessControl instance;
+
+    /**
+     * Something a role may be allowed to do.
+     */
+    public enum Action {
+        READ("read rows"),
+        INSERT("add rows"),
+        UPDATE("edit rows"),
+        EXPORT("export rows"),
+        MANAGE_USERS("manage users"),
+        TUNE_PERFORMANCE("change database indexes"),
+        MANAGE_ALERTS("edit alert rules");
+
+        private final String description;
+        private final long bit = 1L << ordinal();
+
+        Action(String description) {
+            this.description = description;
+        }
+
+        /** Describes the action for error messages, e.g. "edit rows". */
+        public String describe() {
+            return description;
+        }
+    }
+
+    /**
+     * One role's grants as bitsets of {@link Action}s.
+     *
+     * @param anyTable actions allowed on every table, and actions not tied to a table
+     * @param perTable further actions allowed on single tables
+     */
+    private record RoleGrants(long anyTable, Map<String, Long> perTable) {
+        boolean allows(Action action, String table) {
+            long bits = anyTable;
+            if (table != null) {
+                Long extra = perTable.get(table);
+                if (extra != null) bits |= extra;
+            }
+            return (bits & action.bit) != 0;
+        }
+    }
+
+    /// Role (lower case) → grants; null until loaded and after every change.
+    private volatile Map<String, RoleGrants> grants;
+
+    /// Set once other workstations' grant changes are being watched; guarded by this.
+    private boolean subscribed;
+
+    /// Set once the grants table is known to exist; guarded by this.
+    private boolean tableReady;
+
+    private AccessControl() { }
+
+    /**
+     * Returns the singleton {@link AccessControl}.
+     *
+     * @return the shared instance
+     */
+    public static synchronized AccessControl getInstance() {
+        if (instance == null) {
+            instance = new AccessControl();
+        }
+        return instance;
+    }
+
+    /**
+     * Checks whether a user may perform an action.
+     *
+     * @param user   the user; null is never allowed anything
+     * @param action the action
+     * @param table  the table acted on, or null for actions not tied to a table
+     * @return true if the user's role grants the action
+     */
+    public boolean isAllowed(User user, Action action, String table) {
+        if (user == null || user.getRole() == null) return false;
+        Map<String, RoleGrants> all = grants();
+        RoleGrants g = all.get(user.getRole());     // roles are normally stored in lower case already
+        if (g == null) g = all.get(user.getRole().toLowerCase(Locale.ROOT));
+        return g != null && g.allows(action, table);
+    }
+
+    /**
+     * Refuses an action the user's role does not grant.
+     *
+     * @param user   the user
+     * @param action the action
+     * @param table  the table acted on, or null for actions not tied to a table
+     * @throws AccessDeniedException if the action is not allowed
+     */
+    public void authorize(User user, Action action, String table) {
+        if (!isAllowed(user, action, table)) {
+            Metrics.getInstance().increment("access.denied");
+            throw new AccessDeniedException(user == null ? "anonymous" : user.getName() + " (" + user.getRole() + ")",
+                    action, table);
+        }
+    }
+
+    /**
+     * Checks an action for the user in the {@link UserContext}. Application code running without a user,
+     * such as bootstrap and command-line maintenance, is trusted.
+     *
+     * @param action the action
+     * @param table  the table acted on, or null for actions not tied to a table
+     * @throws AccessDeniedException if the current user may not perform the action
+     */
+    public void authorizeCurrent(Action action, String table) {
+        User user = UserContext.get();
+        if (user != null) authorize(user, action, table);
+    }
+
+    /**
+     * Lists the roles that have at least one grant, for choosing a new user's role.
+     *
+     * @return role names in alphabetical order
+     */
+    public List<String> roles() {
+        return new ArrayList<>(new TreeSet<>(grants().keySet()));
+    }
+
+    /**
+     * Allows a role an action.
+     *
+     * @param role   the role
+     * @param action the action
+     * @param table  the table the grant applies to, or null for every table
+     */
+    public void grant(String role, Action action, String table) {
+        authorizeCurrent(Action.MANAGE_USERS, null);
+        ensureTable();
+        Connection connection = ConnectionManager.getInstance().getConnection();
+        String sql = "INSERT INTO " + QueryManager.formatString(TABLE) + " ([Role], [Action], [Table Name]) VALUES (?, ?, ?)";
+        try (PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            bindInsert(ps, role, action, table);
+            ConnectionManager.getInstance().executeWrite(ps);
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next()) ChangeFeed.getInstance().record(TABLE, keys.getObject(1), "INSERT");
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Granting " + action + " to " + role + " failed", e);
+        }
+        AuditLog.getInstance().record("INSERT", TABLE, role, null, grantMap(action, table));
+        invalidate();
+    }
+
+    /**
+     * Takes an action away from a role.
+     *
+     * @param role   the role
+     * @param action the action
+     * @param table  the table the grant applied to, or null for the every-table grant
+     */
+    public void revoke(String role, Action action, String table) {
+        authorizeCurrent(Action.MANAGE_USERS, null);
+        ensureTable();
+        Connection connection = ConnectionManager.getInstance().getConnection();
+        String where = " WHERE [Role]=? AND [Action]=? AND " + (table == null ? "[Table Name] IS NULL" : "[Table Name]=?");
+        List<Object> ids = new ArrayList<>();
+        try {
+            try (PreparedStatement ps = connection.prepareStatement("SELECT [ID] FROM " + QueryManager.formatString(TABLE) + where)) {
+                ps.setString(1, role.toLowerCase(Locale.ROOT));
+                ps.setString(2, action.name());
+                if (table != null) ps.setString(3, table);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) ids.add(rs.getObject(1));
+                }
+            }
+            try (PreparedStatement ps = connection.prepareStatement("DELETE FROM " + QueryManager.formatString(TABLE) + " WHERE [ID]=?")) {
+                for (Object id : ids) {
+                    ps.setObject(1, id);
+                    ConnectionManager.getInstance().executeWrite(ps);
+                    ChangeFeed.getInstance().record(TABLE, id, "DELETE");
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Revoking " + action + " from " + role + " failed", e);
+        }
+        if (!ids.isEmpty()) AuditLog.getInstance().record("DELETE", TABLE, role, grantMap(action, table), null);
+        invalidate();
+    }
+
+    /**
+     * Drops the cached grants; the next check reloads them.
+     */
+    public void invalidate() {
+        grants = null;
+        Metrics.getInstance().increment("access.invalidations");
+    }
+
+    /** Binds the parameters of {@code INSERT ... ([Role], [Action], [Table Name]) VALUES (?, ?, ?)}. */
+    private static void bindInsert(PreparedStatement ps, String role, Action action, String table) throws SQLException {
+        ps.setString(1, role.toLowerCase(Locale.ROOT));
+        ps.setString(2, action.name());
+        if (table == null) ps.setNull(3, Types.VARCHAR);
+        else ps.setString(3, table);
+    }
+
+    private static Map<String, Object> grantMap(Action action, String table) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("action", action.name());
+        m.put("table", table);
+        return m;
+    }
+
+    private Map<String, RoleGrants> grants() {
+        Map<String, RoleGrants> g = grants;
+        return g != null ? g : load();
+    }
+
+    /**
+     * Reads every grant into per-role bitsets. Unknown action names, e.g. from a newer version, are skipped.
+     */
+    private synchronized Map<String, RoleGrants> load() {
+        if (grants != null) return grants;
+        ensureTable();
+        long start = System.nanoTime();
+        Map<String, Long> any = new HashMap<>();
+        Map<String, Map<String, Long>> perTable = new HashMap<>();
+        String sql = "SELECT [Role], [Action], [Table Name] FROM " + QueryManager.formatString(TABLE);
+        try (Statement st = ConnectionManager.getInstance().getConnection().createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                String role = rs.getString(1).toLowerCase(Locale.ROOT);
+                Action action;
+                try {
+                    action = Action.valueOf(rs.getString(2));
+                } catch (IllegalArgumentException unknown) {
+                    continue;
+                }
+                String table = rs.getString(3);
+                if (table == null) {
+                    any.merge(role, action.bit, (a, b) -> a | b);
+                } else {
+                    any.putIfAbsent(role, 0L);
+                    perTable.computeIfAbsent(role, r -> new HashMap<>()).merge(table, action.bit, (a, b) -> a | b);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Loading role permissions failed", e);
+        }
+        Map<String, RoleGrants> loaded = new HashMap<>();
+        any.forEach((role, bits) -> loaded.put(role, new RoleGrants(bits, Map.copyOf(perTable.getOrDefault(role, Map.of())))));
+        grants = Map.copyOf(loaded);
+        Metrics.getInstance().timer("access.load").recordSince(start);
+
+        if (!subscribed) {
+            subscribed = true;
+            ChangeFeed.getInstance().subscribe(TABLE, changes -> invalidate());
+        }
+        return grants;
+    }
+
+    /**
+     * Creates the grants table with the default rules the first time any workstation needs it. The rules are
+     * written in one transaction, so a failure leaves no partial set; an empty table, e.g. after such a
+     * failure, is seeded again on the next start.
+     */
+    private synchronized void ensureTable() {
+        if (tableReady) return;
+        Connection connection = ConnectionManager.getInstance().getConnection();
+        try {
+            boolean exists;
+            try (ResultSet rs = connection.getMetaData().getTables(null, null, TABLE, new String[]{"TABLE"})) {
+                exists = rs.next();
+            }
+            if (!exists) {
+                try (Statement st = connection.createStatement()) {
+                    ConnectionManager.getInstance().executeWrite(st, "CREATE TABLE " + QueryManager.formatString(TABLE)
+                            + " ([ID] COUNTER PRIMARY KEY, [Role] VARCHAR(50), [Action] VARCHAR(50), [Table Name] VARCHAR(255))");
+                }
+            }
+            Set<String> granted = exists ? grantedActions(connection) : Set.of();
+            List<Action> missing = Arrays.stream(Action.values()).filter(a -> !granted.contains(a.name())).toList();
+            if (!missing.isEmpty()) {
+                String sql = "INSERT INTO " + QueryManager.formatString(TABLE) + " ([Role], [Action], [Table Name]) VALUES (?, ?, ?)";
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    for (Action a : missing) {
+                        seed(ps, "admin", a, null);
+                    }
+                    if (granted.isEmpty()) {
+                        seed(ps, "user", Action.READ, null);
+                        seed(ps, "user", Action.EXPORT, null);
+                        seed(ps, "user", Action.INSERT, "SDS");
+                        seed(ps, "user", Action.UPDATE, "SDS");
+                        seed(ps, "guest", Action.READ, null);
+                    }
+                    ConnectionManager.getInstance().executeBatch(ps);
+                }
+            }
+            tableReady = true;
+        } catch (SQLException e) {
+            throw new RuntimeException("Creating role permissions failed", e);
+        }
+    }
+
+    /**
+     * The actions any grant mentions; admins get the others, i.e. those added after the table was created.
+     */
+    private static Set<String> grantedActions(Connection connection) throws SQLException {
+        Set<String> granted = new HashSet<>();
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT DISTINCT [Action] FROM " + QueryManager.formatString(TABLE))) {
+            while (rs.next()) granted.add(rs.getString(1));
+        }
+        return granted;
+    }
+
+    private static void seed(PreparedStatement ps, String role, Action action, String table) throws SQLException {
+        bindInsert(ps, role, action, table);
+        ps.addBatch();
+    }
+}
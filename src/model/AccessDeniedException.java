@@ -0,0 +1,23 @@
+package model;
+
+/**
+ * Thrown by {@link AccessControl#authorize} when a user's role does not grant an action.
+ *
+ * @author Jordan A.
+ */
+public class AccessDeniedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /// The action that was refused.
+    private final AccessControl.Action action;
+
+    public AccessDeniedException(String who, AccessControl.Action action, String table) {
+        super(who + " may not " + action.describe()
+                + (table == null ? "" : " in \"" + table + "\""));
+        this.action = action;
+    }
+
+    public AccessControl.Action getAction() {
+        return action;
+    }
+}
@@ -0,0 +1,573 @@
+package model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Watches inventory values against alert rules such as "fewer than 1 container left" or "expires within
+ * 30 days". Rules are kept in the {@value #TABLE} table, one row per (table, column, kind, threshold); it is
+ * created on first use with those {@link #DEFAULT_RULES} whose table and column exist. The table is hidden
+ * from the table lists; rules are changed through {@link #addRule} and {@link #removeRule}, which need the
+ * {@link AccessControl.Action#MANAGE_ALERTS} grant, and other workstations pick the change up through the
+ * {@link ChangeFeed}.
+ * <p>
+ * All rows are checked once at startup and again whenever the date changes, reading only the rule columns.
+ * Between scans only changed rows are re-checked: {@link QueryManager} reports its inserts and updates with
+ * {@link #changed}, the {@link ChangeFeed} reports other workstations', and a background thread re-reads just
+ * those rows every {@code alerts.intervalSeconds} seconds (default 30).
+ *
+ * @author Jordan A.
+ */
+public class AlertEngine {
+    /// Name of the rules table; hidden from the table lists.
+    public static final String TABLE = "AlertRules";
+
+    /// Singleton instance.
+    private static AlertEngine instance;
+
+    /// Keys per query when re-reading changed rows.
+    private static final int KEY_CHUNK = 500;
+
+    /// Date formats recognised in text columns, e.g. "7/1/2017", "11/2022" and "Jan-19"; a month means its last day.
+    private static final List<DateTimeFormatter> DAY_FORMATS = List.of(
+            DateTimeFormatter.ofPattern("M/d/yyyy"), DateTimeFormatter.ISO_LOCAL_DATE);
+    private static final List<DateTimeFormatter> MONTH_FORMATS = List.of(
+            DateTimeFormatter.ofPattern("M/yyyy"), DateTimeFormatter.ofPattern("MMM-yy", Locale.ENGLISH));
+
+    /**
+     * What a rule checks.
+     */
+    public enum Kind {
+        /// The number is below the threshold, e.g. low stock.
+        BELOW,
+        /// The number is above the threshold, e.g. a warning flag that is set.
+        ABOVE,
+        /// The date is at most threshold days away, or already past.
+        EXPIRES_WITHIN
+    }
+
+    /**
+     * One alert rule.
+     *
+     * @param id        the rule's key in {@value #TABLE}
+     * @param table     the table it watches
+     * @param column    the column it checks
+     * @param kind      the comparison
+     * @param threshold the number compared against, or the number of days for {@link Kind#EXPIRES_WITHIN}
+     * @param message   shown with each alert, e.g. "Out of stock"
+     */
+    public record Rule(int id, String table, String column, Kind kind, double threshold, String message) {
+        /** Checks a value; empty and unreadable values never fire. */
+        boolean fires(Object value, LocalDate today) {
+            if (kind == Kind.EXPIRES_WITHIN) {
+                LocalDate date = toDate(value);
+                return date != null && !date.isAfter(today.plusDays((long) threshold));
+            }
+            Double number = toNumber(value);
+            if (number == null) return false;
+            return kind == Kind.BELOW ? number < threshold : number > threshold;
+        }
+    }
+
+    /// Low-stock rules for the chemical inventory; the rules table starts with those that apply (IDs unused).
+    public static final List<Rule> DEFAULT_RULES = List.of(
+            new Rule(0, "Chemical Inventory", "Number of Containers", Kind.BELOW, 1, "Out of stock"),
+            new Rule(0, "Chemical Inventory", "Restock Warning Flag", Kind.ABOVE, 0, "Restock requested"));
+
+    /**
+     * A rule firing for one row.
+     *
+     * @param rule  the rule
+     * @param key   the row's primary-key value, as text
+     * @param label the row's name, e.g. the chemical, for display
+     * @param value the checked value
+     */
+    public record Alert(Rule rule, String key, String label, Object value) {
+        public String table() {
+            return rule.table();
+        }
+
+        /** Describes the alert in one line, e.g. "Acetone (#12): Out of stock (Number of Containers = 0.0)". */
+        public String describe() {
+            return (label == null ? "" : label + " ") + "(#" + key + "): " + rule.message()
+                    + " (" + rule.column() + " = " + value + ")";
+        }
+    }
+
+    /**
+     * How one table is read: its key, its label column and the columns the rules check.
+     */
+    private record TablePlan(String table, String keyColumn, String labelColumn, List<Rule> rules, String selectSql) { }
+
+    /// Rule plans per table; replaced as a whole when the rules are reloaded.
+    private volatile Map<String, TablePlan> plans = Map.of();
+
+    /// Current alerts per table and row key.
+    private final ConcurrentMap<String, ConcurrentMap<String, List<Alert>>> alerts = new ConcurrentHashMap<>();
+
+    /// Rows changed since they were last checked, per table.
+    private final ConcurrentMap<String, Set<String>> dirty = new ConcurrentHashMap<>();
+
+    private final List<Consumer<List<Alert>>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> feedSubscriptions = new ArrayList<>();
+    private final long intervalSeconds = Long.getLong("alerts.intervalSeconds", 30L);
+    private final Metrics metrics = Metrics.getInstance();
+
+    /// Set when another workstation edited the rules or a row changed whose key is unknown; the next run
+    /// then reloads the rules and checks every row.
+    private volatile boolean rescanDue;
+
+    /// Date of the last full scan; expiry alerts change with the date even when no row does.
+    private volatile LocalDate scannedOn;
+
+    /// Set once the rules table is known to exist; guarded by this.
+    private boolean tableReady;
+
+    /// Started by {@link #start()}; guarded by this.
+    private ScheduledExecutorService scheduler;
+
+    private AlertEngine() { }
+
+    /**
+     * Returns the singleton {@link AlertEngine}.
+     *
+     * @return the shared engine
+     */
+    public static synchronized AlertEngine getInstance() {
+        if (instance == null) {
+            instance = new AlertEngine();
+        }
+        return instance;
+    }
+
+    /**
+     * Loads the rules, checks every row once, then re-checks changed rows on a daemon thread.
+     * Does nothing when the interval is 0 or the engine already runs.
+     */
+    public synchronized void start() {
+        if (scheduler != null || intervalSeconds <= 0) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "alerts");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        scheduler.execute(() -> run(this::rescan));
+        scheduler.scheduleWithFixedDelay(() -> run(this::evaluate), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Notes that a row was inserted or updated, so it is re-checked on the next run. Cheap enough for every write.
+     *
+     * @param table the table written
+     * @param key   the row's primary-key value, or null if unknown; the next run then checks every row
+     */
+    public void changed(String table, Object key) {
+        if (!plans.containsKey(table)) return;
+        if (key == null) rescanDue = true;
+        else dirty.computeIfAbsent(table, t -> ConcurrentHashMap.newKeySet()).add(String.valueOf(key));
+    }
+
+    /**
+     * Returns the current alerts, grouped by table and then in rule and key order.
+     *
+     * @return a snapshot of the alerts
+     */
+    public List<Alert> current() {
+        List<Alert> all = new ArrayList<>();
+        alerts.values().forEach(byKey -> byKey.values().forEach(all::addAll));
+        all.sort(Comparator.comparing(Alert::table).thenComparingInt(a -> a.rule().id()).thenComparing(Alert::key));
+        return all;
+    }
+
+    /**
+     * Registers a listener for changes to the alerts. It runs on the engine's thread; UI callers should hop
+     * to their own thread.
+     *
+     * @param listener receives all current alerts after each run that changed them
+     * @return an action that removes the listener again
+     */
+    public Runnable subscribe(Consumer<List<Alert>> listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+
+    /**
+     * Reloads the rules and checks every row again, e.g. after the rules were edited.
+     */
+    public synchronized void rescan() {
+        long start = System.nanoTime();
+        Map<String, TablePlan> loaded = loadPlans();
+        plans = loaded;
+        rescanDue = false;
+        subscribeToFeed(loaded.keySet());
+        dirty.clear();      // every row is read below
+        scannedOn = LocalDate.now();
+
+        Map<String, ConcurrentMap<String, List<Alert>>> found = new HashMap<>();
+        for (TablePlan plan : loaded.values()) {
+            ConcurrentMap<String, List<Alert>> byKey = new ConcurrentHashMap<>();
+            read(plan, plan.selectSql(), List.of(), (key, alerts) -> {
+                if (!alerts.isEmpty()) byKey.put(key, alerts);
+            });
+            found.put(plan.table(), byKey);
+        }
+        alerts.clear();
+        alerts.putAll(found);
+        metrics.timer("alerts.scan").recordSince(start);
+        notifyListeners();
+    }
+
+    /**
+     * Re-checks the rows changed since the last run, or everything once the date has changed.
+     */
+    public synchronized void evaluate() {
+        if (rescanDue || !LocalDate.now().equals(scannedOn)) {
+            rescan();
+            return;
+        }
+        boolean changedAny = false;
+        long start = System.nanoTime();
+        for (String table : List.copyOf(dirty.keySet())) {
+            Set<String> keys = dirty.remove(table);
+            TablePlan plan = plans.get(table);
+            if (keys == null || keys.isEmpty() || plan == null) continue;
+            ConcurrentMap<String, List<Alert>> byKey = alerts.computeIfAbsent(table, t -> new ConcurrentHashMap<>());
+            List<String> pending = new ArrayList<>(keys);
+            for (int from = 0; from < pending.size(); from += KEY_CHUNK) {
+                List<String> chunk = pending.subList(from, Math.min(pending.size(), from + KEY_CHUNK));
+                Set<String> missing = new LinkedHashSet<>(chunk);     // rows not read back were deleted
+                String sql = plan.selectSql() + " WHERE " + QueryManager.formatString(plan.keyColumn())
+                        + " IN (" + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+                read(plan, sql, chunk, (key, found) -> {
+                    missing.remove(key);
+                    if (found.isEmpty()) byKey.remove(key);
+                    else byKey.put(key, found);
+                });
+                missing.forEach(byKey::remove);
+            }
+            metrics.add("alerts.rowsChecked", keys.size());
+            changedAny = true;
+        }
+        if (changedAny) {
+            metrics.timer("alerts.evaluate").recordSince(start);
+            notifyListeners();
+        }
+    }
+
+    /**
+     * Lists every rule, including those on tables or columns that no longer exist.
+     *
+     * @return the rules in ID order
+     */
+    public List<Rule> rules() {
+        ensureTable();
+        List<Rule> rules = new ArrayList<>();
+        String sql = "SELECT [ID], [Table Name], [Column], [Kind], [Threshold], [Message] FROM "
+                + QueryManager.formatString(TABLE) + " ORDER BY [ID]";
+        try (Statement st = ConnectionManager.getInstance().getConnection().createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                Kind kind;
+                try {
+                    kind = Kind.valueOf(rs.getString(4));
+                } catch (IllegalArgumentException | NullPointerException unknown) {
+                    continue;
+                }
+                rules.add(new Rule(rs.getInt(1), rs.getString(2), rs.getString(3), kind, rs.getDouble(5),
+                        rs.getString(6) == null ? kind + " " + rs.getDouble(5) : rs.getString(6)));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Loading alert rules failed", e);
+        }
+        return rules;
+    }
+
+    /**
+     * Adds a rule and checks every row against the new rules.
+     *
+     * @param table     the table to watch
+     * @param column    the column to check
+     * @param kind      the comparison
+     * @param threshold the number compared against, or the number of days for {@link Kind#EXPIRES_WITHIN}
+     * @param message   shown with each alert; a description of the rule when blank
+     * @return the stored rule
+     * @throws AccessDeniedException    if the current user may not edit alert rules
+     * @throws IllegalArgumentException if the table or column does not exist
+     */
+    public Rule addRule(String table, String column, Kind kind, double threshold, String message) {
+        AccessControl.getInstance().authorizeCurrent(AccessControl.Action.MANAGE_ALERTS, null);
+        MetadataService metadata = new MetadataService();
+        if (!metadata.listTables().contains(table)) {
+            throw new IllegalArgumentException("No table \"" + table + "\"");
+        }
+        if (metadata.getColumns(table).stream().noneMatch(c -> c.getName().equals(column))) {
+            throw new IllegalArgumentException("No column \"" + column + "\" in \"" + table + "\"");
+        }
+        String text = message == null || message.isBlank() ? kind + " " + threshold : message.trim();
+        ensureTable();
+        Connection connection = ConnectionManager.getInstance().getConnection();
+        String sql = "INSERT INTO " + QueryManager.formatString(TABLE)
+                + " ([Table Name], [Column], [Kind], [Threshold], [Message]) VALUES (?, ?, ?, ?, ?)";
+        int id;
+        try (PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            seed(ps, table, column, kind, threshold, text);
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (!keys.next()) throw new SQLException("No key returned for the new rule");
+                id = keys.getInt(1);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Adding the alert rule failed", e);
+        }
+        Rule rule = new Rule(id, table, column, kind, threshold, text);
+        ChangeFeed.getInstance().record(TABLE, id, "INSERT");
+        AuditLog.getInstance().record("INSERT", TABLE, id, null, ruleMap(rule));
+        rescan();
+        return rule;
+    }
+
+    /**
+     * Removes a rule and clears its alerts.
+     *
+     * @param id the rule's ID
+     * @throws AccessDeniedException if the current user may not edit alert rules
+     */
+    public void removeRule(int id) {
+        AccessControl.getInstance().authorizeCurrent(AccessControl.Action.MANAGE_ALERTS, null);
+        Rule before = rules().stream().filter(r -> r.id() == id).findFirst().orElse(null);
+        String sql = "DELETE FROM " + QueryManager.formatString(TABLE) + " WHERE [ID]=?";
+        try (PreparedStatement ps = ConnectionManager.getInstance().getConnection().prepareStatement(sql)) {
+            ps.setInt(1, id);
+            ConnectionManager.getInstance().executeWrite(ps);
+        } catch (SQLException e) {
+            throw new RuntimeException("Removing alert rule " + id + " failed", e);
+        }
+        if (before != null) {
+            ChangeFeed.getInstance().record(TABLE, id, "DELETE");
+            AuditLog.getInstance().record("DELETE", TABLE, id, ruleMap(before), null);
+        }
+        rescan();
+    }
+
+    private static Map<String, Object> ruleMap(Rule rule) {
+        Map<String, Object> m = new HashMap<>();
+        m.put("Table Name", rule.table());
+        m.put("Column", rule.column());
+        m.put("Kind", rule.kind().name());
+        m.put("Threshold", rule.threshold());
+        m.put("Message", rule.message());
+        return m;
+    }
+
+    private void notifyListeners() {
+        List<Alert> all = current();
+        metrics.increment("alerts.updates");
+        listeners.forEach(l -> l.accept(all));
+    }
+
+    /**
+     * Runs a table's rule SELECT, optionally restricted to some keys, and hands each row's firing rules to the sink.
+     */
+    private void read(TablePlan plan, String sql, Collection<String> keys,
+                      BiConsumer<String, List<Alert>> sink) {
+        LocalDate today = LocalDate.now();
+        Connection connection = ConnectionManager.getInstance().getConnection();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int i = 1;
+            for (String key : keys) {
+                ps.setString(i++, key);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String key = rs.getString(1);
+                    String label = plan.labelColumn() == null ? null : rs.getString(2);
+                    List<Alert> fired = List.of();
+                    for (Rule rule : plan.rules()) {
+                        Object value = rs.getObject(rule.column());
+                        if (rule.fires(value, today)) {
+                            if (fired.isEmpty()) fired = new ArrayList<>(1);
+                            fired.add(new Alert(rule, key, label == null ? null : label.trim(), value));
+                        }
+                    }
+                    sink.accept(key, fired);
+                }
+            }
+        } catch (SQLException e) {
+            metrics.increment("alerts.errors");
+            throw new RuntimeException("Checking alerts on \"" + plan.table() + "\" failed", e);
+        }
+    }
+
+    /**
+     * Reads the rules and prepares, per table, a SELECT of just the key, label and rule columns.
+     * Rules on missing tables or columns are skipped.
+     */
+    private Map<String, TablePlan> loadPlans() {
+        Map<String, List<Rule>> byTable = new HashMap<>();
+        for (Rule rule : rules()) {
+            byTable.computeIfAbsent(rule.table(), t -> new ArrayList<>()).add(rule);
+        }
+
+        MetadataService metadata = new MetadataService();
+        List<String> tables = metadata.listTables();
+        Map<String, TablePlan> loaded = new HashMap<>();
+        byTable.forEach((table, rules) -> {
+            if (!tables.contains(table)) return;
+            TablePlan plan = plan(table, rules, metadata.getColumns(table));
+            if (plan != null) loaded.put(table, plan);
+        });
+        return Map.copyOf(loaded);
+    }
+
+    private static TablePlan plan(String table, List<Rule> rules, List<ColumnData> columns) {
+        ColumnData key = columns.stream().filter(ColumnData::isPrimaryKey).findFirst().orElse(null);
+        if (key == null) return null;
+        Set<String> names = new LinkedHashSet<>();
+        columns.forEach(c -> names.add(c.getName()));
+        List<Rule> usable = rules.stream().filter(r -> names.contains(r.column())).toList();
+        if (usable.isEmpty()) return null;
+        String label = columns.stream()
+                .filter(c -> !c.isPrimaryKey() && "VARCHAR".equalsIgnoreCase(c.getType()))
+                .map(ColumnData::getName)
+                .findFirst().orElse(null);
+
+        Set<String> select = new LinkedHashSet<>();
+        select.add(key.getName());
+        if (label != null) select.add(label);
+        usable.forEach(r -> select.add(r.column()));
+        String sql = "SELECT " + select.stream().map(QueryManager::formatString).collect(Collectors.joining(", "))
+                + " FROM " + QueryManager.formatString(table);
+        return new TablePlan(table, key.getName(), label, usable, sql);
+    }
+
+    /**
+     * Also re-checks rows other workstations change in the watched tables, and reloads the rules when
+     * they edit those.
+     */
+    private synchronized void subscribeToFeed(Set<String> tables) {
+        feedSubscriptions.forEach(Runnable::run);
+        feedSubscriptions.clear();
+        feedSubscriptions.add(ChangeFeed.getInstance().subscribe(TABLE, changes -> rescanDue = true));
+        for (String table : tables) {
+            feedSubscriptions.add(ChangeFeed.getInstance().subscribe(table,
+                    changes -> changes.forEach(c -> changed(table, c.key()))));
+        }
+    }
+
+    private void run(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException ex) {
+            metrics.increment("alerts.errors");
+        }
+    }
+
+    static Double toNumber(Object value) {
+        if (value instanceof Number n) return n.doubleValue();
+        if (value instanceof String s && !s.isBlank()) {
+            try {
+                return Double.valueOf(s.trim());
+            } catch (NumberFormatException notNumeric) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    static LocalDate toDate(Object value) {
+        if (value instanceof java.sql.Date d) return d.toLocalDate();
+        if (value instanceof java.sql.Timestamp t) return t.toLocalDateTime().toLocalDate();
+        if (value instanceof java.time.LocalDateTime t) return t.toLocalDate();
+        if (value instanceof LocalDate d) return d;
+        if (!(value instanceof String s) || s.isBlank()) return null;
+        String text = s.trim().split("\\s+")[0];      // e.g. "11/2022 FZ": date followed by initials
+        for (DateTimeFormatter f : DAY_FORMATS) {
+            try {
+                return LocalDate.parse(text, f);
+            } catch (DateTimeParseException ignored) {
+                // try the next format
+            }
+        }
+        for (DateTimeFormatter f : MONTH_FORMATS) {
+            try {
+                return YearMonth.parse(text, f).atEndOfMonth();
+            } catch (DateTimeParseException ignored) {
+                // try the next format
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates the rules table with the default rules that apply to this database the first time any
+     * workstation needs it.
+     */
+    private synchronized void ensureTable() {
+        if (tableReady) return;
+        Connection connection = ConnectionManager.getInstance().getConnection();
+        try {
+            boolean exists;
+            try (ResultSet rs = connection.getMetaData().getTables(null, null, TABLE, new String[]{"TABLE"})) {
+                exists = rs.next();
+            }
+            if (exists) {
+                tableReady = true;
+                return;
+            }
+            try (Statement st = connection.createStatement()) {
+                ConnectionManager.getInstance().executeWrite(st, "CREATE TABLE " + QueryManager.formatString(TABLE)
+                        + " ([ID] COUNTER PRIMARY KEY, [Table Name] VARCHAR(255), [Column] VARCHAR(255),"
+                        + " [Kind] VARCHAR(50), [Threshold] DOUBLE, [Message] VARCHAR(255))");
+            }
+            String sql = "INSERT INTO " + QueryManager.formatString(TABLE)
+                    + " ([Table Name], [Column], [Kind], [Threshold], [Message]) VALUES (?, ?, ?, ?, ?)";
+            MetadataService metadata = new MetadataService();
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (Rule r : DEFAULT_RULES) {
+                    if (metadata.getColumns(r.table()).stream().anyMatch(c -> c.getName().equals(r.column()))) {
+                        seed(ps, r.table(), r.column(), r.kind(), r.threshold(), r.message());
+                    }
+                }
+            }
+            tableReady = true;
+        } catch (SQLException e) {
+            throw new RuntimeException("Creating alert rules failed", e);
+        }
+    }
+
+    private static void seed(PreparedStatement ps, String table, String column, Kind kind, double threshold,
+                             String message) throws SQLException {
+        ps.setString(1, table);
+        ps.setString(2, column);
+        ps.setString(3, kind.name());
+        ps.setDouble(4, threshold);
+        ps.setString(5, message);
+        ConnectionManager.getInstance().executeWrite(ps);
+    }
+}
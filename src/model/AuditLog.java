@@ -0,0 +1,246 @@
+package model;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only audit trail of every change made through the model: who changed which row of which table,
+ * from what to what, and when.
+ * <p>
+ * Writers only build an entry and put it on a bounded queue; a single daemon thread drains the queue in
+ * batches, appends each batch as JSON lines to the current segment file and forces it to disk once per batch.
+ * Segments live next to the database ({@code data/audit}) so every workstation's trail ends up in one place;
+ * each process writes its own segments, named by start time and host, and a full segment is made read-only
+ * before the next is opened. Unlike the slow-query log, entries are never dropped: if the queue is full the
+ * writing thread waits for room. Pending entries are flushed when the JVM exits.
+ * <p>
+ * Configured with system properties {@code audit.dir}, {@code audit.queueSize} (default 4096)
+ * and {@code audit.segmentBytes} (default 8 MB).
+ *
+ * @author Jordan A.
+ */
+public class AuditLog {
+    /// Singleton instance of the log.
+    private static AuditLog instance;
+
+    /// Most entries written, and forced to disk, together.
+    private static final int MAX_BATCH = 512;
+
+    /// Actor recorded for changes made before anyone logged in, e.g. the bootstrap admin account.
+    public static final String SYSTEM_ACTOR = "system";
+
+    /**
+     * One audited change.
+     *
+     * @param at        when the change was made
+     * @param actor     the user who made it
+     * @param operation "INSERT", "UPDATE", "DELETE", ...
+     * @param table     the table that was written
+     * @param key       the row's primary-key value
+     * @param oldValues the changed columns' previous values, or null if unknown
+     * @param newValues the changed columns' new values, or null for deletes
+     */
+    public record Entry(Instant at, String actor, String operation, String table, Object key,
+                        Map<String, Object> oldValues, Map<String, Object> newValues) { }
+
+    /// Hand-off between writing threads and the writer thread.
+    private final BlockingQueue<Entry> queue;
+
+    /// Entries queued and entries written so far; the exit hook waits for them to meet.
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final String segmentPrefix;
+
+    /// Current segment and its number; only touched by the writer thread.
+    private FileChannel segment;
+    private int segmentNumber;
+
+    private AuditLog() {
+        dir = Path.of(System.getProperty("audit.dir",
+                ConnectionManager.getDatabasePath().toAbsolutePath().getParent().resolve("audit").toString()));
+        segmentBytes = Long.getLong("audit.segmentBytes", 8L * 1024 * 1024);
+        queue = new ArrayBlockingQueue<>(Integer.getInteger("audit.queueSize", 4096));
+        segmentPrefix = "audit-" + DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC)
+                .format(Instant.now()) + "-" + hostName() + "-";
+
+        Thread writer = new Thread(this::drain, "audit-log");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(5000), "audit-flush"));
+    }
+
+    /**
+     * Returns the singleton {@link AuditLog}, creating it and its writer thread if necessary.
+     *
+     * @return the shared audit log
+     */
+    public static synchronized AuditLog getInstance() {
+        if (instance == null) {
+            instance = new AuditLog();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the name recorded as the actor of changes made now: the {@link UserContext} user.
+     *
+     * @return the actor's username, or {@link #SYSTEM_ACTOR} for changes made without one
+     */
+    public String getActor() {
+        User user = UserContext.get();
+        return user == null ? SYSTEM_ACTOR : user.getName();
+    }
+
+    /**
+     * Queues a change for the audit trail. Returns as soon as the entry is queued.
+     *
+     * @param operation "INSERT", "UPDATE", "DELETE", ...
+     * @param table     the table that was written
+     * @param key       the row's primary-key value
+     * @param oldValues previous values of the changed columns, or null if unknown
+     * @param newValues new values of the changed columns, or null
+     */
+    public void record(String operation, String table, Object key,
+                       Map<String, Object> oldValues, Map<String, Object> newValues) {
+        Entry entry = new Entry(Instant.now(), getActor(), operation, table, key,
+                oldValues == null ? null : new LinkedHashMap<>(oldValues),
+                newValues == null ? null : new LinkedHashMap<>(newValues));
+        queued.incrementAndGet();
+        if (!queue.offer(entry)) {
+            Metrics.getInstance().increment("audit.backpressure");
+            try {
+                queue.put(entry);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queued.decrementAndGet();
+                Metrics.getInstance().increment("audit.errors");
+            }
+        }
+    }
+
+    /**
+     * Waits until every entry queued so far is on disk.
+     *
+     * @param timeoutMillis how long to wait at most
+     * @return true if everything was written in time
+     */
+    public boolean flush(long timeoutMillis) {
+        long target = queued.get();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (written.get() < target) {
+            if (System.currentTimeMillis() > deadline) return false;
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writer loop: takes whatever is queued, up to {@link #MAX_BATCH} entries, and appends it in one write.
+     */
+    private void drain() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        StringBuilder sb = new StringBuilder(64 * 1024);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException ex) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            long start = System.nanoTime();
+            try {
+                for (Entry e : batch) {
+                    format(e, sb);
+                }
+                append(sb.toString().getBytes(StandardCharsets.UTF_8));
+                Metrics.getInstance().add("audit.written", batch.size());
+                Metrics.getInstance().timer("audit.flush").recordSince(start);
+            } catch (IOException | RuntimeException ex) {
+                Metrics.getInstance().add("audit.errors", batch.size());
+                closeSegment();
+            }
+            written.addAndGet(batch.size());
+            batch.clear();
+            sb.setLength(0);
+        }
+    }
+
+    private static void format(Entry e, StringBuilder sb) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("at", e.at());
+        line.put("actor", e.actor());
+        line.put("op", e.operation());
+        line.put("table", e.table());
+        line.put("key", e.key());
+        line.put("old", e.oldValues());
+        line.put("new", e.newValues());
+        Json.write(line, sb);
+        sb.append('\n');
+    }
+
+    /**
+     * Appends bytes to the current segment and forces them to disk, starting a new segment when it is full.
+     */
+    private void append(byte[] bytes) throws IOException {
+        if (segment != null && segment.size() + bytes.length > segmentBytes && segment.size() > 0) {
+            closeSegment();
+        }
+        if (segment == null) {
+            Files.createDirectories(dir);
+            Path file;
+            do {
+                file = dir.resolve(segmentPrefix + String.format("%04d", ++segmentNumber) + ".jsonl");
+            } while (Files.exists(file));
+            segment = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.APPEND);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+        segment.force(false);
+    }
+
+    /** Closes the current segment and makes it read-only; the next write opens a new one. */
+    private void closeSegment() {
+        if (segment == null) return;
+        try {
+            segment.close();
+        } catch (IOException ignored) {
+            // nothing more can be written to it either way
+        }
+        segment = null;
+        dir.resolve(segmentPrefix + String.format("%04d", segmentNumber) + ".jsonl").toFile().setReadOnly();
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName().replaceAll("[^A-Za-z0-9.-]", "_");
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+}
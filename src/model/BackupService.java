@@ -0,0 +1,424 @@
+package model;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Snapshot backups of the Access database file.
+ * <p>
+ * A snapshot splits the file into fixed-size chunks and stores each chunk once, deflate-compressed and
+ * named by its SHA-256, under {@code backups/chunks}. The snapshot itself is a small manifest listing the
+ * chunk hashes in file order. Access files are page-based, so an edit rewrites pages in place rather than
+ * shifting data, and an hourly snapshot of a multi-GB file only stores the few chunks that changed since
+ * the previous one. A snapshot is skipped entirely when the file's size and modification time match the
+ * latest snapshot.
+ * <p>
+ * Snapshots taken inside the application run with writes quiesced through {@link ConnectionManager}, so
+ * the file is read between whole statements. Restores stream chunk by chunk into a temporary file next to
+ * the target, verify every chunk's hash and then move it into place.
+ * <p>
+ * Configuration: {@code backup.dir} (default {@code backups}), {@code backup.intervalMinutes} (default 60,
+ * 0 disables the schedule) and {@code backup.keep}, the number of snapshots kept (default 48).
+ *
+ * @author Jordan A.
+ */
+public class BackupService {
+    /// Chunk size; a multiple of the 4 KB Access page size.
+    static final int CHUNK_SIZE = 256 * 1024;
+
+    /// Suffix of snapshot manifest files.
+    private static final String MANIFEST_SUFFIX = ".manifest";
+
+    /// Snapshot ids are their UTC creation time, so they sort chronologically.
+    private static final DateTimeFormatter ID_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneOffset.UTC);
+
+    /// Singleton instance of the service.
+    private static BackupService instance;
+
+    /**
+     * One stored snapshot.
+     *
+     * @param id        the snapshot's id, its UTC creation time
+     * @param takenAt   when the snapshot was taken
+     * @param size      size of the database file in bytes
+     * @param modified  the database file's modification time when it was read
+     * @param chunks    number of chunks making up the file
+     * @param newChunks chunks that were not stored yet and had to be written
+     * @param newBytes  compressed bytes written for those chunks
+     */
+    public record Snapshot(String id, Instant takenAt, long size, long modified,
+                           int chunks, int newChunks, long newBytes) { }
+
+    private final Path snapshotDir;
+    private final Path chunkDir;
+    private final int keep = Integer.getInteger("backup.keep", 48);
+    private final long intervalMinutes = Long.getLong("backup.intervalMinutes", 60L);
+
+    /// Started by {@link #startSchedule()}; guarded by this.
+    private ScheduledExecutorService scheduler;
+
+    private BackupService() {
+        Path root = Path.of(System.getProperty("backup.dir", System.getProperty("user.dir") + "/backups"));
+        snapshotDir = root.resolve("snapshots");
+        chunkDir = root.resolve("chunks");
+    }
+
+    /**
+     * Returns the singleton {@link BackupService}.
+     *
+     * @return the shared service
+     */
+    public static synchronized BackupService getInstance() {
+        if (instance == null) {
+            instance = new BackupService();
+        }
+        return instance;
+    }
+
+    /**
+     * Takes snapshots of the open database every {@code backup.intervalMinutes} minutes on a daemon thread.
+     * Does nothing when the interval is 0 or the schedule already runs.
+     */
+    public synchronized void startSchedule() {
+        if (scheduler != null || intervalMinutes <= 0) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "backup");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (RuntimeException ex) {
+                Metrics.getInstance().increment("backup.errors");
+            }
+        }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Snapshots the database this application has open, with writes quiesced while the file is read.
+     *
+     * @return the new snapshot, or the latest one if the file has not changed since
+     * @throws RuntimeException if the file cannot be read or the backup cannot be written
+     */
+    public Snapshot snapshot() {
+        return ConnectionManager.getInstance().quiesced(() -> snapshot(ConnectionManager.getDatabasePath()));
+    }
+
+    /**
+     * Snapshots a database file as it is on disk. Callers are responsible for nothing writing to it meanwhile.
+     *
+     * @param database the Access file to back up
+     * @return the new snapshot, or the latest one if the file has not changed since
+     * @throws RuntimeException if the file cannot be read or the backup cannot be written
+     */
+    public synchronized Snapshot snapshot(Path database) {
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(snapshotDir);
+            long size = Files.size(database);
+            long modified = Files.getLastModifiedTime(database).toMillis();
+            Optional<Snapshot> latest = latest();
+            if (latest.isPresent() && latest.get().size() == size && latest.get().modified() == modified) {
+                Metrics.getInstance().increment("backup.unchanged");
+                return latest.get();
+            }
+
+            Instant now = Instant.now();
+            List<String> hashes = new ArrayList<>((int) (size / CHUNK_SIZE) + 1);
+            int newChunks = 0;
+            long newBytes = 0;
+            MessageDigest sha = sha256();
+            ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+            try (FileChannel in = FileChannel.open(database, StandardOpenOption.READ)) {
+                while (fill(in, buffer) > 0) {
+                    buffer.flip();
+                    sha.update(buffer.duplicate());
+                    String hash = HexFormat.of().formatHex(sha.digest());
+                    hashes.add(hash);
+                    long stored = storeChunk(hash, buffer);
+                    if (stored >= 0) {
+                        newChunks++;
+                        newBytes += stored;
+                    }
+                    buffer.clear();
+                }
+            }
+
+            Snapshot snapshot = new Snapshot(ID_FORMAT.format(now), now, size, modified,
+                    hashes.size(), newChunks, newBytes);
+            writeManifest(snapshot, hashes);
+            prune();
+            Metrics.getInstance().timer("backup.snapshot").recordSince(start);
+            Metrics.getInstance().add("backup.chunks.new", newChunks);
+            Metrics.getInstance().add("backup.bytes.stored", newBytes);
+            return snapshot;
+        } catch (IOException e) {
+            Metrics.getInstance().increment("backup.errors");
+            throw new RuntimeException("Backing up " + database + " failed", e);
+        }
+    }
+
+    /**
+     * Lists the stored snapshots, oldest first.
+     *
+     * @return the snapshots
+     * @throws RuntimeException if the backup directory cannot be read
+     */
+    public List<Snapshot> list() {
+        if (!Files.isDirectory(snapshotDir)) return List.of();
+        List<Snapshot> snapshots = new ArrayList<>();
+        try (Stream<Path> files = Files.list(snapshotDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(MANIFEST_SUFFIX)) {
+                    snapshots.add(readHeader(file));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Listing backups failed", e);
+        }
+        snapshots.sort(Comparator.comparing(Snapshot::id));
+        return snapshots;
+    }
+
+    /**
+     * Returns the most recent snapshot.
+     *
+     * @return the latest snapshot, or empty if there is none
+     */
+    public Optional<Snapshot> latest() {
+        List<Snapshot> all = list();
+        return all.isEmpty() ? Optional.empty() : Optional.of(all.get(all.size() - 1));
+    }
+
+    /**
+     * Restores the database as it was at a point in time, i.e. from the latest snapshot taken at or before it.
+     *
+     * @param pointInTime the moment to restore
+     * @param target      the file to write; replaced if it exists
+     * @return the snapshot that was restored
+     * @throws RuntimeException if no snapshot is old enough or the restore fails
+     */
+    public Snapshot restoreAsOf(Instant pointInTime, Path target) {
+        Snapshot chosen = null;
+        for (Snapshot s : list()) {
+            if (!s.takenAt().isAfter(pointInTime)) chosen = s;
+        }
+        if (chosen == null) {
+            throw new RuntimeException("No backup taken at or before " + pointInTime);
+        }
+        restore(chosen.id(), target);
+        return chosen;
+    }
+
+    /**
+     * Streams a snapshot back into a database file. The file is assembled next to the target and only
+     * replaces it once every chunk has been written and verified, so a failed restore leaves the target as it was.
+     * Do not restore over the database this application has open.
+     *
+     * @param id     the snapshot to restore
+     * @param target the file to write; replaced if it exists
+     * @throws RuntimeException if the snapshot is missing or damaged, or the target cannot be written
+     */
+    public void restore(String id, Path target) {
+        long start = System.nanoTime();
+        Path manifest = snapshotDir.resolve(id + MANIFEST_SUFFIX);
+        Path dir = target.toAbsolutePath().getParent();
+        Path temp = null;
+        try {
+            Files.createDirectories(dir);
+            temp = Files.createTempFile(dir, target.getFileName().toString(), ".restore");
+            Snapshot header = readHeader(manifest);
+            MessageDigest sha = sha256();
+            byte[] buffer = new byte[64 * 1024];
+            long written = 0;
+            try (BufferedReader r = Files.newBufferedReader(manifest, StandardCharsets.UTF_8);
+                 OutputStream out = Files.newOutputStream(temp)) {
+                String line;
+                while ((line = r.readLine()) != null) {
+                    if (line.isEmpty() || line.contains(" ")) continue;      // header lines
+                    try (InputStream in = new InflaterInputStream(Files.newInputStream(chunkPath(line)))) {
+                        int n;
+                        while ((n = in.read(buffer)) > 0) {
+                            sha.update(buffer, 0, n);
+                            out.write(buffer, 0, n);
+                            written += n;
+                        }
+                    }
+                    if (!HexFormat.of().formatHex(sha.digest()).equals(line)) {
+                        throw new IOException("Chunk " + line + " is damaged");
+                    }
+                }
+            }
+            if (written != header.size()) {
+                throw new IOException("Restored " + written + " bytes, expected " + header.size());
+            }
+            moveIntoPlace(temp, target);
+            Metrics.getInstance().timer("backup.restore").recordSince(start);
+        } catch (IOException e) {
+            Metrics.getInstance().increment("backup.errors");
+            throw new RuntimeException("Restoring backup " + id + " to " + target + " failed", e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // best effort; the move normally consumed it
+                }
+            }
+        }
+    }
+
+    /** Reads until the buffer is full or the file ends; returns the bytes read. */
+    private static int fill(FileChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) break;
+        }
+        return buffer.position();
+    }
+
+    /**
+     * Stores a chunk unless a chunk with the same hash exists.
+     *
+     * @return the compressed size written, or -1 if the chunk was already stored
+     */
+    private long storeChunk(String hash, ByteBuffer data) throws IOException {
+        Path file = chunkPath(hash);
+        if (Files.exists(file)) return -1;
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), hash, ".tmp");
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (OutputStream out = new DeflaterOutputStream(Files.newOutputStream(temp), deflater, 64 * 1024)) {
+            out.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+        } finally {
+            deflater.end();
+        }
+        long stored = Files.size(temp);
+        moveIntoPlace(temp, file);
+        return stored;
+    }
+
+    /** Chunks are spread over 256 directories by the first two hex digits of their hash. */
+    private Path chunkPath(String hash) {
+        return chunkDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private void writeManifest(Snapshot s, List<String> hashes) throws IOException {
+        Path file = snapshotDir.resolve(s.id() + MANIFEST_SUFFIX);
+        Path temp = Files.createTempFile(snapshotDir, s.id(), ".tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            w.write("taken " + s.takenAt() + "\n");
+            w.write("size " + s.size() + "\n");
+            w.write("modified " + s.modified() + "\n");
+            w.write("chunks " + s.chunks() + " " + s.newChunks() + " " + s.newBytes() + "\n");
+            for (String hash : hashes) {
+                w.write(hash);
+                w.write('\n');
+            }
+        }
+        moveIntoPlace(temp, file);
+    }
+
+    /** Reads a manifest's header lines, stopping at the first chunk hash. */
+    private static Snapshot readHeader(Path manifest) throws IOException {
+        String name = manifest.getFileName().toString();
+        Instant taken = null;
+        long size = 0, modified = 0, newBytes = 0;
+        int chunks = 0, newChunks = 0;
+        try (BufferedReader r = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = r.readLine()) != null && line.contains(" ")) {
+                String[] f = line.split(" ");
+                switch (f[0]) {
+                    case "taken" -> taken = Instant.parse(f[1]);
+                    case "size" -> size = Long.parseLong(f[1]);
+                    case "modified" -> modified = Long.parseLong(f[1]);
+                    case "chunks" -> {
+                        chunks = Integer.parseInt(f[1]);
+                        newChunks = Integer.parseInt(f[2]);
+                        newBytes = Long.parseLong(f[3]);
+                    }
+                    default -> { }
+                }
+            }
+        }
+        return new Snapshot(name.substring(0, name.length() - MANIFEST_SUFFIX.length()), taken,
+                size, modified, chunks, newChunks, newBytes);
+    }
+
+    /**
+     * Deletes all but the newest {@code backup.keep} snapshots, then every chunk no remaining snapshot uses.
+     */
+    private void prune() throws IOException {
+        List<Snapshot> all = list();
+        if (all.size() <= keep) return;
+        for (Snapshot old : all.subList(0, all.size() - keep)) {
+            Files.deleteIfExists(snapshotDir.resolve(old.id() + MANIFEST_SUFFIX));
+        }
+
+        Set<String> live = new HashSet<>();
+        for (Snapshot s : all.subList(all.size() - keep, all.size())) {
+            try (Stream<String> lines = Files.lines(snapshotDir.resolve(s.id() + MANIFEST_SUFFIX))) {
+                lines.filter(l -> !l.isEmpty() && !l.contains(" ")).forEach(live::add);
+            }
+        }
+        long removed = 0;
+        try (Stream<Path> files = Files.walk(chunkDir, 2)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file) && !live.contains(file.getFileName().toString())) {
+                    Files.delete(file);
+                    removed++;
+                }
+            }
+        }
+        Metrics.getInstance().add("backup.chunks.removed", removed);
+    }
+
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Lightweight change-data feed shared by every workstation that opens the database.
+ * Each successful write through {@link QueryManager} appends (table, key, operation) to the
+ * {@value #TABLE} table, whose counter gives a global sequence number. Open views subscribe per table;
+ * a daemon thread polls for sequence numbers it has not seen yet, re-reads just those rows and hands
+ * them to the subscribers, so other clients' edits show up without reloading the whole table.
+ * <p>
+ * Changes made by this process are skipped, since its own views already applied them.
+ * The poll interval is configured with the system property {@code changeFeed.pollMs} (default 2000).
+ * <p>
+ * The poller also deletes entries older than {@code changeFeed.retentionHours} (default 24) every few minutes,
+ * so the log does not grow without bound. A running workstation reads new entries within seconds, and one
+ * that starts later reloads its views anyway, so old entries are never needed.
+ *
+ * @author Jordan A.
+ */
+public class ChangeFeed {
+    /// Name of the change-log table; hidden from the table lists.
+    public static final String TABLE = "ChangeLog";
+
+    /// Singleton instance of the feed.
+    private static ChangeFeed instance;
+
+    /**
+     * One changed row.
+     *
+     * @param seq       the change's sequence number
+     * @param table     the table the row belongs to
+     * @param key       the row's primary-key value, as text
+     * @param operation "INSERT" or "UPDATE"
+     * @param row       the row as it is now, or null if it no longer exists
+     */
+    public record Change(long seq, String table, String key, String operation, Map<String, Object> row) { }
+
+    /// Identifies this process's entries, so its own changes are not delivered back to it.
+    private final String clientId = UUID.randomUUID().toString();
+
+    /// Subscribers per table.
+    private final ConcurrentMap<String, List<Consumer<List<Change>>>> listeners = new ConcurrentHashMap<>();
+
+    private final long pollMillis = Long.getLong("changeFeed.pollMs", 2000L);
+
+    /// Age after which log entries are deleted.
+    private final long retentionMillis = TimeUnit.HOURS.toMillis(Long.getLong("changeFeed.retentionHours", 24L));
+
+    /// Time between two prunings of the log.
+    private static final long PRUNE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    /// Set once the change-log table is known to exist; guarded by this.
+    private boolean tableReady;
+
+    /// Started with the first subscription; guarded by this.
+    private ScheduledExecutorService poller;
+
+    /// Highest sequence number seen; only touched by the poller thread.
+    private long lastSeq = -1;
+
+    /// When the log was last pruned; only touched by the poller thread.
+    private long lastPruned;
+
+    private ChangeFeed() { }
+
+    /**
+     * Returns the singleton {@link ChangeFeed}.
+     *
+     * @return the shared feed
+     */
+    public static synchronized ChangeFeed getInstance() {
+        if (instance == null) {
+            instance = new ChangeFeed();
+        }
+        return instance;
+    }
+
+    /**
+     * Appends one entry to the change log. Called after the write itself succeeded, so a failure here
+     * is only counted: other workstations then miss this change until they reload.
+     *
+     * @param table     the table that was written
+     * @param key       the primary-key value of the written row
+     * @param operation "INSERT" or "UPDATE"
+     */
+    public void record(String table, Object key, String operation) {
+        String sql = "INSERT INTO " + QueryManager.formatString(TABLE)
+                + " ([Table Name], [Row Key], [Operation], [Client], [Changed At]) VALUES (?, ?, ?, ?, ?)";
+        Connection connection = ConnectionManager.getInstance().getConnection();
+        long start = System.nanoTime();
+        try {
+            ensureTable();
+        } catch (RuntimeException ex) {
+            return;
+        }
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, table);
+            ps.setString(2, String.valueOf(key));
+            ps.setString(3, operation);
+            ps.setString(4, clientId);
+            ps.setTimestamp(5, new Timestamp(System.currentTimeMillis()));
+            ConnectionManager.getInstance().executeWrite(ps);
+        } catch (SQLException e) {
+            Metrics.getInstance().increment("changeFeed.errors");
+            return;
+        }
+        Metrics.getInstance().timer("changeFeed.record").recordSince(start);
+    }
+
+    /**
+     * Registers a listener for changes other workstations make to one table.
+     * The listener runs on the feed's thread; UI callers should hop to their own thread.
+     *
+     * @param table    the table to watch
+     * @param listener receives each poll's changes to that table, oldest first
+     * @return an action that removes the listener again
+     */
+    public Runnable subscribe(String table, Consumer<List<Change>> listener) {
+        listeners.computeIfAbsent(table, t -> new CopyOnWriteArrayList<>()).add(listener);
+        startPolling();
+        return () -> listeners.getOrDefault(table, List.of()).remove(listener);
+    }
+
+    private synchronized void startPolling() {
+        if (poller != null) return;
+        ensureTable();      // here rather than on the poller, so the DDL does not race the subscriber's own statements
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "change-feed");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+                pruneIfDue();
+            } catch (RuntimeException ex) {
+                Metrics.getInstance().increment("changeFeed.errors");
+            }
+        }, 0, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Deletes log entries older than the retention window, at most once per {@link #PRUNE_INTERVAL_MILLIS}.
+     * Every workstation prunes; deleting rows another one already deleted is harmless.
+     */
+    private void pruneIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - lastPruned < PRUNE_INTERVAL_MILLIS) return;
+        lastPruned = now;
+        long start = System.nanoTime();
+        String sql = "DELETE FROM " + QueryManager.formatString(TABLE) + " WHERE [Changed At] < ?";
+        try (PreparedStatement ps = ConnectionManager.getInstance().getConnection().prepareStatement(sql)) {
+            ps.setTimestamp(1, new Timestamp(now - retentionMillis));
+            int deleted = ConnectionManager.getInstance().executeWrite(ps);
+            Metrics.getInstance().add("changeFeed.pruned", deleted);
+        } catch (SQLException e) {
+            throw new RuntimeException("Pruning change log failed", e);
+        }
+        Metrics.getInstance().timer("changeFeed.prune").recordSince(start);
+    }
+
+    /**
+     * Reads entries past {@link #lastSeq}, keeps the latest per row, re-reads those rows and notifies.
+     * {@link #lastSeq} only moves on once every row was re-read, so a failed read is retried on the next poll
+     * instead of losing the changes; rows of tables the current user may not read are skipped. A listener that
+     * throws is counted and does not keep the others from their changes.
+     * The first poll only remembers the current end of the log.
+     */
+    private void poll() {
+        ensureTable();
+        Connection connection = ConnectionManager.getInstance().getConnection();
+        long start = System.nanoTime();
+        if (lastSeq < 0) {
+            try (Statement st = connection.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT MAX([Seq]) FROM " + QueryManager.formatString(TABLE))) {
+                lastSeq = rs.next() ? rs.getLong(1) : 0;
+            } catch (SQLException e) {
+                throw new RuntimeException("Reading change log failed", e);
+            }
+            return;
+        }
+
+        long seq = lastSeq;
+        Map<String, Map<String, Change>> byTable = new LinkedHashMap<>();
+        String sql = "SELECT [Seq], [Table Name], [Row Key], [Operation], [Client] FROM "
+                + QueryManager.formatString(TABLE) + " WHERE [Seq] > ? ORDER BY [Seq]";
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setLong(1, lastSeq);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    seq = rs.getLong(1);
+                    String table = rs.getString(2);
+                    if (clientId.equals(rs.getString(5)) || !listeners.containsKey(table)) continue;
+                    Change c = new Change(seq, table, rs.getString(3), rs.getString(4), null);
+                    Map<String, Change> changes = byTable.computeIfAbsent(table, t -> new LinkedHashMap<>());
+                    changes.remove(c.key());            // keep rows in order of their latest change
+                    changes.put(c.key(), c);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Reading change log failed", e);
+        }
+        Metrics.getInstance().timer("changeFeed.poll").recordSince(start);
+
+        // re-read every row before delivering any, so a failure leaves lastSeq where it was
+        QueryManager queries = new QueryManager();
+        Map<String, List<Change>> delivered = new LinkedHashMap<>();
+        byTable.forEach((table, changes) -> {
+            List<Change> rows = new ArrayList<>(changes.size());
+            try {
+                for (Change c : changes.values()) {
+                    rows.add(new Change(c.seq(), table, c.key(), c.operation(),
+                            queries.selectByKey(table, c.key(), false)));
+                }
+            } catch (AccessDeniedException denied) {
+                Metrics.getInstance().increment("changeFeed.denied");
+                return;
+            }
+            delivered.put(table, rows);
+        });
+
+        delivered.forEach((table, rows) -> {
+            Metrics.getInstance().add("changeFeed.delivered", rows.size());
+            for (Consumer<List<Change>> listener : listeners.getOrDefault(table, List.of())) {
+                try {
+                    listener.accept(rows);
+                } catch (RuntimeException ex) {
+                    Metrics.getInstance().increment("changeFeed.listenerErrors");
+                }
+            }
+        });
+        lastSeq = seq;
+    }
+
+    /**
+     * Creates the change-log table the first time any workstation needs it.
+     */
+    private synchronized void ensureTable() {
+        if (tableReady) return;
+        Connection connection = ConnectionManager.getInstance().getConnection();
+        try {
+            boolean exists;
+            try (ResultSet rs = connection.getMetaData().getTables(null, null, TABLE, new String[]{"TABLE"})) {
+                exists = rs.next();
+            }
+            if (!exists) {
+                try (Statement st = connection.createStatement()) {
+                    ConnectionManager.getInstance().executeWrite(st, "CREATE TABLE " + QueryManager.formatString(TABLE)
+                            + " ([Seq] COUNTER PRIMARY KEY, [Table Name] VARCHAR(255), [Row Key] VARCHAR(255), [Operation] VARCHAR(10), "
+                            + "[Client] VARCHAR(64), [Changed At] DATETIME)");
+                }
+            }
+            tableReady = true;
+        } catch (SQLException e) {
+            Metrics.getInstance().increment("changeFeed.errors");
+            throw new RuntimeException("Creating change log failed", e);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Aggregate of every inventory table keyed by CAS number, so "how much acetone do we have, and where" is one
+ * hash lookup instead of a query per table.
+ * <p>
+ * Each row contributes to every CAS number it lists, so a mixture such as "67-64-1; 8032-32-4" counts towards
+ * both. Per CAS number and location the index keeps the number of rows and containers and the total stored,
+ * with amounts converted to grams or millilitres; amounts in other units (jars, droppers) count as containers only.
+ * A row holds {@code Number of Containers} (or {@code Quantity}) times {@code Amount}; a missing count is one container.
+ * <p>
+ * Inventory tables and locations are those of {@link InventoryScanner}. The index is loaded on first use
+ * and kept current incrementally: {@link QueryManager}'s inserts and updates and the {@link ChangeFeed}'s rows
+ * from other workstations move a row's contribution from its old totals to its new ones.
+ *
+ * @author Jordan A.
+ */
+public class ChemicalIndex extends InventoryScanner<ChemicalIndex.State> {
+    /// Singleton instance.
+    private static ChemicalIndex instance;
+
+    /// Grams per unit of mass, keyed by lower-case unit.
+    private static final Map<String, Double> GRAMS = Map.of(
+            "g", 1.0, "mg", 0.001, "kg", 1000.0, "lb", 453.592);
+
+    /// Millilitres per unit of volume, keyed by lower-case unit.
+    private static final Map<String, Double> MILLILITRES = Map.of(
+            "ml", 1.0, "l", 1000.0, "ul", 0.001, "µl", 0.001, "oz", 29.5735,
+            "gallon", 3785.41, "gallons", 3785.41, "quart", 946.353, "quarts", 946.353);
+
+    /**
+     * What is stored of one chemical in one location.
+     *
+     * @param location    the location as written
+     * @param rows        inventory rows
+     * @param containers  containers over those rows
+     * @param grams       mass stored, over rows whose amount is a mass
+     * @param millilitres volume stored, over rows whose amount is a volume
+     */
+    public record LocationTotal(String location, int rows, double containers, double grams, double millilitres) {
+        /** Describes the total in one line, e.g. "412C: 3 containers, 4000 mL". */
+        public String describe() {
+            return location + ": " + ChemicalIndex.describe(containers, grams, millilitres);
+        }
+    }
+
+    /**
+     * Everything stored of one CAS number, across all tables and locations.
+     *
+     * @param cas       the CAS number, e.g. "67-64-1"
+     * @param names     names the chemical is recorded under, most frequent first
+     * @param total     the sum over all locations; its location is "All locations"
+     * @param locations per location, most containers first
+     */
+    public record Totals(String cas, List<String> names, LocationTotal total, List<LocationTotal> locations) { }
+
+    /**
+     * One row's contribution.
+     *
+     * @param cas             CAS numbers the row lists
+     * @param location        normalised location, or null if unknown
+     * @param displayLocation the location as written
+     * @param containers      container count as written, or null
+     * @param amount          amount per container as written, or null
+     * @param unit            the amount's unit as written, or null
+     * @param label           the row's name
+     */
+    private record Entry(long[] cas, String location, String displayLocation, Double containers,
+                         Double amount, String unit, String label) {
+        double containerCount() {
+            return containers == null ? 1 : containers;
+        }
+
+        double stored(Map<String, Double> factors) {
+            Double factor = unit == null ? null : factors.get(unit.trim().toLowerCase(Locale.ROOT));
+            return factor == null || amount == null ? 0 : containerCount() * amount * factor;
+        }
+    }
+
+    /**
+     * Running sums of one CAS number; guarded by itself. Lookups share one snapshot until the sums change.
+     */
+    private static final class Aggregate {
+        /// Normalised location → rows, containers, grams, millilitres.
+        final Map<String, double[]> byLocation = new HashMap<>();
+        final Map<String, String> locationNames = new HashMap<>();
+        final Map<String, Integer> names = new HashMap<>();
+
+        /// Last snapshot, until the next change.
+        Totals cached;
+
+        void add(Entry e, int sign) {
+            cached = null;
+            String location = e.location() == null ? "" : e.location();
+            double[] sums = byLocation.computeIfAbsent(location, l -> new double[4]);
+            locationNames.putIfAbsent(location, e.location() == null ? "Unknown" : e.displayLocation());
+            sums[0] += sign;
+            sums[1] += sign * e.containerCount();
+            sums[2] += sign * e.stored(GRAMS);
+            sums[3] += sign * e.stored(MILLILITRES);
+            if (sums[0] <= 0) {
+                byLocation.remove(location);
+                locationNames.remove(location);
+            }
+            if (e.label() != null) names.merge(e.label(), sign, (a, b) -> a + b == 0 ? null : a + b);
+        }
+
+        Totals snapshot(long cas) {
+            if (cached != null) return cached;
+            List<LocationTotal> locations = new ArrayList<>(byLocation.size());
+            double[] all = new double[4];
+            byLocation.forEach((key, sums) -> {
+                locations.add(new LocationTotal(locationNames.get(key), (int) sums[0], sums[1], sums[2], sums[3]));
+                for (int i = 0; i < all.length; i++) all[i] += sums[i];
+            });
+            locations.sort(Comparator.comparingDouble(LocationTotal::containers).reversed()
+                    .thenComparing(LocationTotal::location));
+            List<String> byFrequency = names.entrySet().stream()
+                    .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                    .map(Map.Entry::getKey)
+                    .toList();
+            return cached = new Totals(HazardCompatibility.formatCas(cas), byFrequency,
+                    new LocationTotal("All locations", (int) all[0], all[1], all[2], all[3]), List.copyOf(locations));
+        }
+    }
+
+    /**
+     * The loaded index, replaced as a whole by {@link #rebuild()}.
+     */
+    record State(Map<String, Columns> tables, ConcurrentMap<String, Entry> rows,
+                 ConcurrentMap<Long, Aggregate> byCas) { }
+
+    private final Metrics metrics = Metrics.getInstance();
+
+    private ChemicalIndex() { }
+
+    /**
+     * Returns the singleton {@link ChemicalIndex}.
+     *
+     * @return the shared instance
+     */
+    public static synchronized ChemicalIndex getInstance() {
+        if (instance == null) {
+            instance = new ChemicalIndex();
+        }
+        return instance;
+    }
+
+    /**
+     * Looks up everything stored of a chemical.
+     *
+     * @param cas a CAS number, e.g. "67-64-1"; other text around it is ignored
+     * @return the totals, or empty if the value holds no CAS number or none is stored
+     * @throws AccessDeniedException if the current user may not read every inventory table
+     */
+    public Optional<Totals> lookup(String cas) {
+        long number = HazardCompatibility.parseCas(cas);
+        if (number == 0) return Optional.empty();
+        State s = state();
+        s.tables().keySet().forEach(t -> AccessControl.getInstance().authorizeCurrent(AccessControl.Action.READ, t));
+        long start = System.nanoTime();
+        Aggregate aggregate = s.byCas().get(number);
+        Totals totals = null;
+        if (aggregate != null) {
+            synchronized (aggregate) {
+                if (!aggregate.byLocation.isEmpty()) totals = aggregate.snapshot(number);
+            }
+        }
+        metrics.timer("chemicalIndex.lookup").recordSince(start);
+        return Optional.ofNullable(totals);
+    }
+
+    /**
+     * Looks up every chemical a value lists, e.g. both parts of a mixture's CAS field.
+     *
+     * @param casField text holding one or more CAS numbers
+     * @return the totals of each stored one, in order of appearance
+     */
+    public List<Totals> lookupAll(Object casField) {
+        List<Totals> found = new ArrayList<>();
+        for (long cas : HazardCompatibility.parseAllCas(casField)) {
+            lookup(HazardCompatibility.formatCas(cas)).ifPresent(found::add);
+        }
+        return found;
+    }
+
+    /**
+     * Moves a row's contribution after a successful insert or update.
+     *
+     * @param table  the table written
+     * @param key    the row's primary-key value
+     * @param values the columns written
+     */
+    @Override
+    public void written(String table, Object key, Map<String, Object> values) {
+        State s = loadedState();
+        if (s == null || key == null) return;         // not loaded yet: the load will read the row
+        Columns cols = s.tables().get(table);
+        if (cols == null || !touches(cols, values)) return;
+        String id = rowId(table, key);
+        synchronized (s) {
+            Entry old = s.rows().get(id);
+            replace(s, id, old, entry(table, cols, values, old));
+        }
+    }
+
+    /**
+     * Drops a deleted row's contribution.
+     *
+     * @param table the table the row was deleted from
+     * @param key   the row's primary-key value
+     */
+    @Override
+    public void removed(String table, Object key) {
+        State s = loadedState();
+        if (s == null || key == null || !s.tables().containsKey(table)) return;
+        String id = rowId(table, key);
+        synchronized (s) {
+            replace(s, id, s.rows().get(id), null);
+        }
+    }
+
+    /**
+     * Re-reads every inventory table, e.g. after the schema changed.
+     */
+    public void rebuild() {
+        reload();
+    }
+
+    /**
+     * Reads the columns the index needs from every row of every inventory table.
+     */
+    @Override
+    protected State build(Map<String, Columns> tables) {
+        long start = System.nanoTime();
+        State s = new State(tables, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        int rows = 0;
+        for (Map.Entry<String, Columns> e : tables.entrySet()) {
+            String table = e.getKey();
+            Columns cols = e.getValue();
+            rows += readRows(table, selected(cols),
+                    (key, row) -> replace(s, rowId(table, key), null, entry(table, cols, row, null)));
+        }
+        metrics.timer("chemicalIndex.load").recordSince(start);
+        metrics.add("chemicalIndex.rows", rows);
+        return s;
+    }
+
+    /** Subtracts a row's old contribution and adds its new one; either may be null. */
+    private static void replace(State s, String id, Entry old, Entry now) {
+        if (old != null) {
+            for (long cas : old.cas()) {
+                Aggregate a = s.byCas().get(cas);
+                if (a != null) {
+                    synchronized (a) {
+                        a.add(old, -1);
+                    }
+                }
+            }
+        }
+        if (now != null) {
+            for (long cas : now.cas()) {
+                Aggregate a = s.byCas().computeIfAbsent(cas, c -> new Aggregate());
+                synchronized (a) {
+                    a.add(now, 1);
+                }
+            }
+            s.rows().put(id, now);
+        } else {
+            s.rows().remove(id);
+        }
+    }
+
+    /**
+     * Works out a row's contribution from the written columns, keeping the previous values of columns not written.
+     */
+    private static Entry entry(String table, Columns cols, Map<String, Object> values, Entry old) {
+        long[] cas = values.containsKey(cols.cas()) ? HazardCompatibility.parseAllCas(values.get(cols.cas()))
+                : old == null ? new long[0] : old.cas();
+        String display = cols.location() == null ? table
+                : values.containsKey(cols.location()) ? Objects.toString(values.get(cols.location()), "").trim()
+                : old == null ? null : old.displayLocation();
+        Double containers = cols.containers() != null && values.containsKey(cols.containers())
+                ? number(values.get(cols.containers())) : old == null ? null : old.containers();
+        Double amount = cols.amount() != null && values.containsKey(cols.amount())
+                ? number(values.get(cols.amount())) : old == null ? null : old.amount();
+        String unit = cols.unit() != null && values.containsKey(cols.unit())
+                ? Objects.toString(values.get(cols.unit()), null) : old == null ? null : old.unit();
+        String label = cols.label() != null && values.containsKey(cols.label()) && values.get(cols.label()) != null
+                ? values.get(cols.label()).toString().trim() : old == null ? null : old.label();
+        return new Entry(cas, normaliseLocation(display), display, containers, amount, unit, label);
+    }
+
+    private static boolean touches(Columns cols, Map<String, Object> values) {
+        return selected(cols).stream().anyMatch(values::containsKey);
+    }
+
+    /** Reads a number written as a number or as text; null if it is neither. */
+    private static Double number(Object value) {
+        if (value instanceof Number n) return n.doubleValue();
+        if (value == null || value.toString().isBlank()) return null;
+        try {
+            return Double.valueOf(value.toString().trim());
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static List<String> selected(Columns cols) {
+        return cols.with(cols.cas(), cols.location(), cols.containers(), cols.amount(), cols.unit(), cols.label());
+    }
+
+    /** E.g. "3 containers, 4000 mL, 25 g". */
+    static String describe(double containers, double grams, double millilitres) {
+        StringBuilder sb = new StringBuilder(amount(containers)).append(containers == 1 ? " container" : " containers");
+        if (millilitres > 0) sb.append(", ").append(millilitres >= 1000 ? amount(millilitres / 1000) + " L" : amount(millilitres) + " mL");
+        if (grams > 0) sb.append(", ").append(grams >= 1000 ? amount(grams / 1000) + " kg" : amount(grams) + " g");
+        return sb.toString();
+    }
+
+    private static String amount(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.format(Locale.ROOT, "%.2f", value);
+    }
+}
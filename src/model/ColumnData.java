@@ -4,7 +4,7 @@ import java.util.Objects;
 
 /**
  * Represents metadata for a database table column.
- * Contains the column name, its SQL data type, and a flag indicating
+ * Contains the column name, its SQL data type, its size, and a flag indicating
  * whether it is part of the table's primary key.
  *
  * @author Brad J.
@@ -19,10 +19,18 @@ public class ColumnData {
         /// True if this column is part of the primary key; false otherwise.
         private final boolean isPrimaryKey;
 
+        /// Maximum length for text columns, precision for numeric ones; 0 if unknown.
+        private final int size;
+
         public ColumnData(String name, String type, boolean isPrimaryKey) {
+                this(name, type, isPrimaryKey, 0);
+        }
+
+        public ColumnData(String name, String type, boolean isPrimaryKey, int size) {
                 this.name = name;
                 this.type = type;
                 this.isPrimaryKey = isPrimaryKey;
+                this.size = size;
         }
 
         public String getName() {
@@ -37,17 +45,21 @@ public class ColumnData {
                 return isPrimaryKey;
         }
 
+        public int getSize() {
+                return size;
+        }
+
         @Override
         public boolean equals(Object o) {
                 if (this == o) return true;
                 if (o == null || getClass() != o.getClass()) return false;
                 ColumnData that = (ColumnData) o;
-                return isPrimaryKey() == that.isPrimaryKey() && Objects.equals(getName(), that.getName()) && Objects.equals(getType(), that.getType());
+                return isPrimaryKey() == that.isPrimaryKey() && getSize() == that.getSize() && Objects.equals(getName(), that.getName()) && Objects.equals(getType(), that.getType());
         }
 
         @Override
         public int hashCode() {
-                return Objects.hash(getName(), getType(), isPrimaryKey());
+                return Objects.hash(getName(), getType(), isPrimaryKey(), getSize());
         }
 
         @Override
@@ -56,6 +68,7 @@ public class ColumnData {
                         "name='" + name + '\'' +
                         ", type='" + type + '\'' +
                         ", isPrimaryKey=" + isPrimaryKey +
+                        ", size=" + size +
                         '}';
         }
 }
\ No newline at end of file
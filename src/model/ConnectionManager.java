@@ -1,8 +1,14 @@
 package model;
 
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
 /**
  * Singleton connection manager for an Access database.
@@ -22,12 +28,20 @@ public class ConnectionManager {
     /// The JDBC Connection managed by this manager.
     private final Connection connection;
 
+    /// Number of statements currently executing on {@link #connection}.
+    private final AtomicInteger activeStatements = new AtomicInteger();
+
+    /// Writes share the read side; DDL and {@link #quiesced(Supplier)} take the write side, so no write is in flight
+    /// meanwhile, e.g. while the database file is being snapshotted. Fair, so a waiting snapshot is not starved by writers.
+    private final ReentrantReadWriteLock writeGate = new ReentrantReadWriteLock(true);
+
     /**
      * Private constructor.
      * Loads the UCanAccess JDBC driver and establishes a connection to the database.
      * @throws RuntimeException if the driver cannot be loaded or the connection cannot be established.
      */
     private ConnectionManager() {
+        long start = System.nanoTime();
         try {
             // Weird way of creating a Driver object and registering it with the DriverManager.
             Class.forName("net.ucanaccess.jdbc.UcanaccessDriver");
@@ -35,8 +49,10 @@ public class ConnectionManager {
             // Contacts DriverManager to get a connection through the registered driver.
             connection = DriverManager.getConnection(DATABASE_URL);
         } catch (ClassNotFoundException | SQLException ex) {
+            Metrics.getInstance().increment("connection.errors");
             throw new RuntimeException("Cannot open DB: " + DATABASE_PATH, ex);
         }
+        Metrics.getInstance().timer("connection.open").recordSince(start);
     }
 
     /**
@@ -57,4 +73,124 @@ public class ConnectionManager {
     public Connection getConnection() {
         return connection;
     }
+
+    /**
+     * Returns the database file the application works on, without opening it.
+     *
+     * @return path of the Access database
+     */
+    public static Path getDatabasePath() {
+        return Path.of(DATABASE_PATH);
+    }
+
+    /**
+     * Executes an INSERT, UPDATE or DELETE, waiting while writes are quiesced.
+     *
+     * @param ps the prepared statement with its parameters bound
+     * @return the number of rows affected
+     * @throws SQLException if the statement fails
+     */
+    public int executeWrite(PreparedStatement ps) throws SQLException {
+        writeGate.readLock().lock();
+        try {
+            return ps.executeUpdate();
+        } finally {
+            writeGate.readLock().unlock();
+        }
+    }
+
+    /**
+     * Executes a DDL or other modifying statement on its own: UCanAccess rewrites the file's catalog for DDL,
+     * which fails if another write runs on the shared connection meanwhile.
+     *
+     * @param st  the statement to execute with
+     * @param sql the SQL text
+     * @throws SQLException if the statement fails
+     */
+    public void executeWrite(Statement st, String sql) throws SQLException {
+        writeGate.writeLock().lock();
+        try {
+            st.execute(sql);
+        } finally {
+            writeGate.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Executes a batch of INSERT, UPDATE or DELETE statements as one transaction: either every row is written
+     * or, if any fails, none is. Other writes wait until the batch has committed or rolled back, so they
+     * cannot end up in its transaction on the shared connection.
+     *
+     * @param ps the prepared statement with its batch added
+     * @return the update count of each statement in the batch
+     * @throws SQLException if the batch fails; it has been rolled back
+     */
+    public int[] executeBatch(PreparedStatement ps) throws SQLException {
+        writeGate.writeLock().lock();
+        try {
+            connection.setAutoCommit(false);
+            try {
+                int[] counts = ps.executeBatch();
+                connection.commit();
+                return counts;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } finally {
+            writeGate.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Runs an action while no write can start, after writes already running have finished.
+     * UCanAccess writes every change through to the file as it commits, so the file is consistent meanwhile.
+     *
+     * @param action the action, e.g. reading the database file for a backup
+     * @param <T>    the action's result type
+     * @return the action's result
+     */
+    public <T> T quiesced(Supplier<T> action) {
+        writeGate.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            writeGate.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks the start of a statement on the shared connection.
+     * Every call must be paired with {@link #statementFinished()}.
+     */
+    public void statementStarted() {
+        activeStatements.incrementAndGet();
+    }
+
+    /**
+     * Marks the end of a statement started with {@link #statementStarted()}.
+     */
+    public void statementFinished() {
+        activeStatements.decrementAndGet();
+    }
+
+    /**
+     * Returns how many statements are executing right now.
+     *
+     * @return the number of in-flight statements
+     */
+    public int getActiveStatements() {
+        return activeStatements.get();
+    }
+
+    /**
+     * Returns the number of pooled connections; UCanAccess runs with {@code singleConnection=true}, so this is 1.
+     *
+     * @return the pool size
+     */
+    public int getPoolSize() {
+        return 1;
+    }
 }
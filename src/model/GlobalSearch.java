@@ -0,0 +1,159 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Searches many tables at once by fanning {@link QueryManager#searchRows(String, String)} out
+ * over a small thread pool. Hits are handed to the caller in batches as each table answers,
+ * and the whole search stops as soon as the result limit is reached.
+ * <p>
+ * UCanAccess runs with a single connection, so the JDBC calls themselves are serialized by the driver;
+ * the parallelism overlaps row conversion and delivery with the next table's query and lets the
+ * first tables' results reach the screen before the slowest table has finished.
+ *
+ * @author Jordan A.
+ */
+public class GlobalSearch {
+    /// Hits are delivered at least this often while a large table is being read.
+    private static final int BATCH_SIZE = 100;
+
+    /// Shared worker pool; daemon threads so a running search never keeps the JVM alive.
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Math.min(4, Runtime.getRuntime().availableProcessors()), r -> {
+                Thread t = new Thread(r, "global-search");
+                t.setDaemon(true);
+                return t;
+            });
+
+    /**
+     * One matching row together with the table it came from.
+     */
+    public record Hit(String table, Map<String, Object> row) { }
+
+    private final QueryManager queries = new QueryManager();
+
+    /**
+     * Starts searching every table for rows whose text columns contain {@code query}.
+     * Callbacks run on worker threads; UI callers should hop to their own thread.
+     *
+     * @param tables the tables to search
+     * @param query  the substring to look for
+     * @param limit  stop after this many hits
+     * @param onHits receives each batch of hits as it becomes available
+     * @param onDone receives the total number of hits delivered, exactly once
+     * @return a handle that can cancel the search
+     */
+    public Search start(List<String> tables, String query, int limit,
+                        Consumer<List<Hit>> onHits, IntConsumer onDone) {
+        Search search = new Search(limit, onHits, onDone);
+        AtomicInteger remaining = new AtomicInteger(tables.size());
+        if (tables.isEmpty()) search.finish();
+
+        for (String table : tables) {
+            Future<?> future = POOL.submit(() -> {
+                try {
+                    if (!search.isStopped()) searchTable(search, table, query);
+                } catch (RuntimeException ex) {
+                    Metrics.getInstance().increment("globalSearch.errors");
+                } finally {
+                    if (remaining.decrementAndGet() == 0) search.finish();
+                }
+            });
+            synchronized (search) {
+                search.futures.add(future);
+            }
+        }
+        return search;
+    }
+
+    private void searchTable(Search search, String table, String query) {
+        ResultStore rows = queries.searchRows(table, query);
+        List<Hit> batch = new ArrayList<>();
+        for (int r = 0; r < rows.size() && search.claim(); r++) {
+            batch.add(new Hit(table, rows.toMap(r)));
+            if (batch.size() == BATCH_SIZE) {
+                search.deliver(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        search.deliver(batch);
+        if (search.isFull()) search.cancel();
+    }
+
+    /**
+     * Handle for one running global search.
+     */
+    public static class Search {
+        private final int limit;
+        private final Consumer<List<Hit>> onHits;
+        private final IntConsumer onDone;
+
+        /// One task per table; guarded by this.
+        private final List<Future<?>> futures = new ArrayList<>();
+
+        /// Hits reserved by workers; never exceeds {@link #limit}.
+        private final AtomicInteger claimed = new AtomicInteger();
+
+        /// Hits actually handed to {@link #onHits}; guarded by this.
+        private int delivered;
+
+        /// Set once {@link #onDone} has run; guarded by this.
+        private boolean done;
+
+        private Search(int limit, Consumer<List<Hit>> onHits, IntConsumer onDone) {
+            this.limit = limit;
+            this.onHits = onHits;
+            this.onDone = onDone;
+        }
+
+        /** Reserves room for one more hit. */
+        private boolean claim() {
+            if (isStopped()) return false;
+            if (claimed.incrementAndGet() > limit) {
+                claimed.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        private boolean isFull() {
+            return claimed.get() >= limit;
+        }
+
+        private synchronized void deliver(List<Hit> batch) {
+            if (done || batch.isEmpty()) return;
+            delivered += batch.size();
+            onHits.accept(batch);
+        }
+
+        private synchronized void finish() {
+            if (done) return;
+            done = true;
+            onDone.accept(delivered);
+        }
+
+        /** @return true once the search completed, hit its limit or was cancelled */
+        public synchronized boolean isStopped() {
+            return done;
+        }
+
+        /**
+         * Stops the search: queued tables are skipped, running ones stop at their next row,
+         * and nothing is delivered after the done callback.
+         */
+        public void cancel() {
+            synchronized (this) {
+                futures.forEach(f -> f.cancel(false));
+            }
+            finish();
+        }
+    }
+}
@@ -0,0 +1,530 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps incompatible chemicals out of the same storage location, e.g. flammables away from oxidizers.
+ * <p>
+ * Each chemical's GHS hazard classes are a bitset of {@link HazardClass}es, derived from the hazard text
+ * recorded for it. A row with hazard text, even "None", has exactly the classes its text names; a row without
+ * takes those of its CAS number, the union over the rows listing only that number. The bitsets are kept in a
+ * primitive open-addressing table keyed by the CAS number as a long, and each location keeps a count per class,
+ * so {@link #check} is a few array lookups and bit operations no matter how large the inventory is.
+ * <p>
+ * A write that may bring a hazard into a location holds that location's placement lock from {@link #check} until
+ * its {@link Reservation} is closed, after the write and {@link #written}; concurrent writes into one location
+ * are thereby checked one after the other, each against the rows the previous one stored.
+ * <p>
+ * Inventory tables and locations are those of {@link InventoryScanner}. A location named after a hazard class,
+ * such as "Flammables", counts as holding that class. The state is loaded on first use, kept current by
+ * {@link QueryManager}'s writes and the {@link ChangeFeed}, and rebuilt by {@link #scan()}, which also reports
+ * every conflict already in the inventory.
+ *
+ * @author Jordan A.
+ */
+public class HazardCompatibility extends InventoryScanner<HazardCompatibility.State> {
+    /// Singleton instance.
+    private static HazardCompatibility instance;
+
+    /**
+     * GHS hazard classes relevant to storage, with the phrases that indicate them in hazard text.
+     */
+    public enum HazardClass {
+        EXPLOSIVE("explosive", "explosive"),
+        FLAMMABLE("flammable", "flammable"),
+        OXIDIZER("oxidizing", "oxidiz", "oxidis"),
+        GAS("a gas under pressure", "gas under pressure", "compressed gas"),
+        CORROSIVE("corrosive", "corrosi", "severe skin burns"),
+        TOXIC("acutely toxic", "acute toxicity", "acute oral", "acute dermal", "acute inhal", "fatal", "toxic if"),
+        HEALTH_HAZARD("a health hazard", "carcinogen", "cancer", "mutagen", "genetic defect", "reproductive",
+                "target organ", "aspiration"),
+        IRRITANT("an irritant", "irritant", "irritation"),
+        ENVIRONMENTAL("an environmental hazard", "aquatic");
+
+        private final String description;
+        private final String[] phrases;
+        final int bit = 1 << ordinal();
+
+        HazardClass(String description, String... phrases) {
+            this.description = description;
+            this.phrases = phrases;
+        }
+
+        /** Describes the class for messages, e.g. "flammable". */
+        public String describe() {
+            return description;
+        }
+
+        static Set<HazardClass> of(int bits) {
+            Set<HazardClass> set = EnumSet.noneOf(HazardClass.class);
+            for (HazardClass c : values()) {
+                if ((bits & c.bit) != 0) set.add(c);
+            }
+            return set;
+        }
+    }
+
+    /// Per class, the classes that must not share its location; symmetric.
+    private static final int[] INCOMPATIBLE = new int[HazardClass.values().length];
+
+    static {
+        segregate(HazardClass.FLAMMABLE, HazardClass.OXIDIZER);
+        segregate(HazardClass.EXPLOSIVE, HazardClass.FLAMMABLE);
+        segregate(HazardClass.EXPLOSIVE, HazardClass.OXIDIZER);
+        segregate(HazardClass.EXPLOSIVE, HazardClass.CORROSIVE);
+        segregate(HazardClass.EXPLOSIVE, HazardClass.GAS);
+    }
+
+    private static void segregate(HazardClass a, HazardClass b) {
+        INCOMPATIBLE[a.ordinal()] |= b.bit;
+        INCOMPATIBLE[b.ordinal()] |= a.bit;
+    }
+
+    /**
+     * Conflicting chemicals found by {@link #scan()}.
+     *
+     * @param location where they are stored together
+     * @param first    one hazard class present there
+     * @param second   a class that must be kept apart from it
+     * @param firstItems  chemicals of the first class, as "name (CAS)"
+     * @param secondItems chemicals of the second class
+     */
+    public record Violation(String location, HazardClass first, HazardClass second,
+                            List<String> firstItems, List<String> secondItems) {
+        /** Describes the violation in one line for the report. */
+        public String describe() {
+            return location + ": " + first.describe() + " " + firstItems + " with " + second.describe() + " " + secondItems;
+        }
+    }
+
+    /**
+     * Where a row is stored and what it is.
+     *
+     * @param location        normalised location, or null if unknown
+     * @param displayLocation the location as written
+     * @param cas             the CAS number as a long, or 0
+     * @param textBits        classes named in the row's own hazard text
+     * @param described       whether the row has hazard text at all, even "None"
+     * @param label           the row's name, for reports
+     */
+    private record Placement(String location, String displayLocation, long cas, int textBits, boolean described,
+                             String label) {
+        /** The row's classes: those of its own hazard text, or of its chemical if it has none. */
+        int bits(CasTable table) {
+            return described ? textBits : table.get(cas);
+        }
+    }
+
+    /**
+     * Counts per hazard class of the chemicals stored in one location; guarded by itself.
+     */
+    private static final class LocationState {
+        final int[] counts = new int[HazardClass.values().length];
+
+        /// Classes the location is dedicated to by name, e.g. a "Flammables" cabinet, even if its rows lack hazard text.
+        final int dedicated;
+
+        /// The location as first written, for messages.
+        final String name;
+
+        LocationState(String location, String name) {
+            this.dedicated = classify(location);
+            this.name = name;
+        }
+
+        void add(int bits, int delta) {
+            for (HazardClass c : HazardClass.values()) {
+                if ((bits & c.bit) != 0) counts[c.ordinal()] += delta;
+            }
+        }
+
+        /** Classes present, not counting one row with the given classes. */
+        int presentWithout(int bits) {
+            int present = dedicated;
+            for (int i = 0; i < counts.length; i++) {
+                int n = counts[i] - ((bits >>> i) & 1);
+                if (n > 0) present |= 1 << i;
+            }
+            return present;
+        }
+    }
+
+    /**
+     * CAS number → class bitset, as an open-addressing hash table over primitive arrays; immutable once built.
+     */
+    private static final class CasTable {
+        private final long[] keys;
+        private final int[] bits;
+        private final int mask;
+
+        CasTable(Map<Long, Integer> entries) {
+            int capacity = Integer.highestOneBit(Math.max(16, entries.size() * 2 - 1)) << 1;
+            keys = new long[capacity];
+            bits = new int[capacity];
+            mask = capacity - 1;
+            entries.forEach((cas, b) -> {
+                int i = slot(cas);
+                while (keys[i] != 0) i = (i + 1) & mask;
+                keys[i] = cas;
+                bits[i] = b;
+            });
+        }
+
+        int get(long cas) {
+            if (cas == 0) return 0;
+            for (int i = slot(cas); keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == cas) return bits[i];
+            }
+            return 0;
+        }
+
+        private int slot(long cas) {
+            return (int) (cas ^ (cas >>> 17)) * 0x9E3779B9 >>> 7 & mask;
+        }
+    }
+
+    /**
+     * Everything {@link #check} needs, built by {@link #build}; replaced as a whole by {@link #scan()}.
+     */
+    record State(Map<String, Columns> tables, CasTable cas,
+                 ConcurrentMap<String, Placement> placements,
+                 ConcurrentMap<String, LocationState> locations) { }
+
+    private final Metrics metrics = Metrics.getInstance();
+
+    /// Placement lock per normalised location, held from a check until its write was recorded; kept across reloads.
+    private final ConcurrentMap<String, ReentrantLock> placementLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Holds a location's placement lock for one write; closing it releases the lock. Close it on the writing
+     * thread after {@link #written}, or after the write failed.
+     */
+    public static final class Reservation implements AutoCloseable {
+        /// Returned when the write needs no lock.
+        private static final Reservation NONE = new Reservation(null);
+
+        private ReentrantLock lock;
+
+        private Reservation(ReentrantLock lock) {
+            this.lock = lock;
+        }
+
+        @Override
+        public void close() {
+            if (lock != null) {
+                lock.unlock();
+                lock = null;
+            }
+        }
+    }
+
+    private HazardCompatibility() { }
+
+    /**
+     * Returns the singleton {@link HazardCompatibility}.
+     *
+     * @return the shared instance
+     */
+    public static synchronized HazardCompatibility getInstance() {
+        if (instance == null) {
+            instance = new HazardCompatibility();
+        }
+        return instance;
+    }
+
+    /**
+     * Refuses a write that would put a chemical into a location holding chemicals it must be kept apart from,
+     * and otherwise reserves the location until the write is recorded. Writes that change neither the location,
+     * the CAS number nor the hazard text are not checked, so rows already in conflict can still be edited otherwise.
+     *
+     * @param table  the table written
+     * @param key    the row's primary-key value, or null for an insert
+     * @param values the columns being written
+     * @return the reservation to close once the write and {@link #written} are done, or failed
+     * @throws HazardConflictException if the row would conflict with its new location
+     */
+    public Reservation check(String table, Object key, Map<String, Object> values) {
+        State s = state();
+        Columns cols = s.tables().get(table);
+        if (cols == null || !touchesPlacement(cols, values)) return Reservation.NONE;
+        Placement old = key == null ? null : s.placements().get(rowId(table, key));
+        Placement placed = placement(table, cols, values, old);
+        if (placed.location() == null) return Reservation.NONE;
+        int bits = placed.bits(s.cas());
+        if (bits == 0) return Reservation.NONE;
+
+        ReentrantLock lock = placementLocks.computeIfAbsent(placed.location(), l -> new ReentrantLock());
+        lock.lock();
+        try {
+            s = state();        // a scan may have replaced the state while this thread waited
+            LocationState loc = s.locations().computeIfAbsent(placed.location(), l -> new LocationState(l, placed.displayLocation()));
+            Placement current = key == null ? null : s.placements().get(rowId(table, key));
+            int others;
+            synchronized (loc) {
+                boolean self = current != null && placed.location().equals(current.location());
+                others = loc.presentWithout(self ? current.bits(s.cas()) : 0);
+            }
+            for (HazardClass c : HazardClass.values()) {
+                int clash = (bits & c.bit) == 0 ? 0 : INCOMPATIBLE[c.ordinal()] & others;
+                if (clash != 0) {
+                    metrics.increment("hazard.conflicts");
+                    throw new HazardConflictException(placed.label(), c, loc.name,
+                            HazardClass.values()[Integer.numberOfTrailingZeros(clash)]);
+                }
+            }
+        } catch (RuntimeException ex) {
+            lock.unlock();
+            throw ex;
+        }
+        return new Reservation(lock);
+    }
+
+    /**
+     * Records where a row now is after a successful insert or update.
+     *
+     * @param table  the table written
+     * @param key    the row's primary-key value
+     * @param values the columns written
+     */
+    @Override
+    public void written(String table, Object key, Map<String, Object> values) {
+        State s = loadedState();
+        if (s == null || key == null) return;         // not loaded yet: the load will read the row
+        Columns cols = s.tables().get(table);
+        if (cols == null || !touchesPlacement(cols, values)) return;
+        String id = rowId(table, key);
+        Placement old = s.placements().get(id);
+        move(s, id, old, placement(table, cols, values, old));
+    }
+
+    /**
+     * Drops a deleted row's class counts from its location.
+     *
+     * @param table the table the row was deleted from
+     * @param key   the row's primary-key value
+     */
+    @Override
+    public void removed(String table, Object key) {
+        State s = loadedState();
+        if (s == null || key == null || !s.tables().containsKey(table)) return;
+        String id = rowId(table, key);
+        Placement old = s.placements().get(id);
+        if (old != null) move(s, id, old, null);
+    }
+
+    /**
+     * Re-reads the whole inventory, replacing the in-memory state, and reports every location holding
+     * incompatible chemicals. Locations are analysed in parallel.
+     *
+     * @return the violations, by location
+     */
+    public List<Violation> scan() {
+        long start = System.nanoTime();
+        State s = reload();
+        Map<String, List<Placement>> byLocation = s.placements().values().stream()
+                .filter(p -> p.location() != null)
+                .collect(Collectors.groupingBy(Placement::location));
+        List<Violation> violations = byLocation.entrySet().parallelStream()
+                .flatMap(e -> violations(s.cas(), e.getKey(), e.getValue(), classify(e.getKey())).stream())
+                .sorted(Comparator.comparing(Violation::location).thenComparing(Violation::first))
+                .toList();
+        metrics.timer("hazard.scan").recordSince(start);
+        return violations;
+    }
+
+    private static List<Violation> violations(CasTable cas, String location, List<Placement> rows, int dedicated) {
+        HazardClass[] classes = HazardClass.values();
+        List<List<String>> byClass = new ArrayList<>(classes.length);
+        for (int i = 0; i < classes.length; i++) byClass.add(new ArrayList<>());
+        for (HazardClass c : HazardClass.of(dedicated)) byClass.get(c.ordinal()).add("(" + c.describe() + " cabinet)");
+        for (Placement p : rows) {
+            int bits = p.bits(cas);
+            for (HazardClass c : HazardClass.of(bits)) byClass.get(c.ordinal()).add(describe(p));
+        }
+        List<Violation> found = new ArrayList<>();
+        for (HazardClass a : classes) {
+            for (HazardClass b : classes) {
+                if (a.ordinal() < b.ordinal() && (INCOMPATIBLE[a.ordinal()] & b.bit) != 0
+                        && !byClass.get(a.ordinal()).isEmpty() && !byClass.get(b.ordinal()).isEmpty()) {
+                    found.add(new Violation(location, a, b, byClass.get(a.ordinal()), byClass.get(b.ordinal())));
+                }
+            }
+        }
+        return found;
+    }
+
+    private static String describe(Placement p) {
+        String cas = p.cas() == 0 ? "" : " (" + formatCas(p.cas()) + ")";
+        return (p.label() == null ? "?" : p.label()) + cas;
+    }
+
+    /**
+     * Reads the CAS number, location, hazard text and name of every row of every inventory table.
+     */
+    @Override
+    protected State build(Map<String, Columns> tables) {
+        long start = System.nanoTime();
+        ConcurrentMap<String, Placement> placements = new ConcurrentHashMap<>();
+        Map<Long, Integer> casBits = new HashMap<>();
+        tables.forEach((table, cols) ->
+                readRows(table, cols.with(cols.cas(), cols.location(), cols.hazard(), cols.label()), (key, row) -> {
+                    Placement p = placement(table, cols, row, null);
+                    placements.put(rowId(table, key), p);
+                    // only pure chemicals describe their CAS number; a mixture's hazards are its own
+                    if (p.cas() != 0 && p.textBits() != 0 && parseAllCas(row.get(cols.cas())).length == 1) {
+                        casBits.merge(p.cas(), p.textBits(), (x, y) -> x | y);
+                    }
+                }));
+
+        CasTable cas = new CasTable(casBits);
+        State s = new State(tables, cas, placements, new ConcurrentHashMap<>());
+        placements.values().forEach(p -> move(s, null, null, p));
+        metrics.timer("hazard.load").recordSince(start);
+        return s;
+    }
+
+    /** Moves a row's class counts from its old location to its new one; a null placement removes the row. */
+    private static void move(State s, String id, Placement old, Placement placed) {
+        if (old != null && old.location() != null) {
+            LocationState loc = s.locations().get(old.location());
+            if (loc != null) {
+                synchronized (loc) {
+                    loc.add(old.bits(s.cas()), -1);
+                }
+            }
+        }
+        if (placed == null) {
+            if (id != null) s.placements().remove(id);
+            return;
+        }
+        if (placed.location() != null) {
+            LocationState loc = s.locations().computeIfAbsent(placed.location(), l -> new LocationState(l, placed.displayLocation()));
+            synchronized (loc) {
+                loc.add(placed.bits(s.cas()), 1);
+            }
+        }
+        if (id != null) s.placements().put(id, placed);
+    }
+
+    /**
+     * Works out a row's placement from the written columns, keeping the previous values of columns not written.
+     */
+    private static Placement placement(String table, Columns cols, Map<String, Object> values, Placement old) {
+        String display = cols.location() == null ? table
+                : values.containsKey(cols.location()) ? Objects.toString(values.get(cols.location()), "").trim()
+                : old == null ? null : old.displayLocation();
+        String location = normaliseLocation(display);
+        long cas = values.containsKey(cols.cas()) ? parseCas(values.get(cols.cas())) : old == null ? 0 : old.cas();
+        boolean hazardWritten = cols.hazard() != null && values.containsKey(cols.hazard());
+        int textBits = hazardWritten ? classify(values.get(cols.hazard())) : old == null ? 0 : old.textBits();
+        boolean described = hazardWritten ? !Objects.toString(values.get(cols.hazard()), "").isBlank()
+                : old != null && old.described();
+        String label = cols.label() != null && values.containsKey(cols.label()) && values.get(cols.label()) != null
+                ? values.get(cols.label()).toString().trim() : old == null ? null : old.label();
+        return new Placement(location, display, cas, textBits, described, label);
+    }
+
+    private static boolean touchesPlacement(Columns cols, Map<String, Object> values) {
+        return values.containsKey(cols.cas())
+                || (cols.location() != null && values.containsKey(cols.location()))
+                || (cols.hazard() != null && values.containsKey(cols.hazard()));
+    }
+
+    /**
+     * Reads the first CAS number in a value as a long, e.g. 64-17-5 as 64175; 0 if there is none.
+     * Parsed by hand rather than with a regular expression, as it runs on every checked write.
+     */
+    static long parseCas(Object value) {
+        if (value == null) return 0;
+        String s = value.toString();
+        int start = nextCas(s, 0);
+        return start < 0 ? 0 : casAt(s, start);
+    }
+
+    /**
+     * Reads every CAS number in a value, e.g. both of a mixture's "67-64-1; 8032-32-4", without duplicates.
+     *
+     * @return the numbers as longs, in order of appearance; empty if there are none
+     */
+    static long[] parseAllCas(Object value) {
+        if (value == null) return new long[0];
+        String s = value.toString();
+        long[] found = new long[0];
+        for (int start = nextCas(s, 0); start >= 0; start = nextCas(s, start + 1)) {
+            long cas = casAt(s, start);
+            if (Arrays.stream(found).noneMatch(c -> c == cas)) {
+                found = Arrays.copyOf(found, found.length + 1);
+                found[found.length - 1] = cas;
+            }
+        }
+        return found;
+    }
+
+    /** Formats a CAS number read by {@link #parseCas}, e.g. 64175 as "64-17-5". */
+    static String formatCas(long cas) {
+        return cas / 1000 + "-" + String.format("%02d", cas / 10 % 100) + "-" + cas % 10;
+    }
+
+    /** Index where the next CAS number at or after {@code from} starts, or -1. */
+    private static int nextCas(String s, int from) {
+        int n = s.length();
+        for (int start = from; start < n; start++) {
+            if (!isDigit(s, start) || isDigit(s, start - 1)) continue;
+            int a = start;
+            while (isDigit(s, a)) a++;                  // registry part, 2 to 7 digits
+            int first = a - start;
+            if (first < 2 || first > 7 || a + 4 >= n || s.charAt(a) != '-'
+                    || !isDigit(s, a + 1) || !isDigit(s, a + 2) || s.charAt(a + 3) != '-'
+                    || !isDigit(s, a + 4) || isDigit(s, a + 5)) {
+                start = a;
+                continue;
+            }
+            return start;
+        }
+        return -1;
+    }
+
+    /** The CAS number starting at an index found by {@link #nextCas}. */
+    private static long casAt(String s, int start) {
+        int a = start;
+        while (isDigit(s, a)) a++;
+        return Long.parseLong(s, start, a, 10) * 1000
+                + (s.charAt(a + 1) - '0') * 100 + (s.charAt(a + 2) - '0') * 10 + (s.charAt(a + 4) - '0');
+    }
+
+    private static boolean isDigit(String s, int i) {
+        return i >= 0 && i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9';
+    }
+
+    /**
+     * Derives hazard classes from free hazard text such as "Flammable liquid, skin corrosion".
+     */
+    static int classify(Object text) {
+        if (text == null) return 0;
+        String s = text.toString().toLowerCase(Locale.ROOT)
+                .replace("nonflammable", "").replace("non-flammable", "").replace("not flammable", "");
+        int bits = 0;
+        for (HazardClass c : HazardClass.values()) {
+            for (String phrase : c.phrases) {
+                if (s.contains(phrase)) {
+                    bits |= c.bit;
+                    break;
+                }
+            }
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,25 @@
+package model;
+
+/**
+ * Thrown by {@link HazardCompatibility#check} when a write would store a chemical next to one it must be
+ * segregated from, e.g. a flammable in the same cabinet as an oxidizer.
+ *
+ * @author Jordan A.
+ */
+public class HazardConflictException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /// Storage location of the conflict.
+    private final String location;
+
+    public HazardConflictException(String item, HazardCompatibility.HazardClass hazard, String location,
+                                   HazardCompatibility.HazardClass stored) {
+        super((item == null ? "This chemical" : item) + " is " + hazard.describe() + " and cannot be stored in "
+                + location + ", which holds " + stored.describe() + " chemicals");
+        this.location = location;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+}
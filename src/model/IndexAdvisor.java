@@ -0,0 +1,300 @@
+package model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recommends indexes from the workload {@link QueryManager} actually runs.
+ * Every query reports the columns it filtered or sorted on; columns used often enough that no index
+ * leads with are recommended, and {@link #apply(List)} creates the chosen indexes and benchmarks the
+ * recorded queries before and after.
+ * <p>
+ * Substring searches ({@code LIKE '%text%'}) are counted too but never recommended:
+ * no B-tree index can answer them, so the report lists them separately.
+ *
+ * @author Jordan A.
+ */
+public class IndexAdvisor {
+    /// Singleton instance of the advisor.
+    private static IndexAdvisor instance;
+
+    /// Each recorded query is re-run this many times per benchmark; the median is reported.
+    private static final int BENCHMARK_RUNS = 5;
+
+    /**
+     * How one column has been used by the recorded workload.
+     */
+    private static final class Usage {
+        final LongAdder filters = new LongAdder();
+        final LongAdder sorts = new LongAdder();
+        final LongAdder substring = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+
+        /// Most recent query that filtered or sorted on the column; replayed by the benchmark.
+        volatile Query sample;
+    }
+
+    /**
+     * A column worth indexing.
+     *
+     * @param table   the table
+     * @param column  the column
+     * @param filters queries that filtered on it
+     * @param sorts   queries that sorted on it
+     * @param totalMs time spent in those queries
+     */
+    public record Recommendation(String table, String column, long filters, long sorts, double totalMs) {
+        public long uses() {
+            return filters + sorts;
+        }
+    }
+
+    /**
+     * Timing of one recommendation's sample query around index creation.
+     *
+     * @param recommendation what was applied
+     * @param indexName      the index created, or null if creation failed
+     * @param beforeMs       median time before the index
+     * @param afterMs        median time after the index
+     * @param error          why creation failed, or null
+     */
+    public record Benchmark(Recommendation recommendation, String indexName, double beforeMs, double afterMs, String error) { }
+
+    /**
+     * Outcome of {@link #apply(List)}.
+     */
+    public record Report(Instant takenAt, List<Benchmark> results, Map<String, Long> substringSearches) {
+
+        /**
+         * Renders the report as fixed-width text.
+         *
+         * @return the formatted report
+         */
+        public String format() {
+            StringBuilder sb = new StringBuilder("Index advisor report at ").append(takenAt).append("\n\n");
+            if (results.isEmpty()) sb.append("No indexes were created.\n");
+            for (Benchmark b : results) {
+                Recommendation r = b.recommendation();
+                if (b.error() != null) {
+                    sb.append(String.format(Locale.ROOT, "  %-45s FAILED: %s%n", r.table() + "." + r.column(), b.error()));
+                } else {
+                    sb.append(String.format(Locale.ROOT, "  %-45s %9.2f ms -> %9.2f ms  (%s)%n",
+                            r.table() + "." + r.column(), b.beforeMs(), b.afterMs(), b.indexName()));
+                }
+            }
+            if (!substringSearches.isEmpty()) {
+                sb.append("\nSubstring searches (LIKE '%...%', not indexable):\n");
+                substringSearches.forEach((col, n) -> sb.append(String.format(Locale.ROOT, "  %-45s %d%n", col, n)));
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Writes {@link #format()} to a file, creating parent directories as needed.
+         *
+         * @param path the destination file
+         */
+        public void writeTo(Path path) {
+            try {
+                if (path.getParent() != null) Files.createDirectories(path.getParent());
+                Files.writeString(path, format(), StandardCharsets.UTF_8);
+            } catch (IOException ex) {
+                throw new RuntimeException("Writing index report failed", ex);
+            }
+        }
+    }
+
+    /// Usage per table, then per column.
+    private final ConcurrentMap<String, ConcurrentMap<String, Usage>> workload = new ConcurrentHashMap<>();
+
+    private IndexAdvisor() { }
+
+    /**
+     * Returns the singleton {@link IndexAdvisor}.
+     *
+     * @return the shared advisor
+     */
+    public static synchronized IndexAdvisor getInstance() {
+        if (instance == null) {
+            instance = new IndexAdvisor();
+        }
+        return instance;
+    }
+
+    /**
+     * Records the columns a query filtered and sorted on.
+     *
+     * @param query the query that ran
+     * @param nanos how long it took
+     */
+    public void record(Query query, long nanos) {
+        Set<String> indexable = new HashSet<>(query.indexableColumns());
+        Set<String> sorted = new HashSet<>();
+        query.getOrders().forEach(o -> sorted.add(o.column()));
+
+        for (String col : indexable) {
+            Usage u = usage(query.getTable(), col);
+            u.filters.increment();
+            u.nanos.add(nanos);
+            u.sample = query;
+        }
+        for (String col : sorted) {
+            Usage u = usage(query.getTable(), col);
+            u.sorts.increment();
+            if (!indexable.contains(col)) u.nanos.add(nanos);
+            u.sample = query;
+        }
+        for (String col : new HashSet<>(query.referencedColumns())) {
+            if (!indexable.contains(col) && !sorted.contains(col)) usage(query.getTable(), col).substring.increment();
+        }
+    }
+
+    /**
+     * Records a single-row lookup by key, such as the WHERE clause of an UPDATE.
+     *
+     * @param table  the table
+     * @param column the key column
+     * @param nanos  how long the statement took
+     */
+    public void recordLookup(String table, String column, long nanos) {
+        Usage u = usage(table, column);
+        u.filters.increment();
+        u.nanos.add(nanos);
+    }
+
+    private Usage usage(String table, String column) {
+        return workload.computeIfAbsent(table, t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(column, c -> new Usage());
+    }
+
+    /** Forgets the recorded workload. */
+    public void reset() {
+        workload.clear();
+    }
+
+    /**
+     * Lists columns used at least {@code minUses} times that no existing index starts with,
+     * most expensive first.
+     *
+     * @param minUses how often a column must have been filtered or sorted on
+     * @return the recommendations
+     */
+    public List<Recommendation> recommend(int minUses) {
+        List<Recommendation> out = new ArrayList<>();
+        workload.forEach((table, columns) -> {
+            Set<String> indexed = leadingIndexColumns(table);
+            columns.forEach((column, u) -> {
+                Recommendation r = new Recommendation(table, column, u.filters.sum(), u.sorts.sum(), u.nanos.sum() / 1e6);
+                if (r.uses() >= minUses && !indexed.contains(column.toUpperCase(Locale.ROOT))) out.add(r);
+            });
+        });
+        out.sort(Comparator.comparingDouble(Recommendation::totalMs).reversed());
+        return out;
+    }
+
+    /**
+     * Creates an index for each recommendation, timing its most recent query before and after.
+     *
+     * @param recommendations the indexes to create
+     * @return the benchmark report
+     * @throws AccessDeniedException if the current user may not change indexes
+     */
+    public Report apply(List<Recommendation> recommendations) {
+        AccessControl.getInstance().authorizeCurrent(AccessControl.Action.TUNE_PERFORMANCE, null);
+        QueryManager queries = new QueryManager();
+        List<Benchmark> results = new ArrayList<>();
+        for (Recommendation r : recommendations) {
+            Query sample = usage(r.table(), r.column()).sample;
+            double before = sample == null ? 0 : benchmark(queries, sample);
+            String name = indexName(r.table(), r.column());
+            try {
+                createIndex(name, r.table(), r.column());
+            } catch (RuntimeException ex) {
+                results.add(new Benchmark(r, null, before, before, ex.getMessage()));
+                continue;
+            }
+            double after = sample == null ? 0 : benchmark(queries, sample);
+            results.add(new Benchmark(r, name, before, after, null));
+        }
+        return new Report(Instant.now(), results, substringSearches());
+    }
+
+    /**
+     * Columns searched with substring matches, as "table.column" → count.
+     */
+    private Map<String, Long> substringSearches() {
+        Map<String, Long> out = new TreeMap<>();
+        workload.forEach((table, columns) -> columns.forEach((column, u) -> {
+            long n = u.substring.sum();
+            if (n > 0) out.put(table + "." + column, n);
+        }));
+        return out;
+    }
+
+    private static double benchmark(QueryManager queries, Query sample) {
+        double[] ms = new double[BENCHMARK_RUNS];
+        for (int i = 0; i < ms.length; i++) {
+            long start = System.nanoTime();
+            queries.select(sample, false);      // replays must not add to the workload being measured
+            ms[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(ms);
+        return ms[ms.length / 2];
+    }
+
+    /**
+     * Upper-cased names of the columns that existing indexes start with; UCanAccess reports them upper-case.
+     */
+    private static Set<String> leadingIndexColumns(String table) {
+        Set<String> cols = new HashSet<>();
+        Connection connection = ConnectionManager.getInstance().getConnection();
+        try {
+            DatabaseMetaData md = connection.getMetaData();
+            try (ResultSet rs = md.getIndexInfo(null, null, table, false, true)) {
+                while (rs.next()) {
+                    String col = rs.getString("COLUMN_NAME");
+                    if (col != null && rs.getShort("ORDINAL_POSITION") == 1) cols.add(col.toUpperCase(Locale.ROOT));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error reading indexes of " + table, e);
+        }
+        return cols;
+    }
+
+    private static void createIndex(String name, String table, String column) {
+        String sql = "CREATE INDEX " + QueryManager.formatString(name)
+                + " ON " + QueryManager.formatString(table) + " (" + QueryManager.formatString(column) + ")";
+        Connection connection = ConnectionManager.getInstance().getConnection();
+        try (Statement st = connection.createStatement()) {
+            ConnectionManager.getInstance().executeWrite(st, sql);
+            Metrics.getInstance().increment("indexAdvisor.created");
+        } catch (SQLException e) {
+            throw new RuntimeException("Creating index " + name + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static String indexName(String table, String column) {
+        return ("ix_" + table + "_" + column).replaceAll("[^A-Za-z0-9]+", "_");
+    }
+}
@@ -0,0 +1,23 @@
+package model;
+
+/**
+ * Thrown by {@link RowSchema} when a value cannot be stored in its column, e.g. text in a number column
+ * or a CAS number whose check digit is wrong.
+ *
+ * @author Jordan A.
+ */
+public class InvalidValueException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    /// Column the value was meant for.
+    private final String column;
+
+    public InvalidValueException(String column, String problem) {
+        super(column + ": " + problem);
+        this.column = column;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+}
@@ -0,0 +1,211 @@
+package model;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Base of the in-memory views over every inventory table, such as {@link HazardCompatibility} and
+ * {@link ChemicalIndex}. It finds the inventory tables and their columns, reads their rows, loads the
+ * subclass's state on first use and passes other workstations' changes from the {@link ChangeFeed} to
+ * {@link #written} and {@link #removed}.
+ * <p>
+ * Inventory tables are those with a primary key and a CAS column; the SDS library is not a storage location.
+ * A location is the value of a table's {@code Room} column, or the table itself for tables without one.
+ *
+ * @param <S> the loaded state, replaced as a whole on every load
+ * @author Jordan A.
+ */
+abstract class InventoryScanner<S> {
+    /// Tables with a CAS column that do not describe stored chemicals.
+    static final Set<String> NOT_STORAGE = Set.of("SDS");
+
+    /**
+     * The columns of an inventory table the views read; any but the key and CAS column may be null.
+     *
+     * @param key        the primary key
+     * @param cas        the first column whose name starts with "CAS"
+     * @param location   the {@code Room} column
+     * @param containers {@code Number of Containers} or {@code Quantity}
+     * @param amount     the amount per container
+     * @param unit       the amount's unit
+     * @param hazard     the first column whose name starts with "Hazard"
+     * @param label      the first other text column, naming the row
+     */
+    record Columns(String key, String cas, String location, String containers, String amount, String unit,
+                   String hazard, String label) {
+        /** The key column followed by those of the given columns the table has, e.g. for a SELECT. */
+        List<String> with(String... columns) {
+            List<String> names = new ArrayList<>(List.of(key));
+            for (String c : columns) {
+                if (c != null && !names.contains(c)) names.add(c);
+            }
+            return names;
+        }
+    }
+
+    /// Loaded state; null until first use.
+    private volatile S state;
+
+    private final List<Runnable> feedSubscriptions = new ArrayList<>();
+
+    /**
+     * Builds the state from the inventory tables, typically with {@link #readRows}.
+     *
+     * @param tables the inventory tables and their columns
+     * @return the new state
+     */
+    protected abstract S build(Map<String, Columns> tables);
+
+    /**
+     * Updates the state after a row was inserted or updated, here or on another workstation.
+     *
+     * @param table  the table written
+     * @param key    the row's primary-key value
+     * @param values the columns written
+     */
+    public abstract void written(String table, Object key, Map<String, Object> values);
+
+    /**
+     * Updates the state after a row was deleted, here or on another workstation.
+     *
+     * @param table the table the row was deleted from
+     * @param key   the row's primary-key value
+     */
+    public abstract void removed(String table, Object key);
+
+    /** The state, loading it on first use. */
+    protected S state() {
+        S s = state;
+        if (s != null) return s;
+        synchronized (this) {
+            if (state == null) state = load();
+            return state;
+        }
+    }
+
+    /** The state if it was loaded already, otherwise null; writes before the load need no bookkeeping. */
+    protected S loadedState() {
+        return state;
+    }
+
+    /** Re-reads every inventory table and replaces the state. */
+    protected S reload() {
+        S s = load();
+        state = s;
+        return s;
+    }
+
+    /** Re-reads every inventory table if the state was loaded, e.g. after a write to a row whose key is unknown. */
+    void refresh() {
+        if (state != null) reload();
+    }
+
+    private synchronized S load() {
+        Map<String, Columns> tables = inventoryTables();
+        S s = build(tables);
+        subscribeToFeed(tables.keySet());
+        return s;
+    }
+
+    /**
+     * Follows rows other workstations insert, change or delete in the inventory tables.
+     */
+    private synchronized void subscribeToFeed(Set<String> tables) {
+        feedSubscriptions.forEach(Runnable::run);
+        feedSubscriptions.clear();
+        for (String table : tables) {
+            feedSubscriptions.add(ChangeFeed.getInstance().subscribe(table, changes -> changes.forEach(c -> {
+                if (c.row() != null) written(table, c.key(), c.row());
+                else removed(table, c.key());
+            })));
+        }
+    }
+
+    /**
+     * Finds the inventory tables and the columns the views read.
+     */
+    static Map<String, Columns> inventoryTables() {
+        MetadataService metadata = new MetadataService();
+        Map<String, Columns> tables = new HashMap<>();
+        for (String table : metadata.listTables()) {
+            if (NOT_STORAGE.contains(table)) continue;
+            Columns cols = columns(metadata.getColumns(table));
+            if (cols != null) tables.put(table, cols);
+        }
+        return Map.copyOf(tables);
+    }
+
+    /**
+     * Resolves the columns by name; null for tables without a CAS column or primary key.
+     */
+    static Columns columns(List<ColumnData> columns) {
+        String key = null, cas = null, location = null, containers = null, amount = null, unit = null,
+                hazard = null, label = null;
+        for (ColumnData c : columns) {
+            String name = c.getName();
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (c.isPrimaryKey()) key = name;
+            else if (cas == null && lower.startsWith("cas")) cas = name;
+            else if (location == null && lower.equals("room")) location = name;
+            else if (containers == null && (lower.equals("number of containers") || lower.equals("quantity"))) containers = name;
+            else if (amount == null && lower.equals("amount")) amount = name;
+            else if (unit == null && lower.equals("unit")) unit = name;
+            else if (hazard == null && lower.startsWith("hazard")) hazard = name;
+            else if (label == null && "VARCHAR".equalsIgnoreCase(c.getType())) label = name;
+        }
+        return key == null || cas == null ? null : new Columns(key, cas, location, containers, amount, unit, hazard, label);
+    }
+
+    /**
+     * Reads some columns of every row of a table.
+     *
+     * @param table   the table
+     * @param columns the columns to read, the primary key first
+     * @param sink    receives each row's key and its values by column name
+     * @return the number of rows read
+     */
+    static int readRows(String table, List<String> columns, BiConsumer<Object, Map<String, Object>> sink) {
+        String sql = "SELECT " + columns.stream().map(QueryManager::formatString).collect(Collectors.joining(", "))
+                + " FROM " + QueryManager.formatString(table);
+        Connection connection = ConnectionManager.getInstance().getConnection();
+        int rows = 0;
+        try (Statement st = connection.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                Map<String, Object> row = new HashMap<>();
+                for (String name : columns) row.put(name, rs.getObject(name));
+                sink.accept(row.get(columns.get(0)), row);
+                rows++;
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException("Reading \"" + table + "\" failed", ex);
+        }
+        return rows;
+    }
+
+    /** Identifies a row across tables. */
+    static String rowId(String table, Object key) {
+        return table + '\u0000' + key;
+    }
+
+    /** "412 D" and "412d" are the same room. */
+    static String normaliseLocation(Object value) {
+        if (value == null) return null;
+        String s = value.toString();
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!Character.isWhitespace(c)) sb.append(Character.toUpperCase(c));
+        }
+        return sb.isEmpty() ? null : sb.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event emitted by {@link UserManager#verifyLogin(String, String, String)}.
+ * The event duration covers the user lookup and the BCrypt check.
+ * @author Jordan A.
+ */
+@Name("inventory.Login")
+@Label("Login")
+@Category({"Chemical Inventory", "Authentication"})
+@Description("One login verification")
+public class LoginEvent extends Event {
+    @Label("Username")
+    String username;
+
+    @Label("Table")
+    String table = "Users";
+
+    @Label("Rows")
+    int rows;
+
+    @Label("Success")
+    boolean success;
+}
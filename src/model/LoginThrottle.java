@@ -0,0 +1,178 @@
+package model;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Slows down password guessing. Failed logins are counted per username and per host in a sliding window;
+ * after a few failures each further attempt must wait longer (doubling up to a maximum), and too many failures
+ * lock the username or host out for a while. {@link UserManager#verifyLogin(String, String, String)} asks
+ * before it queries the database or checks a BCrypt hash, so a throttled attempt costs almost nothing.
+ * <p>
+ * Counters are immutable states swapped in with compare-and-set, so concurrent logins never block each
+ * other. The window is approximated from the counts of the current and the previous fixed window, weighted by
+ * how much of the previous one still overlaps. A successful login clears its username's counter; host counters
+ * only decay, so one valid account cannot be used to reset guessing against others.
+ * <p>
+ * Logins on a workstation's own login screen have no host: everyone at a shared kiosk would count as one
+ * host, and enough typos between them would lock the kiosk out for every user. Those attempts are only
+ * counted per username.
+ * <p>
+ * Configured with system properties {@code login.windowMinutes} (default 15), {@code login.freeAttempts} (3),
+ * {@code login.maxDelaySeconds} (30), {@code login.userLockoutAttempts} (10), {@code login.hostLockoutAttempts}
+ * (50) and {@code login.lockoutMinutes} (15).
+ *
+ * @author Jordan A.
+ */
+public class LoginThrottle {
+    /// Singleton instance.
+    private static LoginThrottle instance;
+
+    /// Delay after the first failure beyond the free attempts; doubles with each further failure.
+    private static final long BASE_DELAY_MS = 1000;
+
+    /// Counters are swept for idle entries once this many are held.
+    private static final int SWEEP_AT = 100_000;
+
+    /**
+     * Failures of one username or host.
+     *
+     * @param windowStart start of the current fixed window
+     * @param current     failures in the current window
+     * @param previous    failures in the window before
+     * @param lastFailure time of the most recent failure
+     * @param lockedUntil attempts are refused until then
+     */
+    private record Counter(long windowStart, int current, int previous, long lastFailure, long lockedUntil) {
+        /** Moves the windows forward to the one containing {@code now}. */
+        Counter roll(long now, long window) {
+            long periods = (now - windowStart) / window;
+            if (periods <= 0) return this;
+            return new Counter(windowStart + periods * window, 0, periods == 1 ? current : 0, lastFailure, lockedUntil);
+        }
+
+        /** Estimated failures within the last window length. */
+        double failures(long now, long window) {
+            double overlap = 1.0 - (double) (now - windowStart) / window;
+            return current + previous * Math.max(0, overlap);
+        }
+    }
+
+    /**
+     * How many failures a key may have before being slowed down, and before being locked out.
+     */
+    private record Policy(int freeAttempts, int lockoutAttempts) { }
+
+    private final long window = Duration.ofMinutes(Long.getLong("login.windowMinutes", 15L)).toMillis();
+    private final long maxDelay = Duration.ofSeconds(Long.getLong("login.maxDelaySeconds", 30L)).toMillis();
+    private final long lockout = Duration.ofMinutes(Long.getLong("login.lockoutMinutes", 15L)).toMillis();
+    private final Policy userPolicy = new Policy(Integer.getInteger("login.freeAttempts", 3),
+            Integer.getInteger("login.userLockoutAttempts", 10));
+    private final Policy hostPolicy = new Policy(Integer.getInteger("login.freeAttempts", 3),
+            Integer.getInteger("login.hostLockoutAttempts", 50));
+
+    /// Counters by "u:" + lower-case username and "h:" + host.
+    private final ConcurrentMap<String, AtomicReference<Counter>> counters = new ConcurrentHashMap<>();
+
+    private final Metrics metrics = Metrics.getInstance();
+
+    private LoginThrottle() { }
+
+    /**
+     * Returns the singleton {@link LoginThrottle}.
+     *
+     * @return the shared throttle
+     */
+    public static synchronized LoginThrottle getInstance() {
+        if (instance == null) {
+            instance = new LoginThrottle();
+        }
+        return instance;
+    }
+
+    /**
+     * Refuses a login attempt that comes too soon after previous failures.
+     *
+     * @param username the username being tried
+     * @param host     where the attempt comes from, or null for this workstation's login screen
+     * @throws LoginThrottledException if the attempt must wait or the username or host is locked out
+     */
+    public void check(String username, String host) {
+        long now = now();
+        long wait = waitFor(userKey(username), userPolicy, now);
+        if (host != null) wait = Math.max(wait, waitFor(hostKey(host), hostPolicy, now));
+        if (wait > 0) {
+            metrics.increment("login.throttled");
+            throw new LoginThrottledException(Duration.ofMillis(wait));
+        }
+    }
+
+    /**
+     * Counts a failed login against the username and the host.
+     *
+     * @param username the username that was tried
+     * @param host     where the attempt came from, or null for this workstation's login screen
+     */
+    public void failed(String username, String host) {
+        long now = now();
+        fail(userKey(username), userPolicy, now);
+        if (host != null) fail(hostKey(host), hostPolicy, now);
+        if (counters.size() > SWEEP_AT) sweep(now);
+    }
+
+    /**
+     * Clears the username's failures after a successful login.
+     *
+     * @param username the user who logged in
+     */
+    public void succeeded(String username) {
+        counters.remove(userKey(username));
+    }
+
+    private long waitFor(String key, Policy policy, long now) {
+        AtomicReference<Counter> ref = counters.get(key);
+        if (ref == null) return 0;
+        Counter c = ref.get().roll(now, window);
+        if (c.lockedUntil() > now) return c.lockedUntil() - now;
+        int excess = (int) c.failures(now, window) - policy.freeAttempts();
+        if (excess < 0) return 0;
+        long delay = Math.min(maxDelay, BASE_DELAY_MS << Math.min(excess, 20));
+        return Math.max(0, c.lastFailure() + delay - now);
+    }
+
+    private void fail(String key, Policy policy, long now) {
+        AtomicReference<Counter> ref = counters.computeIfAbsent(key,
+                k -> new AtomicReference<>(new Counter(now, 0, 0, 0, 0)));
+        Counter updated = ref.updateAndGet(c -> {
+            Counter r = c.roll(now, window);
+            Counter n = new Counter(r.windowStart(), r.current() + 1, r.previous(), now, r.lockedUntil());
+            return n.failures(now, window) >= policy.lockoutAttempts() && n.lockedUntil() <= now
+                    ? new Counter(n.windowStart(), n.current(), n.previous(), now, now + lockout)
+                    : n;
+        });
+        if (updated.lockedUntil() == now + lockout) metrics.increment("login.lockouts");
+    }
+
+    /** Drops counters whose failures have left the window and whose lockout has ended. */
+    private void sweep(long now) {
+        counters.values().removeIf(ref -> {
+            Counter c = ref.get();
+            return now - c.lastFailure() > 2 * window && c.lockedUntil() <= now;
+        });
+    }
+
+    private static String userKey(String username) {
+        return "u:" + (username == null ? "" : username.trim().toLowerCase(Locale.ROOT));
+    }
+
+    private static String hostKey(String host) {
+        return "h:" + host;
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1_000_000;
+    }
+}
@@ -0,0 +1,25 @@
+package model;
+
+import java.time.Duration;
+
+/**
+ * Thrown by {@link LoginThrottle#check} when a login attempt follows too many failures
+ * for the username or the host and must wait.
+ *
+ * @author Jordan A.
+ */
+public class LoginThrottledException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /// How long until the next attempt is accepted.
+    private final Duration retryAfter;
+
+    public LoginThrottledException(Duration retryAfter) {
+        super("Too many failed logins; try again in " + Math.max(1, (retryAfter.toMillis() + 999) / 1000) + " s");
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
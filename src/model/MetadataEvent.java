@@ -0,0 +1,26 @@
+package model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event emitted by {@link MetadataService#getColumns(String)}.
+ * @author Jordan A.
+ */
+@Name("inventory.Metadata")
+@Label("Column Metadata")
+@Category({"Chemical Inventory", "Database"})
+@Description("One column metadata lookup")
+public class MetadataEvent extends Event {
+    @Label("Table")
+    String table;
+
+    @Label("Columns")
+    int rows;
+
+    @Label("Cached")
+    boolean cached;
+}
@@ -7,6 +7,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Provides methods for retrieving database metadata such as table names and column definitions.
@@ -15,9 +17,18 @@ import java.util.Set;
  */
 
 public class MetadataService {
+    /// Column metadata per table, shared by every instance since they all use the same connection.
+    private static final ConcurrentMap<String, List<ColumnData>> COLUMN_CACHE = new ConcurrentHashMap<>();
+
+    /// Names from {@link #listTables()} for {@link #hasTable}; null until first use or after {@link #invalidate}.
+    private static volatile Set<String> tableNames;
+
     /// JDBC connection used to obtain metadata.
     private final Connection connection;
 
+    /// Registry receiving metadata call latencies.
+    private final Metrics metrics = Metrics.getInstance();
+
     /**
      * Constructs a {@link MetadataService} using the singleton {@link ConnectionManager}.
      */
@@ -27,7 +38,8 @@ public class MetadataService {
 
     /**
      * Retrieves the names of all user tables in the database,
-     * excluding system tables whose names start with "MSys".
+     * excluding system tables whose names start with "MSys", the {@link ChangeFeed} log,
+     * the {@link AccessControl} grants and the {@link AlertEngine} rules.
      *
      * @return a list of table names that do not start with "MSys"
      * @throws RuntimeException if a database access error occurs
@@ -35,36 +47,92 @@ public class MetadataService {
     public List<String> listTables() {
         List<String> tableList = new ArrayList<>();
 
+        long start = System.nanoTime();
         try (ResultSet rs = connection.getMetaData().getTables(null, null, "%", new String[]{"TABLE"})) {
             while (rs.next()) {
                 String tableName = rs.getString("TABLE_NAME");
 
-                //This will ignore tables that start with "MSys"
-                if (!tableName.startsWith("MSys")) {
+                //This will ignore tables that start with "MSys", the change log kept by ChangeFeed, the role grants and the alert rules
+                if (!tableName.startsWith("MSys") && !tableName.equals(ChangeFeed.TABLE)
+                        && !tableName.equals(AccessControl.TABLE) && !tableName.equals(AlertEngine.TABLE)) {
                     tableList.add(tableName);
                 }
             }
         } catch (SQLException e) {
             //This catch will wrap and throw any SQL exceptions that are left as unchecked runtime errors
+            metrics.increment("metadata.errors");
             throw new RuntimeException("Error retrieving table list", e);
         }
 
+        metrics.timer("metadata.listTables").recordSince(start);
         return tableList;
     }
 
+    /**
+     * Checks whether {@link #listTables()} would include a table, from a cached copy of the list.
+     * Cheap enough for every request.
+     *
+     * @param tableName the exact table name
+     * @return true if the table exists and is not hidden
+     */
+    public boolean hasTable(String tableName) {
+        Set<String> names = tableNames;
+        if (names == null) {
+            metrics.increment("cache.tables.miss");
+            names = Set.copyOf(listTables());
+            tableNames = names;
+        }
+        return names.contains(tableName);
+    }
+
     /**
      * Retrieves metadata about the columns of the specified table.
      * Each ColumnData contains the column name, data type, and a flag
      * indicating whether it is part of the primary key.
+     * Results are cached per table until {@link #invalidate(String)} is called.
      *
      * @param tableName the name of the table whose column metadata is retrieved
-     * @return a list of ColumnData for each column in the given table
+     * @return an unmodifiable list of ColumnData for each column in the given table
      * @throws RuntimeException if a database access error occurs
      */
     public List<ColumnData> getColumns(String tableName) {
+        MetadataEvent event = new MetadataEvent();
+        event.begin();
+        List<ColumnData> columns = COLUMN_CACHE.get(tableName);
+        if (columns != null) {
+            metrics.increment("cache.columns.hit");
+            event.cached = true;
+        } else {
+            metrics.increment("cache.columns.miss");
+            columns = List.copyOf(loadColumns(tableName));
+            COLUMN_CACHE.put(tableName, columns);
+        }
+        if (event.shouldCommit()) {
+            event.table = tableName;
+            event.rows = columns.size();
+            event.commit();
+        }
+        return columns;
+    }
+
+    /**
+     * Drops the cached column metadata for a table, e.g. after its schema changed, and the cached table names.
+     *
+     * @param tableName the table whose metadata should be re-read on next use
+     */
+    public static void invalidate(String tableName) {
+        COLUMN_CACHE.remove(tableName);
+        tableNames = null;
+    }
+
+    /**
+     * Reads column metadata for a table straight from the JDBC driver.
+     */
+    private List<ColumnData> loadColumns(String tableName) {
         List<ColumnData> columns = new ArrayList<>();
         Set<String> primaryKeys = new HashSet<>();
 
+        long start = System.nanoTime();
         try {
             try (ResultSet pkRs = connection.getMetaData().getPrimaryKeys(null, null, tableName)) {
                 while (pkRs.next()) {
@@ -76,18 +144,21 @@ public class MetadataService {
                 while (colRs.next()) {
                     String colName = colRs.getString("COLUMN_NAME");
                     String colType = colRs.getString("TYPE_NAME");
+                    int colSize = colRs.getInt("COLUMN_SIZE");
                     boolean isPk = primaryKeys.contains(colName);
 
                     //Construct and store column metadata object
-                    ColumnData columnData = new ColumnData(colName, colType, isPk);
+                    ColumnData columnData = new ColumnData(colName, colType, isPk, colSize);
                     columns.add(columnData);
                 }
             }
         } catch (SQLException e) {
             //This catch will wrap and throw any SQL exceptions that are left as unchecked runtime errors
+            metrics.increment("metadata.errors");
             throw new RuntimeException("Error retrieving column metadata", e);
         }
 
+        metrics.timer("metadata.getColumns").recordSince(start);
         return columns;
     }
 
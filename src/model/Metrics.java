@@ -0,0 +1,328 @@
+package model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide registry of counters and latency timers for the model layer.
+ * Services record into it on every SQL statement, metadata call, login and PubChem request;
+ * {@link #snapshot()} returns a consistent-enough copy that can be written to a file or shown in the UI.
+ * All recording paths are lock-free so instrumentation stays cheap on the hot path.
+ *
+ * @author Jordan A.
+ */
+public class Metrics {
+    /// Singleton instance of the registry.
+    private static Metrics instance;
+
+    /// Named monotonically increasing counters.
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /// Named latency timers.
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    /// Number of recent statements kept for the slowest-statements view.
+    private static final int RECENT_CAPACITY = 512;
+
+    /// Ring buffer of the most recently executed statements.
+    private final AtomicReferenceArray<StatementSample> recent = new AtomicReferenceArray<>(RECENT_CAPACITY);
+
+    /// Total statements ever written to {@link #recent}; the next slot is this value modulo the capacity.
+    private final AtomicLong recentCursor = new AtomicLong();
+
+    private Metrics() { }
+
+    /**
+     * Returns the singleton {@link Metrics} registry, creating it if necessary.
+     *
+     * @return the shared registry
+     */
+    public static synchronized Metrics getInstance() {
+        return instance == null ? (instance = new Metrics()) : instance;
+    }
+
+    /**
+     * Adds one to the named counter.
+     *
+     * @param name the counter name
+     */
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    /**
+     * Adds {@code delta} to the named counter.
+     *
+     * @param name  the counter name
+     * @param delta the amount to add
+     */
+    public void add(String name, long delta) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * Returns the timer with the given name, registering it on first use.
+     *
+     * @param name the timer name
+     * @return the timer
+     */
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, Timer::new);
+    }
+
+    /**
+     * Records one executed SQL statement: its shape timer, the statement and row counters,
+     * and an entry in the recent-statements ring used by {@link #slowestRecent(int)}.
+     *
+     * @param sql   the SQL text as sent to the driver
+     * @param nanos how long the statement took
+     * @param rows  rows returned or affected
+     */
+    public void recordStatement(String sql, long nanos, int rows) {
+        String shape = shapeOf(sql);
+        timer("sql: " + shape).record(nanos);
+        increment("sql.statements");
+        add("sql.rows", rows);
+        int slot = (int) (recentCursor.getAndIncrement() % RECENT_CAPACITY);
+        recent.set(slot, new StatementSample(shape, nanos / 1e6, rows, Instant.now()));
+    }
+
+    /**
+     * Returns the slowest of the recently executed statements, slowest first.
+     *
+     * @param limit maximum number of samples to return
+     * @return up to {@code limit} samples from the recent-statements ring
+     */
+    public List<StatementSample> slowestRecent(int limit) {
+        List<StatementSample> samples = new ArrayList<>(RECENT_CAPACITY);
+        for (int i = 0; i < RECENT_CAPACITY; i++) {
+            StatementSample s = recent.get(i);
+            if (s != null) samples.add(s);
+        }
+        samples.sort(Comparator.comparingDouble(StatementSample::elapsedMs).reversed());
+        return samples.size() > limit ? new ArrayList<>(samples.subList(0, limit)) : samples;
+    }
+
+    /**
+     * Copies the current value of every counter and timer.
+     *
+     * @return a point-in-time snapshot of the registry
+     */
+    public Snapshot snapshot() {
+        Map<String, Long> c = new TreeMap<>();
+        counters.forEach((k, v) -> c.put(k, v.sum()));
+        List<TimerSnapshot> t = new ArrayList<>();
+        timers.values().forEach(timer -> t.add(timer.snapshot()));
+        t.sort(Comparator.comparing(TimerSnapshot::name));
+        return new Snapshot(Instant.now(), c, t);
+    }
+
+    /**
+     * Reduces SQL text to its statement shape: literals become {@code ?},
+     * runs of placeholders collapse to {@code ?, ...} and whitespace is normalized.
+     * Bracketed identifiers are kept verbatim, so table names such as [W412C] survive.
+     *
+     * @param sql the SQL text
+     * @return the normalized shape
+     */
+    public static String shapeOf(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        int i = 0;
+        while (i < sql.length()) {
+            char ch = sql.charAt(i);
+            if (ch == '[') {
+                int end = sql.indexOf(']', i + 1);
+                while (end >= 0 && end + 1 < sql.length() && sql.charAt(end + 1) == ']') {
+                    end = sql.indexOf(']', end + 2);
+                }
+                end = end < 0 ? sql.length() - 1 : end;
+                out.append(sql, i, end + 1);
+                i = end + 1;
+            } else if (ch == '\'') {
+                int end = i + 1;
+                while (end < sql.length() && !(sql.charAt(end) == '\'' && (end + 1 == sql.length() || sql.charAt(end + 1) != '\''))) {
+                    end += sql.charAt(end) == '\'' ? 2 : 1;
+                }
+                out.append('?');
+                i = end + 1;
+            } else if (Character.isDigit(ch) && (i == 0 || !Character.isLetterOrDigit(sql.charAt(i - 1)))) {
+                while (i < sql.length() && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) i++;
+                out.append('?');
+            } else if (Character.isWhitespace(ch)) {
+                while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) i++;
+                if (out.length() > 0) out.append(' ');
+            } else {
+                out.append(ch);
+                i++;
+            }
+        }
+        return out.toString().trim().replaceAll("\\?(\\s*,\\s*\\?)+", "?, ...");
+    }
+
+    /**
+     * Latency timer backed by a log-linear histogram: each power of two is split into
+     * four sub-buckets, so percentiles are accurate to within about 12%.
+     */
+    public static class Timer {
+        /// Four sub-buckets for each of the 64 powers of two a long can hold.
+        private static final int BUCKETS = 64 * 4;
+
+        /// Name this timer is registered under.
+        private final String name;
+
+        /// Number of samples per histogram bucket.
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        /// Sum of all recorded durations in nanoseconds.
+        private final LongAdder totalNanos = new LongAdder();
+
+        /// Longest recorded duration in nanoseconds.
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Records one sample.
+         *
+         * @param nanos the duration in nanoseconds
+         */
+        public void record(long nanos) {
+            long v = Math.max(nanos, 1);
+            histogram.incrementAndGet(bucketOf(v));
+            totalNanos.add(v);
+            maxNanos.accumulateAndGet(v, Math::max);
+        }
+
+        /**
+         * Records the time elapsed since {@code startNanos}.
+         *
+         * @param startNanos a value previously obtained from {@link System#nanoTime()}
+         * @return the recorded duration in nanoseconds
+         */
+        public long recordSince(long startNanos) {
+            long elapsed = System.nanoTime() - startNanos;
+            record(elapsed);
+            return elapsed;
+        }
+
+        /**
+         * Copies the current state of this timer.
+         *
+         * @return a snapshot with count, mean, percentiles and max in milliseconds
+         */
+        public TimerSnapshot snapshot() {
+            long[] buckets = new long[BUCKETS];
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = histogram.get(i);
+                n += buckets[i];
+            }
+            double mean = n == 0 ? 0 : totalNanos.sum() / (double) n / 1e6;
+            double max = maxNanos.get() / 1e6;
+            return new TimerSnapshot(name, n, mean,
+                    Math.min(percentile(buckets, n, 0.50), max), Math.min(percentile(buckets, n, 0.95), max),
+                    Math.min(percentile(buckets, n, 0.99), max), max);
+        }
+
+        private static int bucketOf(long v) {
+            int msb = 63 - Long.numberOfLeadingZeros(v);
+            if (msb < 2) return (int) v;
+            return msb * 4 + (int) ((v >>> (msb - 2)) & 3);
+        }
+
+        /// Midpoint of a bucket in nanoseconds.
+        private static double valueOf(int bucket) {
+            int msb = bucket / 4;
+            if (msb < 2) return bucket;
+            long low = (4L + bucket % 4) << (msb - 2);
+            return low + (1L << (msb - 2)) / 2.0;
+        }
+
+        private static double percentile(long[] buckets, long n, double p) {
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(p * n);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) return valueOf(i) / 1e6;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * One executed statement as kept in the recent-statements ring.
+     */
+    public record StatementSample(String shape, double elapsedMs, int rows, Instant at) { }
+
+    /**
+     * Immutable copy of one timer; all durations are in milliseconds.
+     */
+    public record TimerSnapshot(String name, long count, double meanMs,
+                                double p50Ms, double p95Ms, double p99Ms, double maxMs) { }
+
+    /**
+     * Immutable copy of the whole registry at one instant.
+     */
+    public record Snapshot(Instant takenAt, Map<String, Long> counters, List<TimerSnapshot> timers) {
+
+        /**
+         * Returns the value of a counter, or 0 if it was never incremented.
+         *
+         * @param name the counter name
+         * @return the counter value
+         */
+        public long counter(String name) {
+            return counters.getOrDefault(name, 0L);
+        }
+
+        /**
+         * Renders the snapshot as a plain-text report.
+         *
+         * @return the report
+         */
+        public String format() {
+            StringBuilder sb = new StringBuilder("Metrics snapshot at ").append(takenAt).append('\n');
+            sb.append("\nCounters\n");
+            counters.forEach((k, v) -> sb.append(String.format("  %-40s %12d%n", k, v)));
+            sb.append("\nTimers (ms)\n");
+            sb.append(String.format("  %8s %9s %9s %9s %9s %9s  %s%n", "count", "mean", "p50", "p95", "p99", "max", "name"));
+            for (TimerSnapshot t : timers) {
+                sb.append(String.format("  %8d %9.3f %9.3f %9.3f %9.3f %9.3f  %s%n",
+                        t.count(), t.meanMs(), t.p50Ms(), t.p95Ms(), t.p99Ms(), t.maxMs(), t.name()));
+            }
+            return sb.toString();
+        }
+
+        /**
+         * Writes {@link #format()} to the given file, creating parent directories as needed.
+         *
+         * @param file the destination file
+         * @throws RuntimeException if the file cannot be written
+         */
+        public void writeTo(Path file) {
+            try {
+                if (file.getParent() != null) Files.createDirectories(file.getParent());
+                Files.writeString(file, format(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new RuntimeException("Writing metrics to " + file + " failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link ResultStore} over a sorted {@link Query} that reads its rows one page at a time.
+ * The row count comes from a single COUNT query; a page is fetched with LIMIT/OFFSET the first time
+ * one of its rows is read, and only the most recently used pages are kept. The index advisor sees the query
+ * once, through the count, however many pages are read.
+ * Sorting therefore happens in the database on the columns' SQL types, and a view of a large table
+ * only ever holds the pages that were actually scrolled to.
+ *
+ * @author Jordan A.
+ */
+public class PagedResultStore extends ResultStore {
+    /// Rows fetched per query.
+    private static final int PAGE_SIZE = 500;
+
+    /// Pages kept in memory; older ones are fetched again when needed.
+    private static final int MAX_PAGES = 20;
+
+    private final QueryManager queries;
+
+    /// The query being paged through, with the primary key appended as a final tie-breaker.
+    private final Query query;
+
+    /// Number of matching rows when the store was created.
+    private final int size;
+
+    /// Recently used pages in access order, keyed by page number.
+    private final Map<Integer, ResultStore> pages = new LinkedHashMap<>(MAX_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ResultStore> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    /**
+     * Counts the matching rows; no rows are read until they are asked for.
+     *
+     * @param queries the query manager used for every page
+     * @param query   the conditions and sort order to page through; its limit and offset are ignored
+     */
+    public PagedResultStore(QueryManager queries, Query query) {
+        super(new MetadataService().getColumns(query.getTable()).stream().map(ColumnData::getName).toList());
+        this.queries = queries;
+        this.query = withTieBreaker(query);
+        this.size = queries.count(query);
+    }
+
+    /**
+     * Pages are only stable if the order is total, so rows with equal sort keys are ordered by primary key.
+     */
+    private static Query withTieBreaker(Query query) {
+        Query q = query.copy().limit(-1).offset(0);
+        new MetadataService().getColumns(query.getTable()).stream()
+                .filter(ColumnData::isPrimaryKey)
+                .map(ColumnData::getName)
+                .filter(pk -> q.getOrders().stream().noneMatch(o -> o.column().equals(pk)))
+                .forEach(pk -> q.orderBy(pk, true));
+        return q;
+    }
+
+    public Query getQuery() {
+        return query.copy();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a single raw value, fetching its page if it is not cached.
+     * Rows deleted since the count was taken read as {@code null}.
+     */
+    @Override
+    public String get(int row, int column) {
+        ResultStore page = page(row);
+        int r = row % PAGE_SIZE;
+        return r < page.size() ? page.get(r, column) : null;
+    }
+
+    /**
+     * Replaces a value in the cached page only; callers persist the change themselves.
+     */
+    @Override
+    public void set(int row, int column, String value) {
+        ResultStore page = page(row);
+        int r = row % PAGE_SIZE;
+        if (r < page.size()) page.set(r, column, value);
+    }
+
+    @Override
+    public int add(String[] values) {
+        throw new UnsupportedOperationException("Paged results are read from the database");
+    }
+
+    private ResultStore page(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        int number = row / PAGE_SIZE;
+        ResultStore page = pages.get(number);
+        if (page != null) {
+            Metrics.getInstance().increment("cache.pages.hit");
+            return page;
+        }
+        Metrics.getInstance().increment("cache.pages.miss");
+        page = queries.select(query.copy().limit(PAGE_SIZE).offset(number * PAGE_SIZE), false);     // count() recorded the query
+        pages.put(number, page);
+        return page;
+    }
+}
@@ -0,0 +1,29 @@
+package model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event emitted by {@link PubChemService} for every PUG REST request.
+ * @author Jordan A.
+ */
+@Name("inventory.PubChem")
+@Label("PubChem Request")
+@Category({"Chemical Inventory", "Network"})
+@Description("One PubChem PUG REST lookup")
+public class PubChemEvent extends Event {
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("CAS Number")
+    String cas;
+
+    @Label("HTTP Status")
+    int status;
+
+    @Label("CID")
+    String cid;
+}
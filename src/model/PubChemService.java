@@ -19,6 +19,9 @@ public class PubChemService {
     // base URL for compound page
     private static final String PUB_CHEM_URL = "https://pubchem.ncbi.nlm.nih.gov/compound/";
 
+    /// Registry receiving PubChem request latencies and outcomes.
+    private final Metrics metrics = Metrics.getInstance();
+
 
     /**
      * Finds the PubChem compound ID for the specified CAS number and opens its page in the default browser.
@@ -56,13 +59,18 @@ public class PubChemService {
      */
     private Optional<String> resolve(String endpoint, String cas) {
         HttpURLConnection connection = null;
+        PubChemEvent event = new PubChemEvent();
+        event.begin();
+        long start = System.nanoTime();
         try {
             String encodedCAS = URLEncoder.encode(cas, StandardCharsets.UTF_8.name());
             URL url = new URL(PUB_CHEM_JSON_URL + endpoint + "/" + encodedCAS + "/cids/JSON");
             connection = (HttpURLConnection) url.openConnection();
             connection.setRequestMethod("GET");
             int code = connection.getResponseCode();
+            event.status = code;
             if (code != HttpURLConnection.HTTP_OK) {
+                metrics.increment("pubchem.notFound");
                 return Optional.empty();
             }
             try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
@@ -86,16 +94,24 @@ public class PubChemService {
                 for (String cid : cids) {
                     String value = cid.trim();
                     if (!value.isEmpty()) {
+                        event.cid = value;
                         return Optional.of(value);
                     }
                 }
             }
         } catch (IOException e) {
+            metrics.increment("pubchem.errors");
             throw new RuntimeException(e);
         } finally {
             if (connection != null) {
                 connection.disconnect();
             }
+            metrics.timer("pubchem.resolve").recordSince(start);
+            if (event.shouldCommit()) {
+                event.endpoint = endpoint;
+                event.cas = cas;
+                event.commit();
+            }
         }
         return Optional.empty();
     }
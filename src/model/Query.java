@@ -0,0 +1,415 @@
+package model;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Typed description of a SELECT against one table: per-column conditions, sort order, limit and offset.
+ * Built fluently and run with {@link QueryManager#select(Query)}, which compiles it to parameterized SQL,
+ * so filtering such as "expires before X in cabinet W412D" happens in the database.
+ *
+ * <pre>{@code
+ * Query q = Query.from("Chemical Inventory")
+ *         .where(Query.Condition.equal("Room", "412D"))
+ *         .where(Query.Condition.lessThan("Amount", 100))
+ *         .orderBy("Chemical", true)
+ *         .limit(50);
+ * }</pre>
+ *
+ * @author Jordan A.
+ */
+public class Query {
+    private final String table;
+    private final List<Condition> conditions = new ArrayList<>();
+    private final List<Order> orders = new ArrayList<>();
+    private int limit = -1;
+    private int offset = 0;
+
+    private Query(String table) {
+        this.table = table;
+    }
+
+    /**
+     * Starts a query over every row of a table.
+     *
+     * @param table the table to select from
+     * @return a new query
+     */
+    public static Query from(String table) {
+        return new Query(table);
+    }
+
+    /**
+     * Adds a condition; all conditions must hold (AND).
+     *
+     * @param condition the condition to add
+     * @return this query
+     */
+    public Query where(Condition condition) {
+        conditions.add(condition);
+        return this;
+    }
+
+    /**
+     * Adds a sort key; earlier keys take precedence.
+     *
+     * @param column    the column to sort by
+     * @param ascending true for ascending, false for descending
+     * @return this query
+     */
+    public Query orderBy(String column, boolean ascending) {
+        orders.add(new Order(column, ascending));
+        return this;
+    }
+
+    /**
+     * Limits the number of rows returned.
+     *
+     * @param limit maximum rows, or a negative value for no limit
+     * @return this query
+     */
+    public Query limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Skips the first rows of the result, typically together with {@link #limit(int)} for paging.
+     *
+     * @param offset number of rows to skip
+     * @return this query
+     */
+    public Query offset(int offset) {
+        if (offset < 0) throw new IllegalArgumentException("Offset must not be negative: " + offset);
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * Returns an independent copy, e.g. to page through the same query with different limits and offsets.
+     *
+     * @return a new query with the same conditions, order, limit and offset
+     */
+    public Query copy() {
+        Query q = new Query(table);
+        q.conditions.addAll(conditions);
+        q.orders.addAll(orders);
+        q.limit = limit;
+        q.offset = offset;
+        return q;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public List<Condition> getConditions() {
+        return List.copyOf(conditions);
+    }
+
+    public List<Order> getOrders() {
+        return List.copyOf(orders);
+    }
+
+    /**
+     * Lists every column this query refers to, for validation against the table's metadata.
+     *
+     * @return the referenced column names
+     */
+    List<String> referencedColumns() {
+        List<String> cols = new ArrayList<>();
+        conditions.forEach(c -> c.collectColumns(cols));
+        orders.forEach(o -> cols.add(o.column()));
+        return cols;
+    }
+
+    /**
+     * Lists the filtered columns an index could serve: comparisons, ranges, IN, null checks and prefix LIKEs.
+     * Substring matches and OR-ed alternatives are left out, since a B-tree index cannot answer them.
+     *
+     * @return the indexable filter columns
+     */
+    List<String> indexableColumns() {
+        List<String> cols = new ArrayList<>();
+        conditions.forEach(c -> c.collectIndexableColumns(cols));
+        return cols;
+    }
+
+    /**
+     * Compiles the WHERE clause, appending bind values to {@code params}.
+     *
+     * @param params receives one value per placeholder, in order
+     * @return the clause without the WHERE keyword, or "" when there are no conditions
+     */
+    String whereSql(List<Object> params) {
+        return conditions.stream().map(c -> c.toSql(params)).collect(Collectors.joining(" AND "));
+    }
+
+    /**
+     * Compiles ORDER BY, LIMIT and OFFSET.
+     *
+     * @return the clause with a leading space, or ""
+     */
+    String suffixSql() {
+        StringBuilder sb = new StringBuilder();
+        if (!orders.isEmpty()) {
+            sb.append(" ORDER BY ").append(orders.stream()
+                    .map(o -> QueryManager.formatString(o.column()) + (o.ascending() ? " ASC" : " DESC"))
+                    .collect(Collectors.joining(", ")));
+        }
+        if (limit >= 0) sb.append(" LIMIT ").append(limit);
+        if (offset > 0) sb.append(" OFFSET ").append(offset);
+        return sb.toString();
+    }
+
+    /**
+     * One sort key.
+     */
+    public record Order(String column, boolean ascending) { }
+
+    /**
+     * A typed condition on one or more columns. Values are bound as JDBC parameters;
+     * {@link LocalDate} and {@link LocalDateTime} are converted to their {@code java.sql} types.
+     */
+    public abstract static class Condition {
+
+        private Condition() { }
+
+        abstract String toSql(List<Object> params);
+
+        abstract void collectColumns(List<String> out);
+
+        /** Adds the columns whose index could narrow this condition; by default every referenced column. */
+        void collectIndexableColumns(List<String> out) {
+            collectColumns(out);
+        }
+
+        /** @return column = value */
+        public static Condition equal(String column, Object value) {
+            return new Comparison(column, "=", value);
+        }
+
+        /** @return column &lt;&gt; value */
+        public static Condition notEqual(String column, Object value) {
+            return new Comparison(column, "<>", value);
+        }
+
+        /** @return column &lt; value */
+        public static Condition lessThan(String column, Object value) {
+            return new Comparison(column, "<", value);
+        }
+
+        /** @return column &lt;= value */
+        public static Condition atMost(String column, Object value) {
+            return new Comparison(column, "<=", value);
+        }
+
+        /** @return column &gt; value */
+        public static Condition greaterThan(String column, Object value) {
+            return new Comparison(column, ">", value);
+        }
+
+        /** @return column &gt;= value */
+        public static Condition atLeast(String column, Object value) {
+            return new Comparison(column, ">=", value);
+        }
+
+        /**
+         * Inclusive range; either bound may be null to leave that side open.
+         *
+         * @return low &lt;= column &lt;= high
+         */
+        public static Condition between(String column, Object low, Object high) {
+            if (low == null && high == null) throw new IllegalArgumentException("Range on " + column + " has no bounds");
+            if (low == null) return atMost(column, high);
+            if (high == null) return atLeast(column, low);
+            return new Between(column, low, high);
+        }
+
+        /** @return column IN (values...) */
+        public static Condition in(String column, Collection<?> values) {
+            if (values.isEmpty()) throw new IllegalArgumentException("IN on " + column + " needs at least one value");
+            return new In(column, List.copyOf(values));
+        }
+
+        /** @return column IS NULL */
+        public static Condition isNull(String column) {
+            return new NullCheck(column, true);
+        }
+
+        /** @return column IS NOT NULL */
+        public static Condition isNotNull(String column) {
+            return new NullCheck(column, false);
+        }
+
+        /** @return column LIKE 'prefix%', with wildcards in the prefix matched literally */
+        public static Condition startsWith(String column, String prefix) {
+            return new Like(column, escapeLike(prefix) + "%");
+        }
+
+        /** @return column LIKE '%text%', with wildcards in the text matched literally */
+        public static Condition contains(String column, String text) {
+            return new Like(column, "%" + escapeLike(text) + "%");
+        }
+
+        /**
+         * Any of the conditions holds (OR), e.g. a text search across several columns.
+         *
+         * @param conditions the alternatives
+         * @return the combined condition
+         */
+        public static Condition anyOf(List<Condition> conditions) {
+            if (conditions.isEmpty()) throw new IllegalArgumentException("anyOf needs at least one condition");
+            return new AnyOf(List.copyOf(conditions));
+        }
+
+        private static String escapeLike(String s) {
+            return s.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        }
+
+        private static Object bindable(Object value) {
+            if (value instanceof LocalDate d) return Date.valueOf(d);
+            if (value instanceof LocalDateTime t) return Timestamp.valueOf(t);
+            return value;
+        }
+    }
+
+    private static final class Comparison extends Condition {
+        private final String column;
+        private final String op;
+        private final Object value;
+
+        private Comparison(String column, String op, Object value) {
+            if (value == null) throw new IllegalArgumentException("Use isNull/isNotNull to compare " + column + " with null");
+            this.column = column;
+            this.op = op;
+            this.value = value;
+        }
+
+        @Override String toSql(List<Object> params) {
+            params.add(Condition.bindable(value));
+            return QueryManager.formatString(column) + " " + op + " ?";
+        }
+
+        @Override void collectColumns(List<String> out) {
+            out.add(column);
+        }
+    }
+
+    private static final class Between extends Condition {
+        private final String column;
+        private final Object low;
+        private final Object high;
+
+        private Between(String column, Object low, Object high) {
+            this.column = column;
+            this.low = low;
+            this.high = high;
+        }
+
+        @Override String toSql(List<Object> params) {
+            params.add(Condition.bindable(low));
+            params.add(Condition.bindable(high));
+            return QueryManager.formatString(column) + " BETWEEN ? AND ?";
+        }
+
+        @Override void collectColumns(List<String> out) {
+            out.add(column);
+        }
+    }
+
+    private static final class In extends Condition {
+        private final String column;
+        private final List<?> values;
+
+        private In(String column, List<?> values) {
+            this.column = column;
+            this.values = values;
+        }
+
+        @Override String toSql(List<Object> params) {
+            values.forEach(v -> params.add(Condition.bindable(v)));
+            String marks = values.stream().map(v -> "?").collect(Collectors.joining(", "));
+            return QueryManager.formatString(column) + " IN (" + marks + ")";
+        }
+
+        @Override void collectColumns(List<String> out) {
+            out.add(column);
+        }
+    }
+
+    private static final class NullCheck extends Condition {
+        private final String column;
+        private final boolean isNull;
+
+        private NullCheck(String column, boolean isNull) {
+            this.column = column;
+            this.isNull = isNull;
+        }
+
+        @Override String toSql(List<Object> params) {
+            return QueryManager.formatString(column) + (isNull ? " IS NULL" : " IS NOT NULL");
+        }
+
+        @Override void collectColumns(List<String> out) {
+            out.add(column);
+        }
+    }
+
+    private static final class Like extends Condition {
+        private final String column;
+        private final String pattern;
+
+        private Like(String column, String pattern) {
+            this.column = column;
+            this.pattern = pattern;
+        }
+
+        @Override String toSql(List<Object> params) {
+            params.add(pattern);
+            return QueryManager.formatString(column) + " LIKE ? ESCAPE '\\'";
+        }
+
+        @Override void collectColumns(List<String> out) {
+            out.add(column);
+        }
+
+        @Override void collectIndexableColumns(List<String> out) {
+            if (!pattern.startsWith("%")) out.add(column);
+        }
+    }
+
+    private static final class AnyOf extends Condition {
+        private final List<Condition> alternatives;
+
+        private AnyOf(List<Condition> alternatives) {
+            this.alternatives = alternatives;
+        }
+
+        @Override String toSql(List<Object> params) {
+            return alternatives.stream().map(c -> c.toSql(params)).collect(Collectors.joining(" OR ", "(", ")"));
+        }
+
+        @Override void collectColumns(List<String> out) {
+            alternatives.forEach(c -> c.collectColumns(out));
+        }
+
+        @Override void collectIndexableColumns(List<String> out) {
+            // an OR across columns needs every alternative indexed; not worth recommending
+        }
+    }
+}
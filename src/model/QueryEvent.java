@@ -0,0 +1,59 @@
+package model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event emitted by {@link QueryManager} for every SELECT, UPDATE and INSERT.
+ * The event duration is the statement's execution time.
+ * @author Jordan A.
+ */
+@Name("inventory.Query")
+@Label("Query")
+@Category({"Chemical Inventory", "Database"})
+@Description("One SQL statement executed by QueryManager")
+public class QueryEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Table")
+    String table;
+
+    @Label("Statement Shape")
+    String statement;
+
+    @Label("Rows")
+    int rows;
+
+    /**
+     * Creates an event and starts its clock.
+     *
+     * @param operation the kind of statement, e.g. "select"
+     * @param table     the table the statement targets
+     * @return the started event
+     */
+    static QueryEvent start(String operation, String table) {
+        QueryEvent event = new QueryEvent();
+        event.operation = operation;
+        event.table = table;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Fills in the outcome and commits the event if the recording wants it.
+     *
+     * @param sql  the SQL text that was executed
+     * @param rows rows returned or affected
+     */
+    void finish(String sql, int rows) {
+        if (shouldCommit()) {
+            this.statement = Metrics.shapeOf(sql);
+            this.rows = rows;
+            commit();
+        }
+    }
+}
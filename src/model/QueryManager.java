@@ -1,10 +1,11 @@
 package model;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Types;
+import java.sql.Statement;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -15,12 +16,20 @@ import java.util.stream.Collectors;
  */
 public class QueryManager {
     /**
-     * Specification for a parameterized WHERE clause:
-     * - clause: the SQL fragment (e.g. "col1 LIKE ? OR col2 LIKE ?")
-     * - param: the value to bind to each placeholder
-     * - copies: number of times the param should be bound
+     * Specification for a parameterized SELECT:
+     * - clause: the WHERE fragment (e.g. "col1 LIKE ? OR col2 LIKE ?"), or "" for all rows
+     * - params: the values to bind to the placeholders, in order
+     * - suffix: ORDER BY / LIMIT / OFFSET appended after the WHERE clause, or ""
      */
-    private record QuerySpecification(String clause, String param, int copies) { }
+    private record QuerySpecification(String clause, List<Object> params, String suffix) { }
+
+    /**
+     * Result of {@link #insertRow(String, Map)}.
+     *
+     * @param key the primary-key value, generated or as given; null if the table has no key or none was reported
+     * @param row the row as stored, column → value in metadata order; null if it could not be read back
+     */
+    public record InsertedRow(Object key, Map<String, Object> row) { }
 
     /// JDBC Connection used for all queries.
     private final Connection connection;
@@ -28,6 +37,24 @@ public class QueryManager {
     /// Service for retrieving table and column metadata.
     private final MetadataService metadata;
 
+    /// Registry receiving per-statement latency and row counts.
+    private final Metrics metrics = Metrics.getInstance();
+
+    /// Receives statements slower than the configured threshold.
+    private final SlowQueryLog slowLog = SlowQueryLog.getInstance();
+
+    /// Receives the columns each query filtered and sorted on.
+    private final IndexAdvisor advisor = IndexAdvisor.getInstance();
+
+    /// Checks every read and write against the current user's role.
+    private final AccessControl access = AccessControl.getInstance();
+
+    /// Refuses writes that would store incompatible chemicals together.
+    private final HazardCompatibility hazards = HazardCompatibility.getInstance();
+
+    /// Cross-location totals per CAS number, moved along with each write.
+    private final ChemicalIndex chemicals = ChemicalIndex.getInstance();
+
     /**
      * Constructs a QueryManager using the singleton ConnectionManager and a fresh MetadataService.
      */
@@ -37,33 +64,47 @@ public class QueryManager {
     }
 
     /**
-     * Executes the SELECT and returns each row as a Map.
+     * Executes the SELECT and collects the rows into a {@link ResultStore}
+     * whose columns follow the table's metadata order.
+     *
+     * @throws AccessDeniedException if the current user may not read the table
      */
-    private List<Map<String, Object>> runQuery(String tableName, QuerySpecification spec) {
+    private ResultStore runQuery(String tableName, QuerySpecification spec) {
+        access.authorizeCurrent(AccessControl.Action.READ, tableName);
+
+        String where = (spec == null || spec.clause.isEmpty()) ? "" : " WHERE " + spec.clause;
+        String sql   = "SELECT * FROM " + formatString(tableName) + where + (spec == null ? "" : spec.suffix);
+        List<Object> params = spec == null ? List.of() : spec.params;
 
-        List<Map<String, Object>> results = new ArrayList<>();
-        String where = (spec == null) ? "" : " WHERE" + spec.clause;
-        String sql   = "SELECT * FROM " + formatString(tableName) + where;
+        List<String> names = metadata.getColumns(tableName).stream().map(ColumnData::getName).toList();
+        ResultStore results = new ResultStore(names);
 
+        QueryEvent event = QueryEvent.start("select", tableName);
+        long start = beginStatement();
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            if (spec != null) {
-                for (int i = 1; i <= spec.copies; i++) {
-                    ps.setString(i, spec.param);
-                }
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
             }
             try (ResultSet rs = ps.executeQuery()) {
-                List<ColumnData> cols = metadata.getColumns(tableName);
+                int[] positions = new int[names.size()];
+                for (int c = 0; c < positions.length; c++) {
+                    positions[c] = rs.findColumn(names.get(c));
+                }
                 while (rs.next()) {
-                    Map<String, Object> map = new HashMap<>();
-                    for (ColumnData c : cols) {
-                        map.put(c.getName(), rs.getString(c.getName()));
+                    String[] row = new String[positions.length];
+                    for (int c = 0; c < positions.length; c++) {
+                        row[c] = rs.getString(positions[c]);
                     }
-                    results.add(map);
+                    results.add(row);
                 }
             }
         } catch (SQLException e) {
+            metrics.increment("sql.errors");
             throw new RuntimeException(e);
+        } finally {
+            ConnectionManager.getInstance().statementFinished();
         }
+        record(event, sql, params, start, results.size());
         return results;
     }
 
@@ -74,6 +115,17 @@ public class QueryManager {
      * @return a list of rows, each represented as a map from column name to value
      */
     public List<Map<String, Object>> selectAll(String tableName) {
+        return runQuery(tableName, null).toMaps();
+    }
+
+    /**
+     * Retrieves all rows from the specified table into a compact {@link ResultStore},
+     * avoiding a map per row for large tables.
+     *
+     * @param tableName the name of the table to query
+     * @return the rows, with columns in metadata order
+     */
+    public ResultStore selectAllRows(String tableName) {
         return runQuery(tableName, null);
     }
 
@@ -86,24 +138,204 @@ public class QueryManager {
      * @return a list of matching rows, each as a map from column to value
      */
     public List<Map<String, Object>> search(String tableName, String queryString) {
+        return searchRows(tableName, queryString).toMaps();
+    }
+
+    /**
+     * Same as {@link #search(String, String)} but returns the matches as a {@link ResultStore}.
+     *
+     * @param tableName   the name of the table to search
+     * @param queryString the substring to search for in text columns
+     * @return the matching rows, with columns in metadata order
+     */
+    public ResultStore searchRows(String tableName, String queryString) {
+        Optional<Query.Condition> match = textMatch(tableName, queryString);
+        if (match.isEmpty()) return new ResultStore(metadata.getColumns(tableName).stream().map(ColumnData::getName).toList());
+
+        return select(Query.from(tableName).where(match.get()));
+    }
+
+    /**
+     * Builds the condition used by {@link #searchRows(String, String)}: any text column contains the string.
+     * Only columns whose type name contains CHAR, TEXT, or MEMO are included.
+     *
+     * @param tableName   the table to search
+     * @param queryString the substring to search for
+     * @return the condition, or empty if the table has no text columns
+     */
+    public Optional<Query.Condition> textMatch(String tableName, String queryString) {
+        List<Query.Condition> textCols = new ArrayList<>();
+
+        for (ColumnData c : metadata.getColumns(tableName)) {
+            if (isTextColumn(c)) {
+                textCols.add(Query.Condition.contains(c.getName(), queryString));
+            }
+        }
+        return textCols.isEmpty() ? Optional.empty() : Optional.of(Query.Condition.anyOf(textCols));
+    }
+
+    /**
+     * Whether text searches look into a column: those whose type name contains CHAR, TEXT, or MEMO.
+     * Shared with {@link SearchIndex}, so in-memory and SQL searches match the same rows.
+     *
+     * @param column the column
+     * @return true for text columns
+     */
+    public static boolean isTextColumn(ColumnData column) {
+        return column.getType().toUpperCase().matches(".*(CHAR|TEXT|MEMO).*");
+    }
+
+    /**
+     * Runs a typed {@link Query}: its conditions, sort order and limit are compiled to
+     * parameterized SQL, so only matching rows leave the database.
+     *
+     * @param query the query to run
+     * @return the matching rows, with columns in metadata order
+     * @throws IllegalArgumentException if the query refers to a column the table does not have
+     */
+    public ResultStore select(Query query) {
+        return select(query, true);
+    }
+
+    /**
+     * Runs a typed {@link Query}, optionally without reporting it to the {@link IndexAdvisor}. Pages of a query
+     * already reported through {@link #count(Query)}, and the advisor's own benchmark runs, pass false, so the
+     * workload counts each query the user ran once.
+     *
+     * @param query       the query to run
+     * @param recordUsage whether to report the query's columns to the index advisor
+     * @return the matching rows, with columns in metadata order
+     * @throws IllegalArgumentException if the query refers to a column the table does not have
+     */
+    public ResultStore select(Query query, boolean recordUsage) {
+        List<ColumnData> columns = validate(query);
+        if (query.getLimit() == 0) return new ResultStore(columns.stream().map(ColumnData::getName).toList());
+
+        List<Object> params = new ArrayList<>();
+        String where = query.whereSql(params);
+        long start = System.nanoTime();
+        ResultStore rows = runQuery(query.getTable(), new QuerySpecification(where, params, query.suffixSql()));
+        if (recordUsage) advisor.record(query, System.nanoTime() - start);
+        return rows;
+    }
 
-        List<ColumnData> columns = metadata.getColumns(tableName);
-        List<String> textCols = new ArrayList<>();
+    /**
+     * Receives rows streamed by {@link #streamRows(Query, int, RowSink)}.
+     */
+    @FunctionalInterface
+    public interface RowSink {
+        /**
+         * @param row the current row's raw values in metadata order; the array is reused for the next row
+         * @return false to stop reading
+         * @throws IOException if writing the row elsewhere fails; reading stops and the error is rethrown wrapped
+         */
+        boolean accept(String[] row) throws IOException;
+    }
 
-        for (ColumnData c : columns) {
-            if (c.getType().toUpperCase().matches(".*(CHAR|TEXT|MEMO).*")) {
-                textCols.add(c.getName());
+    /**
+     * Runs a query through a forward-only, read-only cursor and hands the rows over one at a time,
+     * so callers such as exports never hold more than one row.
+     *
+     * @param query     the query to run
+     * @param fetchSize rows the driver is asked to fetch per round trip
+     * @param sink      receives each row until it returns false
+     * @return the number of rows handed to the sink
+     * @throws IllegalArgumentException if the query refers to a column the table does not have
+     */
+    public long streamRows(Query query, int fetchSize, RowSink sink) {
+        access.authorizeCurrent(AccessControl.Action.READ, query.getTable());
+        List<String> names = validate(query).stream().map(ColumnData::getName).toList();
+        if (query.getLimit() == 0) return 0;
+
+        List<Object> params = new ArrayList<>();
+        String where = query.whereSql(params);
+        String sql = "SELECT * FROM " + formatString(query.getTable())
+                + (where.isEmpty() ? "" : " WHERE " + where) + query.suffixSql();
+
+        QueryEvent event = QueryEvent.start("stream", query.getTable());
+        long start = beginStatement();
+        long delivered = 0;
+        try (PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                int[] positions = new int[names.size()];
+                for (int c = 0; c < positions.length; c++) {
+                    positions[c] = rs.findColumn(names.get(c));
+                }
+                String[] row = new String[positions.length];
+                while (rs.next()) {
+                    for (int c = 0; c < positions.length; c++) {
+                        row[c] = rs.getString(positions[c]);
+                    }
+                    delivered++;
+                    if (!sink.accept(row)) break;
+                }
             }
+        } catch (SQLException e) {
+            metrics.increment("sql.errors");
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            ConnectionManager.getInstance().statementFinished();
         }
+        record(event, sql, params, start, (int) Math.min(delivered, Integer.MAX_VALUE));
+        return delivered;
+    }
 
-        if (textCols.isEmpty()) return List.of();
+    /**
+     * Counts the rows matching a query's conditions; its order, limit and offset are ignored.
+     * Used to size paged views without reading the rows. The query, including its order, is reported to the
+     * {@link IndexAdvisor} here, so the pages read afterwards are selected without reporting it again.
+     *
+     * @param query the query whose conditions to count
+     * @return the number of matching rows
+     * @throws IllegalArgumentException if the query refers to a column the table does not have
+     */
+    public int count(Query query) {
+        access.authorizeCurrent(AccessControl.Action.READ, query.getTable());
+        validate(query);
+        List<Object> params = new ArrayList<>();
+        String where = query.whereSql(params);
+        String sql = "SELECT COUNT(*) FROM " + formatString(query.getTable()) + (where.isEmpty() ? "" : " WHERE " + where);
 
-        String where = textCols.stream()
-                .map(c -> formatString(c) + " LIKE ?")
-                .collect(Collectors.joining(" OR "));
-        QuerySpecification spec = new QuerySpecification(where, "%" + queryString + "%", textCols.size());
+        QueryEvent event = QueryEvent.start("count", query.getTable());
+        long start = beginStatement();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                int count = rs.next() ? rs.getInt(1) : 0;
+                record(event, sql, params, start, 1);
+                advisor.record(query, System.nanoTime() - start);
+                return count;
+            }
+        } catch (SQLException e) {
+            metrics.increment("sql.errors");
+            throw new RuntimeException(e);
+        } finally {
+            ConnectionManager.getInstance().statementFinished();
+        }
+    }
 
-        return runQuery(tableName, spec);
+    /**
+     * Checks that every column a query refers to exists in its table.
+     *
+     * @return the table's columns
+     */
+    private List<ColumnData> validate(Query query) {
+        List<ColumnData> columns = metadata.getColumns(query.getTable());
+        Set<String> known = columns.stream().map(ColumnData::getName).collect(Collectors.toSet());
+        for (String c : query.referencedColumns()) {
+            if (!known.contains(c)) {
+                throw new IllegalArgumentException("Unknown column \"" + c + "\" in table \"" + query.getTable() + "\"");
+            }
+        }
+        return columns;
     }
 
     /**
@@ -115,34 +347,124 @@ public class QueryManager {
      * @param pkValue   the primary-key value identifying which row to update
      */
     public void updateRow(String tableName, Map<String, Object> rows, Object pkValue) {
-        ColumnData pk = metadata.getColumns(tableName).stream()
-                .filter(ColumnData::isPrimaryKey)
-                .findFirst()
-                .orElseThrow();
+        updateRow(tableName, rows, pkValue, null);
+    }
 
-        List<String> upCols = rows.keySet().stream()
-                .filter(c -> !c.equals(pk.getName()))
-                .toList();
+    /**
+     * Updates a single row only if the edited columns still hold the values the edit was based on
+     * (optimistic concurrency). The check is part of the UPDATE's WHERE clause, so it is atomic:
+     * if another workstation changed one of those columns first, nothing is written.
+     * Successful updates are appended to the {@link ChangeFeed} and the {@link AuditLog},
+     * queued for the {@link AlertEngine} and applied to the {@link ChemicalIndex}.
+     *
+     * @param tableName the name of the table to update
+     * @param values    a map of column names to new values, as text or typed; converted by the table's {@link RowSchema}
+     * @param pkValue   the primary-key value identifying which row to update
+     * @param expected  column → value the caller last read, for the columns being changed; null skips the check
+     * @throws InvalidValueException if a value does not fit its column; nothing is sent to the database
+     * @throws StaleRowException if the row was changed or deleted in the meantime
+     * @throws AccessDeniedException if the current user may not edit the table
+     * @throws HazardConflictException if the row would be stored with chemicals incompatible with it
+     */
+    @SuppressWarnings("try")   // the reservation only has to be held until the write is recorded
+    public void updateRow(String tableName, Map<String, Object> values, Object pkValue, Map<String, Object> expected) {
+        access.authorizeCurrent(AccessControl.Action.UPDATE, tableName);
+        RowSchema schema = schema(tableName);
+        Map<String, Object> rows = schema.convertRow(values);
+        Map<String, Object> before = expected == null ? null : schema.convertStored(expected);   // typed like the stored values
+        try (HazardCompatibility.Reservation placed = hazards.check(tableName, pkValue, rows)) {
+            ColumnData pk = metadata.getColumns(tableName).stream()
+                    .filter(ColumnData::isPrimaryKey)
+                    .findFirst()
+                    .orElseThrow();
 
-        String set = upCols.stream()
-                .map(c -> formatString(c) + "=?")
-                .collect(Collectors.joining(", "));
+            List<String> upCols = rows.keySet().stream()
+                    .filter(c -> !c.equals(pk.getName()))
+                    .toList();
 
-        String sql = "UPDATE " + formatString(tableName) + " SET " + set +
-                     " WHERE " + formatString(pk.getName()) + "=?";
+            String set = upCols.stream()
+                    .map(c -> formatString(c) + "=?")
+                    .collect(Collectors.joining(", "));
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            int i = 1;
-            for (String c : upCols) {
-                ps.setObject(i++, rows.get(c));
+            List<Object> params = new ArrayList<>();
+            upCols.forEach(c -> params.add(rows.get(c)));
+            params.add(pkValue);
+
+            StringBuilder where = new StringBuilder(formatString(pk.getName()) + "=?");
+            if (before != null) {
+                for (String c : upCols) {
+                    Object old = before.get(c);
+                    if (old == null) {
+                        where.append(" AND ").append(formatString(c)).append(" IS NULL");
+                    } else {
+                        where.append(" AND ").append(formatString(c)).append("=?");
+                        params.add(old);
+                    }
+                }
+            }
+
+            String sql = "UPDATE " + formatString(tableName) + " SET " + set + " WHERE " + where;
+
+            QueryEvent event = QueryEvent.start("update", tableName);
+            long start = beginStatement();
+            int updated;
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                updated = ConnectionManager.getInstance().executeWrite(ps);
+                record(event, sql, params, start, updated);
+                advisor.recordLookup(tableName, pk.getName(), System.nanoTime() - start);
+            } catch (SQLException ex) {
+                metrics.increment("sql.errors");
+                throw new RuntimeException(ex);
+            } finally {
+                ConnectionManager.getInstance().statementFinished();
+            }
+
+            if (updated == 0 && expected != null) {
+                metrics.increment("sql.staleUpdates");
+                throw new StaleRowException(tableName, pkValue);
+            }
+            if (updated > 0) {
+                ChangeFeed.getInstance().record(tableName, pkValue, "UPDATE");
+                AuditLog.getInstance().record("UPDATE", tableName, pkValue, expected, rows);
+                AlertEngine.getInstance().changed(tableName, pkValue);
+                hazards.written(tableName, pkValue, rows);
+                chemicals.written(tableName, pkValue, rows);
             }
-            ps.setObject(i, pkValue);
-            ps.executeUpdate();
-        } catch (SQLException ex) {
-            throw new RuntimeException(ex);
         }
     }
 
+    /**
+     * Reads one row by primary key.
+     *
+     * @param tableName the table to read from
+     * @param pkValue   the primary-key value
+     * @return the row as a column → value map, or null if there is no such row
+     */
+    public Map<String, Object> selectByKey(String tableName, Object pkValue) {
+        return selectByKey(tableName, pkValue, true);
+    }
+
+    /**
+     * Reads one row by primary key, optionally without reporting the lookup to the {@link IndexAdvisor},
+     * e.g. when the {@link ChangeFeed} re-reads rows other workstations changed.
+     *
+     * @param tableName   the table to read from
+     * @param pkValue     the primary-key value
+     * @param recordUsage whether to report the lookup to the index advisor
+     * @return the row as a column → value map, or null if there is no such row
+     */
+    public Map<String, Object> selectByKey(String tableName, Object pkValue, boolean recordUsage) {
+        ColumnData pk = metadata.getColumns(tableName).stream()
+                .filter(ColumnData::isPrimaryKey)
+                .findFirst()
+                .orElseThrow();
+        ResultStore rows = select(Query.from(tableName).where(Query.Condition.equal(pk.getName(), pkValue)), recordUsage);
+        return rows.size() == 0 ? null : rows.toMap(0);
+    }
+
     /**
      * Formats a raw identifier (table or column name) by surrounding it with
      * brackets and escaping any closing bracket within.
@@ -150,40 +472,110 @@ public class QueryManager {
      * @param identifier the raw table or column name
      * @return the safely quoted identifier for use in SQL
      */
-    private static String formatString(String identifier) {
+    static String formatString(String identifier) {
         return "[" + identifier.replace("]", "]]") + "]";
     }
 
     /**
      * Inserts a single row; columns map may omit AUTOINCREMENT primary key.
+     * The row is read back by its key, so callers can show it without reloading the table,
+     * and the insert is appended to the {@link ChangeFeed} and the {@link AuditLog}, queued for the {@link AlertEngine} and applied to the {@link ChemicalIndex}.
      *
      * @param table  the table to insert into
-     * @param values column → value map (nulls allowed)
+     * @param input  column → value map (nulls allowed), as text or typed; converted by the table's {@link RowSchema}
+     * @return the row's key and its values as stored, or null if {@code input} is empty
+     * @throws InvalidValueException if a value does not fit its column; nothing is sent to the database
      */
-    public void insertRow(String table, Map<String, Object> values) {
-
-        if (values.isEmpty()) return;
+    @SuppressWarnings("try")   // the reservation only has to be held until the write is recorded
+    public InsertedRow insertRow(String table, Map<String, Object> input) {
+        access.authorizeCurrent(AccessControl.Action.INSERT, table);
 
-        List<String> cols = new ArrayList<>(values.keySet());
-        String colSql = cols.stream().map(QueryManager::formatString).collect(Collectors.joining(", "));
-        String marks  = cols.stream().map(c -> "?").collect(Collectors.joining(", "));
+        if (input.isEmpty()) return null;
+        RowSchema schema = schema(table);
+        Map<String, Object> values = schema.convertRow(input);
+        ColumnData pk = metadata.getColumns(table).stream().filter(ColumnData::isPrimaryKey).findFirst().orElse(null);
+        Object key = pk == null ? null : values.get(pk.getName());
+        try (HazardCompatibility.Reservation placed = hazards.check(table, null, values)) {
+            List<String> cols = new ArrayList<>(values.keySet());
+            String colSql = cols.stream().map(QueryManager::formatString).collect(Collectors.joining(", "));
+            String marks  = cols.stream().map(c -> "?").collect(Collectors.joining(", "));
 
-        String sql = "INSERT INTO " + formatString(table) +
-                     " (" + colSql + ") VALUES (" + marks + ")";
+            String sql = "INSERT INTO " + formatString(table) +
+                         " (" + colSql + ") VALUES (" + marks + ")";
 
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            int i = 1;
-            for (String c : cols) {
-                Object v = values.get(c);
-                if (v == null) {
-                    ps.setNull(i++, Types.VARCHAR);   // avoid NPE from UCanAccess when setting null
-                } else {
-                    ps.setObject(i++, v);
+            QueryEvent event = QueryEvent.start("insert", table);
+            long start = beginStatement();
+            try (PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                int i = 1;
+                for (String c : cols) {
+                    Object v = values.get(c);
+                    if (v == null) {
+                        ps.setNull(i++, schema.sqlType(c));   // avoid NPE from UCanAccess when setting null
+                    } else {
+                        ps.setObject(i++, v);
+                    }
                 }
+                int inserted = ConnectionManager.getInstance().executeWrite(ps);
+                if (key == null) {
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        if (keys.next()) key = keys.getObject(1);
+                    }
+                }
+                record(event, sql, cols.stream().map(values::get).toList(), start, inserted);
+            } catch (SQLException ex) {
+                metrics.increment("sql.errors");
+                throw new RuntimeException(ex);
+            } finally {
+                ConnectionManager.getInstance().statementFinished();
             }
-            ps.executeUpdate();
-        } catch (SQLException ex) {
-            throw new RuntimeException(ex);
+
+            AuditLog.getInstance().record("INSERT", table, key, null, values);
+            if (key == null) {
+                // The row cannot be addressed: re-read the indexes and let the alert engine check the whole table
+                hazards.refresh();
+                chemicals.refresh();
+                AlertEngine.getInstance().changed(table, null);
+                return new InsertedRow(null, null);
+            }
+            ChangeFeed.getInstance().record(table, key, "INSERT");
+            AlertEngine.getInstance().changed(table, key);
+            hazards.written(table, key, values);
+            chemicals.written(table, key, values);
         }
+        return new InsertedRow(key, selectByKey(table, key));
+    }
+
+    /**
+     * Returns the table's compiled converters, recompiled only when its metadata changes.
+     */
+    private RowSchema schema(String table) {
+        return RowSchema.of(table, metadata.getColumns(table));
+    }
+
+    /**
+     * Marks a statement as in flight on the shared connection.
+     *
+     * @return the current {@link System#nanoTime()}, to be passed to {@link #record}
+     */
+    private long beginStatement() {
+        ConnectionManager.getInstance().statementStarted();
+        return System.nanoTime();
+    }
+
+    /**
+     * Records one executed statement in the metrics registry, the slow-query log
+     * and, when recording, as a JFR event.
+     *
+     * @param event      the Flight Recorder event started before execution
+     * @param sql        the SQL text that was executed
+     * @param params     the bound parameter values, in order
+     * @param startNanos value of {@link System#nanoTime()} taken before execution
+     * @param rows       rows returned or affected
+     */
+    private void record(QueryEvent event, String sql, List<?> params, long startNanos, int rows) {
+        long elapsed = System.nanoTime() - startNanos;
+        metrics.recordStatement(sql, elapsed, rows);
+        slowLog.offer(event.table, sql, params, rows, elapsed);
+        event.finish(sql, rows);
     }
 }
@@ -0,0 +1,151 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Compact, column-ordered holder for query results.
+ * Each row is a plain {@code String[]}, so large tables cost one array per row
+ * instead of a HashMap or an observable list per row. Values are kept raw, i.e. SQL NULL stays {@code null}.
+ *
+ * @author Jordan A.
+ */
+public class ResultStore {
+    /// Column names in the order values are stored in each row.
+    private final List<String> columns;
+
+    /// Position of each column name within a row.
+    private final Map<String, Integer> positions = new HashMap<>();
+
+    /// Row values, one array per row.
+    private final List<String[]> rows;
+
+    public ResultStore(List<String> columns) {
+        this(columns, 16);
+    }
+
+    public ResultStore(List<String> columns, int expectedRows) {
+        this.columns = List.copyOf(columns);
+        this.rows = new ArrayList<>(expectedRows);
+        for (int i = 0; i < this.columns.size(); i++) {
+            positions.put(this.columns.get(i), i);
+        }
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public int columnCount() {
+        return columns.size();
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Returns the position of a column within each row.
+     *
+     * @param column the column name
+     * @return the column's index, or -1 if the store has no such column
+     */
+    public int columnIndex(String column) {
+        return positions.getOrDefault(column, -1);
+    }
+
+    /**
+     * Returns a single raw value.
+     *
+     * @param row    the row index
+     * @param column the column index
+     * @return the stored value, possibly {@code null}
+     */
+    public String get(int row, int column) {
+        return rows.get(row)[column];
+    }
+
+    /**
+     * Replaces a single value.
+     *
+     * @param row    the row index
+     * @param column the column index
+     * @param value  the new raw value
+     */
+    public void set(int row, int column, String value) {
+        rows.get(row)[column] = value;
+    }
+
+    /**
+     * Finds the first row holding {@code value} in a column, typically the primary key.
+     *
+     * @param column the column index
+     * @param value  the raw value to look for
+     * @return the row index, or -1 if no row matches
+     */
+    public int indexOf(int column, String value) {
+        for (int r = 0; r < size(); r++) {
+            if (Objects.equals(get(r, column), value)) return r;
+        }
+        return -1;
+    }
+
+    /**
+     * Overwrites a row with values read back from the database, e.g. after someone else changed it.
+     * Columns missing from the map are left as they are.
+     *
+     * @param row    the row index
+     * @param values column name → raw value
+     */
+    public void setRow(int row, Map<String, Object> values) {
+        values.forEach((column, value) -> {
+            int c = columnIndex(column);
+            if (c >= 0) set(row, c, value == null ? null : value.toString());
+        });
+    }
+
+    /**
+     * Appends a row; the array is kept as is, so callers must not reuse it.
+     *
+     * @param values one value per column, in column order
+     * @return the index of the new row
+     */
+    public int add(String[] values) {
+        if (values.length != columns.size()) {
+            throw new IllegalArgumentException("Expected " + columns.size() + " values, got " + values.length);
+        }
+        rows.add(values);
+        return rows.size() - 1;
+    }
+
+    /**
+     * Converts one row to the column → value map used by the rest of the model API.
+     *
+     * @param row the row index
+     * @return a map from column name to raw value, iterating in column order
+     */
+    public Map<String, Object> toMap(int row) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int c = 0; c < columns.size(); c++) {
+            map.put(columns.get(c), get(row, c));
+        }
+        return map;
+    }
+
+    /**
+     * Converts every row to a column → value map.
+     *
+     * @return a list of row maps
+     */
+    public List<Map<String, Object>> toMaps() {
+        List<Map<String, Object>> maps = new ArrayList<>(size());
+        for (int r = 0; r < size(); r++) {
+            maps.add(toMap(r));
+        }
+        return maps;
+    }
+}
@@ -0,0 +1,404 @@
+package model;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Converts and validates values for a table's columns before they reach the driver, driven by each
+ * {@link ColumnData#getType()}: numbers are parsed and range-checked, dates read in the usual formats,
+ * yes/no values accepted in their common spellings, text checked against the column size, and
+ * CAS numbers in CAS columns checked against their check digit.
+ * <p>
+ * A table's converters are compiled once per schema and shared: {@link #of(String, List)} returns the same
+ * instance for as long as {@link MetadataService} returns the same column list, i.e. until the table's
+ * metadata is invalidated. Text arriving from editors and API clients is converted here, so a bad value
+ * fails with an {@link InvalidValueException} naming the column instead of a driver error after a round trip.
+ *
+ * @author Jordan A.
+ */
+public class RowSchema {
+    /// Compiled schemas by table.
+    private static final ConcurrentMap<String, RowSchema> SCHEMAS = new ConcurrentHashMap<>();
+
+    /// Date formats accepted for date/time columns, tried in order; each may be followed by a time.
+    private static final List<DateTimeFormatter> DATE_TIMES = List.of(
+            new DateTimeFormatterBuilder().appendPattern("uuuu-MM-dd[['T'][ ]HH:mm[:ss")
+                    .optionalStart().appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true).optionalEnd()
+                    .appendPattern("]]").toFormatter().withResolverStyle(ResolverStyle.STRICT),     // also as read back, e.g. "...10:20:30.000000"
+            DateTimeFormatter.ofPattern("M/d/uuuu[ H:mm[:ss]]").withResolverStyle(ResolverStyle.STRICT));
+
+    /**
+     * How a column's values are converted.
+     */
+    public enum Kind { TEXT, CAS, INTEGER, DECIMAL, FLOAT, BOOLEAN, DATE_TIME, OTHER }
+
+    /**
+     * Converts one value for a column; throws {@link IllegalArgumentException} with the problem on bad input.
+     */
+    @FunctionalInterface
+    private interface Converter {
+        Object convert(Object value);
+    }
+
+    /**
+     * One column's compiled conversion.
+     *
+     * @param kind      how values are converted
+     * @param sqlType   the {@link Types} constant to bind nulls with
+     * @param converter the conversion itself
+     */
+    private record Column(Kind kind, int sqlType, Converter converter) { }
+
+    private final String table;
+
+    /// The metadata these converters were compiled from; compared by identity to notice schema changes.
+    private final List<ColumnData> columns;
+
+    private final Map<String, Column> byName = new HashMap<>();
+
+    private RowSchema(String table, List<ColumnData> columns) {
+        this.table = table;
+        this.columns = columns;
+        for (ColumnData c : columns) byName.put(c.getName(), compile(c));
+    }
+
+    /**
+     * Returns the compiled converters for a table, compiling them on first use and after its schema changed.
+     *
+     * @param table   the table
+     * @param columns its columns, as returned by {@link MetadataService#getColumns(String)}
+     * @return the table's schema
+     */
+    public static RowSchema of(String table, List<ColumnData> columns) {
+        RowSchema schema = SCHEMAS.get(table);
+        if (schema == null || schema.columns != columns) {
+            schema = new RowSchema(table, columns);
+            SCHEMAS.put(table, schema);
+            Metrics.getInstance().increment("rowSchema.compiled");
+        }
+        return schema;
+    }
+
+    /**
+     * Converts one value to the Java type its column is stored as. Blank text is null for all but text columns.
+     *
+     * @param column the column
+     * @param value  text as entered, or a value that is already typed
+     * @return the converted value; null stays null
+     * @throws InvalidValueException if the value does not fit the column, or there is no such column
+     */
+    public Object convert(String column, Object value) {
+        try {
+            return apply(column, value);
+        } catch (InvalidValueException ex) {
+            Metrics.getInstance().increment("rowSchema.rejected");
+            throw ex;
+        }
+    }
+
+    /**
+     * Converts every value of a row with {@link #convert(String, Object)}.
+     *
+     * @param values column → value, as entered
+     * @return column → converted value, in the same order; nulls are kept
+     * @throws InvalidValueException for the first value that does not fit its column
+     */
+    public Map<String, Object> convertRow(Map<String, ?> values) {
+        Map<String, Object> converted = new LinkedHashMap<>();
+        values.forEach((column, value) -> converted.put(column, convert(column, value)));
+        return converted;
+    }
+
+    /**
+     * Converts values read back from the database, such as the values an edit was based on, so they compare
+     * equal to the stored ones. A value that does not convert, e.g. a CAS number stored before it was
+     * validated, is kept as it is.
+     *
+     * @param values column → value as read, typically as text
+     * @return column → converted value, in the same order; nulls are kept
+     */
+    public Map<String, Object> convertStored(Map<String, ?> values) {
+        Map<String, Object> converted = new LinkedHashMap<>();
+        values.forEach((column, value) -> {
+            Object typed;
+            try {
+                typed = apply(column, value);
+            } catch (InvalidValueException ex) {
+                typed = value;
+            }
+            converted.put(column, typed);
+        });
+        return converted;
+    }
+
+    /**
+     * Says what is wrong with a value for a column, for editors that validate as the user types.
+     *
+     * @param column the column
+     * @param value  the value as entered
+     * @return the problem, including the column name, or null if the value can be stored
+     */
+    public String problem(String column, Object value) {
+        try {
+            apply(column, value);
+            return null;
+        } catch (InvalidValueException ex) {
+            return ex.getMessage();
+        }
+    }
+
+    /**
+     * Returns how a column's values are converted.
+     *
+     * @param column the column
+     * @return its kind
+     * @throws InvalidValueException if there is no such column
+     */
+    public Kind kind(String column) {
+        return column(column).kind();
+    }
+
+    /**
+     * Returns the {@link Types} constant to bind a null in the column with.
+     *
+     * @param column the column
+     * @return the SQL type
+     * @throws InvalidValueException if there is no such column
+     */
+    public int sqlType(String column) {
+        return column(column).sqlType();
+    }
+
+    /**
+     * Describes what a column accepts, as prompt text for an empty editor.
+     *
+     * @param column the column
+     * @return the hint, e.g. "number" or "date, e.g. 2024-03-31"
+     */
+    public String hint(String column) {
+        return switch (kind(column)) {
+            case CAS -> "CAS number, e.g. 64-17-5";
+            case INTEGER -> "whole number";
+            case DECIMAL, FLOAT -> "number";
+            case BOOLEAN -> "yes or no";
+            case DATE_TIME -> "date, e.g. 2024-03-31";
+            case TEXT, OTHER -> "";
+        };
+    }
+
+    private Object apply(String column, Object value) {
+        Column c = column(column);
+        if (value == null) return null;
+        try {
+            return c.converter().convert(value);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidValueException(column, ex.getMessage());
+        }
+    }
+
+    private Column column(String column) {
+        Column c = byName.get(column);
+        if (c == null) throw new InvalidValueException(column, "no such column in \"" + table + "\"");
+        return c;
+    }
+
+    /**
+     * Picks the conversion for a column from its type name, as reported by UCanAccess.
+     */
+    private static Column compile(ColumnData c) {
+        String type = c.getType() == null ? "" : c.getType().toUpperCase(Locale.ROOT);
+        int size = c.getSize();
+        return switch (type) {
+            case "VARCHAR", "CHAR", "TEXT", "NVARCHAR", "LONGCHAR", "MEMO" ->
+                    c.getName().toLowerCase(Locale.ROOT).startsWith("cas")
+                            ? new Column(Kind.CAS, Types.VARCHAR, v -> checkCas(text(v, size)))
+                            : new Column(Kind.TEXT, Types.VARCHAR, v -> text(v, size));
+            case "INTEGER", "INT", "LONG", "COUNTER", "AUTOINCREMENT" ->
+                    new Column(Kind.INTEGER, Types.INTEGER, v -> toInt(whole(v, Integer.MIN_VALUE, Integer.MAX_VALUE)));
+            case "SMALLINT", "SHORT" ->
+                    new Column(Kind.INTEGER, Types.SMALLINT, v -> toInt(whole(v, Short.MIN_VALUE, Short.MAX_VALUE)));
+            case "TINYINT", "BYTE" ->
+                    new Column(Kind.INTEGER, Types.TINYINT, v -> toInt(whole(v, 0, 255)));
+            case "BIGINT" ->
+                    new Column(Kind.INTEGER, Types.BIGINT, v -> whole(v, Long.MIN_VALUE, Long.MAX_VALUE));
+            case "DOUBLE", "FLOAT", "REAL", "SINGLE" ->
+                    new Column(Kind.FLOAT, Types.DOUBLE, RowSchema::floating);
+            case "DECIMAL", "NUMERIC", "CURRENCY", "MONEY" ->
+                    new Column(Kind.DECIMAL, Types.DECIMAL, RowSchema::decimal);
+            case "BOOLEAN", "BIT", "YESNO" ->
+                    new Column(Kind.BOOLEAN, Types.BOOLEAN, RowSchema::bool);
+            case "TIMESTAMP", "DATETIME", "DATE", "TIME" ->
+                    new Column(Kind.DATE_TIME, Types.TIMESTAMP, RowSchema::timestamp);
+            default -> new Column(Kind.OTHER, Types.VARCHAR, v -> v);
+        };
+    }
+
+    private static String text(Object value, int size) {
+        String s = value.toString();
+        if (size > 0 && s.length() > size) {
+            throw new IllegalArgumentException("is " + s.length() + " characters long; at most " + size + " fit");
+        }
+        return s;
+    }
+
+    /** Blank text, which typed columns store as null. */
+    private static boolean blank(Object value) {
+        return value instanceof String s && s.isBlank();
+    }
+
+    private static Integer toInt(Long value) {
+        return value == null ? null : value.intValue();
+    }
+
+    private static Long whole(Object value, long min, long max) {
+        if (blank(value)) return null;
+        long n;
+        if (value instanceof Number number) {
+            double d = number.doubleValue();
+            if (!(number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte)
+                    && d != Math.rint(d)) {
+                throw new IllegalArgumentException("must be a whole number, not " + number);
+            }
+            n = number instanceof Long l ? l : (long) d;
+        } else {
+            String s = value.toString().trim();
+            try {
+                n = Long.parseLong(s.startsWith("+") ? s.substring(1) : s);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("must be a whole number, not \"" + s + "\"");
+            }
+        }
+        if (n < min || n > max) throw new IllegalArgumentException("must be between " + min + " and " + max);
+        return n;
+    }
+
+    private static Double floating(Object value) {
+        if (blank(value)) return null;
+        double d;
+        if (value instanceof Number number) {
+            d = number.doubleValue();
+        } else {
+            d = Double.parseDouble(plainNumber(value.toString().trim()));
+        }
+        if (Double.isNaN(d) || Double.isInfinite(d)) throw new IllegalArgumentException("must be a finite number");
+        return d;
+    }
+
+    private static BigDecimal decimal(Object value) {
+        if (blank(value)) return null;
+        if (value instanceof BigDecimal b) return b;
+        if (value instanceof Long || value instanceof Integer) return BigDecimal.valueOf(((Number) value).longValue());
+        if (value instanceof Number number) return BigDecimal.valueOf(floating(number));
+        return new BigDecimal(plainNumber(value.toString().trim()));
+    }
+
+    /**
+     * Accepts decimal notation with an optional sign and exponent only; {@link Double#parseDouble} would also
+     * take "NaN", hexadecimal and a trailing "d".
+     */
+    private static String plainNumber(String s) {
+        boolean valid = !s.isEmpty();
+        for (int i = 0; i < s.length() && valid; i++) {
+            char c = s.charAt(i);
+            valid = (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '+' || c == 'e' || c == 'E';
+        }
+        try {
+            if (!valid) throw new NumberFormatException();
+            new BigDecimal(s);
+            return s;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("must be a number, not \"" + s + "\"");
+        }
+    }
+
+    private static Boolean bool(Object value) {
+        if (value instanceof Boolean b) return b;
+        if (value instanceof Number n) return n.doubleValue() != 0;
+        String s = value.toString().trim().toLowerCase(Locale.ROOT);
+        return switch (s) {
+            case "" -> null;
+            case "true", "yes", "y", "x", "1", "-1", "on" -> Boolean.TRUE;
+            case "false", "no", "n", "0", "off" -> Boolean.FALSE;
+            default -> throw new IllegalArgumentException("must be yes or no, not \"" + value + "\"");
+        };
+    }
+
+    private static Timestamp timestamp(Object value) {
+        if (value instanceof Timestamp t) return t;
+        if (value instanceof java.util.Date d) return new Timestamp(d.getTime());
+        if (value instanceof LocalDateTime t) return Timestamp.valueOf(t);
+        if (value instanceof LocalDate d) return Timestamp.valueOf(d.atStartOfDay());
+        if (blank(value)) return null;
+        String s = value.toString().trim();
+        for (DateTimeFormatter format : DATE_TIMES) {
+            try {
+                TemporalAccessor parsed = format.parseBest(s, LocalDateTime::from, LocalDate::from);
+                return parsed instanceof LocalDateTime t ? Timestamp.valueOf(t) : Timestamp.valueOf(((LocalDate) parsed).atStartOfDay());
+            } catch (DateTimeParseException ex) {
+                // try the next format
+            }
+        }
+        throw new IllegalArgumentException("must be a date such as 2024-03-31 or 3/31/2024, not \"" + s + "\"");
+    }
+
+    /**
+     * Checks every CAS number in a CAS column's text: each run of digits and hyphens must be a well-formed
+     * number with the right check digit. Other text, such as "n/a" or "(95%)", is left alone.
+     */
+    private static String checkCas(String s) {
+        int n = s.length();
+        int i = 0;
+        while (i < n) {
+            if (!isCasChar(s.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < n && isCasChar(s.charAt(i))) i++;
+            int from = start, to = i;
+            while (from < to && s.charAt(from) == '-') from++;
+            while (to > from && s.charAt(to - 1) == '-') to--;
+            if (from < to && s.indexOf('-', from) >= 0 && s.indexOf('-', from) < to) checkCasNumber(s.substring(from, to));
+        }
+        return s;
+    }
+
+    private static boolean isCasChar(char c) {
+        return (c >= '0' && c <= '9') || c == '-';
+    }
+
+    /** Validates one "digits-digits-digit" run: 2 to 7 digits, 2 digits, then the check digit. */
+    private static void checkCasNumber(String cas) {
+        int first = cas.indexOf('-');
+        int second = cas.indexOf('-', first + 1);
+        if (first < 2 || first > 7 || second != first + 3 || cas.length() != second + 2) {
+            throw new IllegalArgumentException("\"" + cas + "\" is not a CAS number such as 64-17-5");
+        }
+        String digits = cas.substring(0, first) + cas.substring(first + 1, second);
+        int sum = 0;
+        for (int k = 0; k < digits.length(); k++) {
+            sum += (digits.length() - k) * (digits.charAt(k) - '0');
+        }
+        int check = cas.charAt(second + 1) - '0';
+        if (sum % 10 != check) {
+            throw new IllegalArgumentException("CAS number " + cas + " has the wrong check digit; expected "
+                    + cas.substring(0, second + 1) + sum % 10);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory substring index over a {@link ResultStore} for search-as-you-type.
+ * Every row's searched values are lower-cased and joined into one key once per load, so a keystroke costs
+ * one {@code contains} per candidate row instead of lower-casing every cell again.
+ * When a query extends the previous one, only the previous matches are re-checked.
+ *
+ * @author Jordan A.
+ */
+public class SearchIndex {
+    /// Separates cell values inside a key so a query cannot match across two cells.
+    private static final char SEPARATOR = '\u0001';
+
+    private final ResultStore store;
+
+    /// Store columns whose values are searched.
+    private final int[] searched;
+
+    /// Lower-cased, joined values per row, indexed like the store; may have spare capacity at the end.
+    private String[] keys;
+
+    /// Number of rows indexed, i.e. the used part of {@link #keys}.
+    private int count;
+
+    /// Query answered by {@link #lastResult}, or null if nothing is cached.
+    private String lastQuery;
+
+    /// Store indices that matched {@link #lastQuery}.
+    private int[] lastResult;
+
+    /**
+     * Builds keys for every row currently in the store, over all of its columns.
+     *
+     * @param store the rows to index
+     */
+    public SearchIndex(ResultStore store) {
+        this(store, null);
+    }
+
+    /**
+     * Builds keys for every row currently in the store over the same columns as
+     * {@link QueryManager#textMatch(String, String)}, so a search finds the same rows whether it is answered
+     * here or in SQL.
+     *
+     * @param store   the rows to index
+     * @param columns the store's columns, in store order; null searches every column
+     */
+    public SearchIndex(ResultStore store, List<ColumnData> columns) {
+        this.store = store;
+        this.searched = IntStream.range(0, store.columnCount())
+                .filter(c -> columns == null || QueryManager.isTextColumn(columns.get(c)))
+                .toArray();
+        this.count = store.size();
+        this.keys = new String[count];
+        for (int r = 0; r < count; r++) {
+            keys[r] = keyOf(r);
+        }
+    }
+
+    /**
+     * Returns the store indices of rows with at least one cell containing {@code query}, ignoring case.
+     *
+     * @param query the text to look for
+     * @return matching store indices in ascending order
+     */
+    public int[] filter(String query) {
+        String q = query.toLowerCase(Locale.ROOT);
+        int[] candidates = null;
+        if (lastQuery != null && q.startsWith(lastQuery)) {
+            if (q.equals(lastQuery)) return lastResult.clone();
+            candidates = lastResult;
+        }
+        int[] hits = new int[candidates == null ? count : candidates.length];
+        int n = 0;
+        if (candidates == null) {
+            for (int r = 0; r < count; r++) {
+                if (keys[r].contains(q)) hits[n++] = r;
+            }
+        } else {
+            for (int r : candidates) {
+                if (keys[r].contains(q)) hits[n++] = r;
+            }
+        }
+        lastQuery = q;
+        lastResult = Arrays.copyOf(hits, n);
+        return lastResult.clone();
+    }
+
+    /**
+     * Re-reads one row after it was edited and drops the cached result it may have invalidated.
+     *
+     * @param row the store index of the edited row
+     */
+    public void refresh(int row) {
+        keys[row] = keyOf(row);
+        lastQuery = null;
+    }
+
+    /**
+     * Indexes the rows appended to the store since the index was built or last caught up.
+     * A cached result stays valid: new rows are checked against it and added if they match.
+     */
+    public void catchUp() {
+        int size = store.size();
+        if (size <= count) return;
+        if (size > keys.length) keys = Arrays.copyOf(keys, Math.max(size, keys.length + (keys.length >> 1) + 16));
+        int[] extra = new int[size - count];
+        int n = 0;
+        for (int r = count; r < size; r++) {
+            keys[r] = keyOf(r);
+            if (lastQuery != null && keys[r].contains(lastQuery)) extra[n++] = r;
+        }
+        if (n > 0) {
+            int old = lastResult.length;
+            lastResult = Arrays.copyOf(lastResult, old + n);
+            System.arraycopy(extra, 0, lastResult, old, n);
+        }
+        count = size;
+    }
+
+    private String keyOf(int row) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < searched.length; i++) {
+            if (i > 0) sb.append(SEPARATOR);
+            sb.append(Objects.toString(store.get(row, searched[i]), ""));
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,206 @@
+package model;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Issues and checks session tokens, so a client pays for one BCrypt check at login
+ * and later requests are authenticated with a hash lookup.
+ * <p>
+ * A token is {@code <id>.<expiry>.<username>.<signature>}, signed with HMAC-SHA256. Forged or altered tokens
+ * are rejected by the signature before the store is consulted; valid ones must also still be in the in-memory
+ * store, so they can be revoked. {@link UserManager} revokes all of a user's sessions when their password or
+ * role changes or the account is deleted. Expired sessions are evicted lazily; when the store is full,
+ * the sessions closest to expiry are dropped until it is 90% full.
+ * <p>
+ * Configured with system properties {@code session.ttlMinutes} (default 480), {@code session.maxEntries}
+ * (default 10000) and {@code session.secret}; without a secret, a random key is generated per process.
+ *
+ * @author Jordan A.
+ */
+public class SessionManager {
+    /// Singleton instance of the manager.
+    private static SessionManager instance;
+
+    /// MAC algorithm signing the tokens.
+    private static final String HMAC = "HmacSHA256";
+
+    /**
+     * A logged-in client.
+     *
+     * @param token     the bearer token
+     * @param user      the user the token was issued to
+     * @param expiresAt when the token stops being accepted
+     */
+    public record Session(String token, User user, Instant expiresAt) { }
+
+    private final SecureRandom random = new SecureRandom();
+    private final Duration ttl = Duration.ofMinutes(Long.getLong("session.ttlMinutes", 480L));
+    private final int maxEntries = Integer.getInteger("session.maxEntries", 10_000);
+    private final SecretKeySpec key;
+
+    /// {@link Mac} instances are not thread-safe; one per thread avoids locking on every check.
+    private final ThreadLocal<Mac> macs;
+
+    /// Live sessions by token.
+    private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<>();
+
+    /// Tokens per username, for revoking all of a user's sessions.
+    private final ConcurrentMap<String, Set<String>> byUser = new ConcurrentHashMap<>();
+
+    private SessionManager() {
+        String secret = System.getProperty("session.secret");
+        byte[] keyBytes;
+        if (secret != null) {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        } else {
+            keyBytes = new byte[32];
+            random.nextBytes(keyBytes);
+        }
+        key = new SecretKeySpec(keyBytes, HMAC);
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(HMAC);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * Returns the singleton {@link SessionManager}.
+     *
+     * @return the shared manager
+     */
+    public static synchronized SessionManager getInstance() {
+        if (instance == null) {
+            instance = new SessionManager();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts a session for a user who has just been authenticated with {@link UserManager#verifyLogin}.
+     *
+     * @param user the authenticated user
+     * @return the new session and its token
+     */
+    public Session issue(User user) {
+        byte[] id = new byte[16];
+        random.nextBytes(id);
+        Instant expires = Instant.now().plus(ttl);
+        Base64.Encoder b64 = Base64.getUrlEncoder().withoutPadding();
+        String payload = b64.encodeToString(id) + "." + expires.getEpochSecond() + "."
+                + b64.encodeToString(user.getName().getBytes(StandardCharsets.UTF_8));
+        String token = payload + "." + b64.encodeToString(sign(payload));
+
+        if (sessions.size() >= maxEntries) evict();
+        Session session = new Session(token, user, expires);
+        sessions.put(token, session);
+        byUser.computeIfAbsent(user.getName(), u -> ConcurrentHashMap.newKeySet()).add(token);
+        Metrics.getInstance().increment("session.issued");
+        return session;
+    }
+
+    /**
+     * Looks up the user a token belongs to.
+     *
+     * @param token the bearer token presented by a client
+     * @return the user, or empty if the token is forged, expired or revoked
+     */
+    public Optional<User> resolve(String token) {
+        if (token == null) return Optional.empty();
+        int sig = token.lastIndexOf('.');
+        if (sig < 0) return reject("session.forged");
+        byte[] signature;
+        try {
+            signature = Base64.getUrlDecoder().decode(token.substring(sig + 1));
+        } catch (IllegalArgumentException e) {
+            return reject("session.forged");
+        }
+        if (!MessageDigest.isEqual(signature, sign(token.substring(0, sig)))) return reject("session.forged");
+
+        Session session = sessions.get(token);
+        if (session == null) return reject("session.unknown");
+        if (session.expiresAt().isBefore(Instant.now())) {
+            remove(session);
+            return reject("session.expired");
+        }
+        Metrics.getInstance().increment("session.hits");
+        return Optional.of(session.user());
+    }
+
+    /**
+     * Ends a session; the token is rejected from now on.
+     *
+     * @param token the bearer token
+     */
+    public void revoke(String token) {
+        if (token == null) return;
+        Session session = sessions.get(token);
+        if (session != null) remove(session);
+    }
+
+    /**
+     * Ends every session of a user, e.g. after their password or role changed.
+     *
+     * @param username the user whose tokens are revoked
+     */
+    public void revokeUser(String username) {
+        Set<String> tokens = byUser.remove(username);
+        if (tokens == null) return;
+        tokens.forEach(sessions::remove);
+        Metrics.getInstance().add("session.revoked", tokens.size());
+    }
+
+    private byte[] sign(String payload) {
+        return macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void remove(Session session) {
+        sessions.remove(session.token());
+        Set<String> tokens = byUser.get(session.user().getName());
+        if (tokens != null) tokens.remove(session.token());
+    }
+
+    /**
+     * Drops expired sessions; if the store is still too full, drops the sessions closest to expiry.
+     */
+    private synchronized void evict() {
+        Instant now = Instant.now();
+        sessions.values().removeIf(s -> {
+            if (!s.expiresAt().isBefore(now)) return false;
+            Set<String> tokens = byUser.get(s.user().getName());
+            if (tokens != null) tokens.remove(s.token());
+            return true;
+        });
+        int excess = sessions.size() - maxEntries * 9 / 10;   // leave headroom so the next logins don't sweep again
+        if (excess > 0) {
+            sessions.values().stream()
+                    .sorted(Comparator.comparing(Session::expiresAt))
+                    .limit(excess)
+                    .toList()
+                    .forEach(this::remove);
+        }
+        Metrics.getInstance().increment("session.evictions");
+    }
+
+    private static Optional<User> reject(String counter) {
+        Metrics.getInstance().increment(counter);
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,179 @@
+package model;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Asynchronous log of statements slower than a configurable threshold.
+ * {@link QueryManager} offers every statement; only slow ones are queued, and a single daemon thread
+ * captures the HSQLDB execution plan (for SELECTs) and appends the entry to a size-rotated file.
+ * The query thread never waits on disk or on the plan: when the queue is full the entry is dropped and counted.
+ * <p>
+ * Configured with system properties {@code slowQuery.thresholdMs} (default 500)
+ * and {@code slowQuery.file} (default {@code logs/slow-query.log}).
+ *
+ * @author Jordan A.
+ */
+public class SlowQueryLog {
+    /// Singleton instance of the log.
+    private static SlowQueryLog instance;
+
+    /// Log file is rotated once it grows past this size.
+    private static final long MAX_FILE_BYTES = 5L * 1024 * 1024;
+
+    /// Number of rotated files kept next to the live one (slow-query.log.1 … .3).
+    private static final int MAX_BACKUPS = 3;
+
+    /// Plan lines worth keeping; HSQLDB prints a full expression tree otherwise.
+    private static final String PLAN_KEYWORDS = "(?i).*(table=|access=|index=|cardinality=|join type=).*";
+
+    /**
+     * One slow statement waiting to be written. Only parameter shapes are kept, never values.
+     */
+    private record Entry(Instant at, String table, String sql, String paramShapes, int rows, double elapsedMs) { }
+
+    /// Statements slower than this many nanoseconds are logged.
+    private final long thresholdNanos;
+
+    /// Destination file; rotated copies get a numeric suffix.
+    private final Path file;
+
+    /// Hand-off between query threads and the writer thread.
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(1024);
+
+    private SlowQueryLog(long thresholdMs, Path file) {
+        this.thresholdNanos = thresholdMs * 1_000_000L;
+        this.file = file;
+        Thread writer = new Thread(this::drain, "slow-query-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Returns the singleton {@link SlowQueryLog}, creating it and its writer thread if necessary.
+     *
+     * @return the shared slow-query log
+     */
+    public static synchronized SlowQueryLog getInstance() {
+        if (instance == null) {
+            long threshold = Long.getLong("slowQuery.thresholdMs", 500L);
+            Path path = Path.of(System.getProperty("slowQuery.file", "logs/slow-query.log"));
+            instance = new SlowQueryLog(threshold, path);
+        }
+        return instance;
+    }
+
+    /**
+     * Queues the statement for logging if it exceeded the threshold; otherwise returns immediately.
+     *
+     * @param table  the table the statement targeted
+     * @param sql    the SQL text as sent to the driver
+     * @param params the bound parameter values, in order
+     * @param rows   rows returned or affected
+     * @param nanos  how long the statement took
+     */
+    public void offer(String table, String sql, List<?> params, int rows, long nanos) {
+        if (nanos < thresholdNanos) return;
+        Entry entry = new Entry(Instant.now(), table, sql, shapesOf(params), rows, nanos / 1e6);
+        if (!queue.offer(entry)) {
+            Metrics.getInstance().increment("slowQuery.dropped");
+        }
+    }
+
+    /**
+     * Describes parameters by type and length only, so no inventory values end up in the log.
+     */
+    private static String shapesOf(List<?> params) {
+        return params.stream()
+                .map(p -> p == null ? "null"
+                        : p instanceof CharSequence cs ? "String(" + cs.length() + ")"
+                        : p.getClass().getSimpleName())
+                .collect(Collectors.joining(", ", "[", "]"));
+    }
+
+    /**
+     * Writer loop: takes entries, adds the plan and appends them until the JVM exits.
+     */
+    private void drain() {
+        while (true) {
+            try {
+                Entry e = queue.take();
+                write(format(e, explain(e.sql())));
+                Metrics.getInstance().increment("slowQuery.logged");
+            } catch (InterruptedException ex) {
+                return;
+            } catch (RuntimeException ex) {
+                Metrics.getInstance().increment("slowQuery.errors");
+            }
+        }
+    }
+
+    /**
+     * Asks HSQLDB, underneath UCanAccess, for the plan of a SELECT. Placeholders need no binding for EXPLAIN.
+     */
+    private String explain(String sql) {
+        if (!sql.trim().toUpperCase(Locale.ROOT).startsWith("SELECT")) return "n/a";
+        Connection connection = ConnectionManager.getInstance().getConnection();
+        try (PreparedStatement ps = connection.prepareStatement("EXPLAIN PLAN FOR " + sql);
+             ResultSet rs = ps.executeQuery()) {
+            StringBuilder plan = new StringBuilder();
+            while (rs.next()) {
+                String line = rs.getString(1);
+                if (line != null && line.matches(PLAN_KEYWORDS)) {
+                    plan.append("\n    ").append(line.trim());
+                }
+            }
+            return plan.length() == 0 ? "(empty)" : plan.toString();
+        } catch (SQLException ex) {
+            return "unavailable (" + ex.getMessage() + ")";
+        }
+    }
+
+    private static String format(Entry e, String plan) {
+        return String.format(Locale.ROOT, "%s %.1f ms table=%s rows=%d params=%s%n  sql: %s%n  plan: %s%n",
+                e.at(), e.elapsedMs(), e.table(), e.rows(), e.paramShapes(), e.sql(), plan);
+    }
+
+    /**
+     * Appends one entry, rotating the file first if it is over {@link #MAX_FILE_BYTES}.
+     */
+    private void write(String text) {
+        try {
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            if (Files.exists(file) && Files.size(file) > MAX_FILE_BYTES) rotate();
+            try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                w.write(text);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Writing slow-query log failed", ex);
+        }
+    }
+
+    private void rotate() throws IOException {
+        Files.deleteIfExists(backup(MAX_BACKUPS));
+        for (int i = MAX_BACKUPS - 1; i >= 1; i--) {
+            if (Files.exists(backup(i))) Files.move(backup(i), backup(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(file, backup(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path backup(int n) {
+        return file.resolveSibling(file.getFileName() + "." + n);
+    }
+}
@@ -0,0 +1,31 @@
+package model;
+
+/**
+ * Thrown by {@link QueryManager#updateRow(String, java.util.Map, Object, java.util.Map)} when the row no longer holds the
+ * values the edit was based on, i.e. another workstation changed or deleted it in the meantime.
+ *
+ * @author Jordan A.
+ */
+public class StaleRowException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /// Table of the conflicting row.
+    private final String table;
+
+    /// Primary-key value of the conflicting row.
+    private final Object key;
+
+    public StaleRowException(String table, Object key) {
+        super("Row " + key + " of \"" + table + "\" was changed by someone else; reload it and try again");
+        this.table = table;
+        this.key = key;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public Object getKey() {
+        return key;
+    }
+}
@@ -0,0 +1,343 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Exports the rows of a {@link Query}, or the hits of a {@link GlobalSearch}, to CSV or XLSX.
+ * Rows are streamed from a database cursor straight into the file, one at a time,
+ * so memory use does not grow with the number of rows exported.
+ * <p>
+ * XLSX files are written directly as SpreadsheetML inside a zip, without a spreadsheet library;
+ * a sheet holds at most {@value #MAX_SHEET_ROWS} data rows and further rows continue on the next sheet.
+ *
+ * @author Jordan A.
+ */
+public class TableExporter {
+    /// Rows fetched from the driver per round trip.
+    private static final int FETCH_SIZE = 1000;
+
+    /// Progress is reported every this many rows.
+    private static final int PROGRESS_EVERY = 500;
+
+    /// Excel's row limit per sheet, minus the header row.
+    static final int MAX_SHEET_ROWS = 1_048_575;
+
+    /**
+     * Supported file formats.
+     */
+    public enum Format {
+        CSV("csv"), XLSX("xlsx");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Picks the format from a file name's extension, defaulting to CSV.
+         *
+         * @param file the target file
+         * @return the matching format
+         */
+        public static Format of(Path file) {
+            return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".xlsx") ? XLSX : CSV;
+        }
+    }
+
+    private final QueryManager queries = new QueryManager();
+    private final MetadataService metadata = new MetadataService();
+
+    /**
+     * Feeds rows to a writer, one at a time, until it returns false.
+     */
+    @FunctionalInterface
+    private interface RowFeed {
+        void feed(QueryManager.RowSink sink);
+    }
+
+    /**
+     * Writes every row of the query to a file.
+     *
+     * @param query     the rows to export, with their order; limit and offset are honoured
+     * @param target    the file to write; replaced if it exists
+     * @param format    CSV or XLSX
+     * @param progress  receives the number of rows written so far, every few hundred rows and at the end
+     * @param cancelled polled between rows; returning true stops the export, leaving a partial file
+     * @return the number of rows written
+     * @throws AccessDeniedException if the current user may not export the table
+     */
+    public long export(Query query, Path target, Format format, LongConsumer progress, BooleanSupplier cancelled) {
+        AccessControl.getInstance().authorizeCurrent(AccessControl.Action.EXPORT, query.getTable());
+        List<ColumnData> columns = metadata.getColumns(query.getTable());
+        List<String> header = columns.stream().map(ColumnData::getName).toList();
+        boolean[] numeric = new boolean[columns.size()];
+        for (int c = 0; c < numeric.length; c++) numeric[c] = isNumeric(columns.get(c));
+        return write(query.getTable(), header, numeric, sink -> queries.streamRows(query, FETCH_SIZE, sink),
+                target, format, progress, cancelled);
+    }
+
+    /**
+     * Writes the hits of a search across tables to a file, one row per hit: the hit's table, then its
+     * values under the union of the tables' column names, in the order they first appear.
+     *
+     * @param hits      the hits, in the order to write them
+     * @param target    the file to write; replaced if it exists
+     * @param format    CSV or XLSX
+     * @param progress  receives the number of rows written so far, every few hundred rows and at the end
+     * @param cancelled polled between rows; returning true stops the export, leaving a partial file
+     * @return the number of rows written
+     * @throws AccessDeniedException if the current user may not export one of the hits' tables
+     */
+    public long exportHits(List<GlobalSearch.Hit> hits, Path target, Format format,
+                           LongConsumer progress, BooleanSupplier cancelled) {
+        Map<String, Integer> positions = new LinkedHashMap<>();
+        positions.put("Table", 0);
+        Set<String> numericNames = new HashSet<>();
+        for (String table : hits.stream().map(GlobalSearch.Hit::table).distinct().toList()) {
+            AccessControl.getInstance().authorizeCurrent(AccessControl.Action.EXPORT, table);
+            for (ColumnData c : metadata.getColumns(table)) {
+                positions.putIfAbsent(c.getName(), positions.size());
+                if (isNumeric(c)) numericNames.add(c.getName());
+            }
+        }
+        List<String> header = List.copyOf(positions.keySet());
+        boolean[] numeric = new boolean[header.size()];
+        for (int c = 0; c < numeric.length; c++) numeric[c] = numericNames.contains(header.get(c));
+
+        return write("Search results", header, numeric, sink -> {
+            String[] row = new String[header.size()];
+            try {
+                for (GlobalSearch.Hit hit : hits) {
+                    Arrays.fill(row, null);
+                    row[0] = hit.table();
+                    hit.row().forEach((column, value) -> {
+                        Integer at = positions.get(column);
+                        if (at != null && value != null) row[at] = value.toString();
+                    });
+                    if (!sink.accept(row)) break;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, target, format, progress, cancelled);
+    }
+
+    private long write(String name, List<String> header, boolean[] numeric, RowFeed rows, Path target, Format format,
+                       LongConsumer progress, BooleanSupplier cancelled) {
+        long start = System.nanoTime();
+        long written;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+            written = format == Format.XLSX
+                    ? writeXlsx(name, header, numeric, rows, out, progress, cancelled)
+                    : writeCsv(header, rows, out, progress, cancelled);
+        } catch (IOException | UncheckedIOException e) {
+            Metrics.getInstance().increment("export.errors");
+            throw new RuntimeException("Export to " + target + " failed", e);
+        }
+        Metrics.getInstance().timer("export." + format.getExtension()).recordSince(start);
+        Metrics.getInstance().add("export.rows", written);
+        progress.accept(written);
+        return written;
+    }
+
+    private static boolean isNumeric(ColumnData column) {
+        return column.getType().toUpperCase(Locale.ROOT).matches(".*(INT|DOUBLE|DECIMAL|NUMERIC|FLOAT|REAL|COUNTER).*");
+    }
+
+    private long writeCsv(List<String> header, RowFeed rows, OutputStream out,
+                          LongConsumer progress, BooleanSupplier cancelled) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        w.write('\uFEFF');     // lets Excel detect UTF-8
+        for (int c = 0; c < header.size(); c++) {
+            if (c > 0) w.write(',');
+            w.write(csvField(header.get(c)));
+        }
+        w.write("\r\n");
+
+        long[] written = {0};
+        rows.feed(row -> {
+            if (cancelled.getAsBoolean()) return false;
+            for (int c = 0; c < row.length; c++) {
+                if (c > 0) w.write(',');
+                if (row[c] != null) w.write(csvField(row[c]));
+            }
+            w.write("\r\n");
+            if (++written[0] % PROGRESS_EVERY == 0) progress.accept(written[0]);
+            return true;
+        });
+        w.flush();
+        return written[0];
+    }
+
+    /** Quotes a field when it contains a delimiter, quote or line break (RFC 4180). */
+    static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private long writeXlsx(String name, List<String> header, boolean[] numeric, RowFeed rows, OutputStream out,
+                           LongConsumer progress, BooleanSupplier cancelled) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        Writer w = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+        int[] sheets = {1};
+        long[] written = {0};
+        long[] onSheet = {0};
+
+        startSheet(zip, w, 1, header);
+        rows.feed(row -> {
+            if (cancelled.getAsBoolean()) return false;
+            if (onSheet[0] == MAX_SHEET_ROWS) {
+                endSheet(w);
+                startSheet(zip, w, ++sheets[0], header);
+                onSheet[0] = 0;
+            }
+            w.write("<row>");
+            for (int c = 0; c < row.length; c++) {
+                String v = row[c];
+                if (v == null) {
+                    w.write("<c/>");
+                } else if (numeric[c] && isNumber(v)) {
+                    w.write("<c><v>");
+                    w.write(v);
+                    w.write("</v></c>");
+                } else {
+                    w.write("<c t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+                    w.write(xmlEscape(v));
+                    w.write("</t></is></c>");
+                }
+            }
+            w.write("</row>");
+            onSheet[0]++;
+            if (++written[0] % PROGRESS_EVERY == 0) progress.accept(written[0]);
+            return true;
+        });
+        endSheet(w);
+
+        writeEntry(zip, w, "[Content_Types].xml", contentTypes(sheets[0]));
+        writeEntry(zip, w, "_rels/.rels",
+                "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+                + "</Relationships>");
+        writeEntry(zip, w, "xl/workbook.xml", workbook(name, sheets[0]));
+        writeEntry(zip, w, "xl/_rels/workbook.xml.rels", workbookRels(sheets[0]));
+        zip.finish();
+        return written[0];
+    }
+
+    private static void startSheet(ZipOutputStream zip, Writer w, int number, List<String> header) throws IOException {
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + number + ".xml"));
+        w.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\"><sheetData><row>");
+        for (String column : header) {
+            w.write("<c t=\"inlineStr\"><is><t>");
+            w.write(xmlEscape(column));
+            w.write("</t></is></c>");
+        }
+        w.write("</row>");
+    }
+
+    private static void endSheet(Writer w) throws IOException {
+        w.write("</sheetData></worksheet>");
+        w.flush();
+    }
+
+    private static void writeEntry(ZipOutputStream zip, Writer w, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        w.write(content);
+        w.flush();
+    }
+
+    private static String contentTypes(int sheets) {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+                + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+                + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+                + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>");
+        for (int i = 1; i <= sheets; i++) {
+            sb.append("<Override PartName=\"/xl/worksheets/sheet").append(i)
+              .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        }
+        return sb.append("</Types>").toString();
+    }
+
+    private static String workbook(String table, int sheets) {
+        // sheet names: at most 31 characters, none of []:*?/\
+        String base = table.replaceAll("[\\[\\]:*?/\\\\]", "_");
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\""
+                + " xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\"><sheets>");
+        for (int i = 1; i <= sheets; i++) {
+            String suffix = sheets == 1 ? "" : " " + i;
+            String name = base.substring(0, Math.min(base.length(), 31 - suffix.length())) + suffix;
+            sb.append("<sheet name=\"").append(xmlEscape(name)).append("\" sheetId=\"").append(i)
+              .append("\" r:id=\"rId").append(i).append("\"/>");
+        }
+        return sb.append("</sheets></workbook>").toString();
+    }
+
+    private static String workbookRels(int sheets) {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>"
+                + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+        for (int i = 1; i <= sheets; i++) {
+            sb.append("<Relationship Id=\"rId").append(i)
+              .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet")
+              .append(i).append(".xml\"/>");
+        }
+        return sb.append("</Relationships>").toString();
+    }
+
+    private static boolean isNumber(String v) {
+        try {
+            Double.parseDouble(v);
+            return !v.isBlank() && Character.isDigit(v.charAt(v.length() - 1));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /** Escapes XML specials and drops control characters XML 1.0 does not allow. */
+    static String xmlEscape(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 16);
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+                case '&' -> sb.append("&amp;");
+                case '<' -> sb.append("&lt;");
+                case '>' -> sb.append("&gt;");
+                case '"' -> sb.append("&quot;");
+                default -> {
+                    if (ch >= 0x20 || ch == '\t' || ch == '\n' || ch == '\r') sb.append(ch);
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
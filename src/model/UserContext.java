@@ -0,0 +1,58 @@
+package model;
+
+import java.util.function.Supplier;
+
+/**
+ * The user on whose behalf model code is running: the workstation's logged-in user, or, on a server
+ * thread, the client whose request is being handled. Authorization checks and the audit trail read it.
+ * No user means trusted application code, such as bootstrap or command-line maintenance.
+ *
+ * @author Jordan A.
+ */
+public final class UserContext {
+    /// The logged-in user of this workstation.
+    private static volatile User current;
+
+    /// The user a server thread is currently acting for; overrides {@link #current}.
+    private static final ThreadLocal<User> request = new ThreadLocal<>();
+
+    private UserContext() { }
+
+    /**
+     * Sets the logged-in user after login; null after logout.
+     *
+     * @param user the logged-in user
+     */
+    public static void set(User user) {
+        current = user;
+    }
+
+    /**
+     * Returns the user code on this thread runs for.
+     *
+     * @return the user, or null for application code running without one
+     */
+    public static User get() {
+        User u = request.get();
+        return u != null ? u : current;
+    }
+
+    /**
+     * Runs an action on behalf of a user, e.g. while a server thread handles one client's request.
+     *
+     * @param user   the user the action is performed for
+     * @param action the action
+     * @param <T>    the action's result type
+     * @return the action's result
+     */
+    public static <T> T runAs(User user, Supplier<T> action) {
+        User previous = request.get();
+        request.set(user);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) request.remove();
+            else request.set(previous);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package model;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Creates many user accounts at once from a CSV file with the columns {@code username,password[,role]},
+ * e.g. a semester's students. A header line naming the columns is optional; a missing role means "user".
+ * <p>
+ * The file is read line by line. Names already in the file or in the database are reported and skipped;
+ * the database is asked about all names in one query per {@value #LOOKUP_CHUNK}. The BCrypt hashes, which
+ * are deliberately slow, are computed on all cores in a fork-join pool, and the accounts are then inserted
+ * in a single batch and transaction, so an import either creates every new account or none.
+ *
+ * @author Jordan A.
+ */
+public class UserImporter {
+    /// Role for rows without one.
+    public static final String DEFAULT_ROLE = "user";
+
+    /// Names checked against the database per query; keeps the IN list within what the driver handles well.
+    private static final int LOOKUP_CHUNK = 1000;
+
+    /**
+     * Outcome of an import.
+     *
+     * @param created    accounts created
+     * @param duplicates names skipped because they already exist or repeat within the file
+     * @param rejected   lines skipped as malformed, with the reason
+     * @param hashMillis time spent hashing passwords
+     * @param totalMillis time for the whole import
+     */
+    public record Result(int created, List<String> duplicates, List<String> rejected,
+                         long hashMillis, long totalMillis) {
+        /** Accounts created per second over the whole import. */
+        public double perSecond() {
+            return totalMillis == 0 ? created : created * 1000.0 / totalMillis;
+        }
+
+        /** Summarizes the import for the administrator. */
+        public String format() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("Created %d account(s) in %.1f s (%.0f/s, hashing %.1f s).%n",
+                    created, totalMillis / 1000.0, perSecond(), hashMillis / 1000.0));
+            if (!duplicates.isEmpty()) {
+                sb.append(String.format("Skipped %d existing or repeated name(s): %s%n",
+                        duplicates.size(), String.join(", ", duplicates)));
+            }
+            if (!rejected.isEmpty()) {
+                sb.append(String.format("Skipped %d malformed line(s):%n", rejected.size()));
+                rejected.forEach(r -> sb.append("  ").append(r).append(System.lineSeparator()));
+            }
+            return sb.toString();
+        }
+    }
+
+    /// One account to create.
+    private record Entry(String username, String password, String role) { }
+
+    private final Connection connection = ConnectionManager.getInstance().getConnection();
+    private final Metrics metrics = Metrics.getInstance();
+
+    /**
+     * Imports the accounts in a CSV file.
+     *
+     * @param csv the CSV content; not closed
+     * @return counts, skipped names and timings
+     * @throws AccessDeniedException if the current user may not manage users
+     * @throws RuntimeException if reading fails or the database rejects the batch; nothing is created then
+     */
+    public Result importCsv(Reader csv) {
+        AccessControl access = AccessControl.getInstance();
+        access.authorizeCurrent(AccessControl.Action.MANAGE_USERS, null);
+        long start = System.nanoTime();
+
+        Set<String> roles = new HashSet<>(access.roles());
+        List<Entry> entries = new ArrayList<>();
+        List<String> duplicates = new ArrayList<>();
+        List<String> rejected = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        try {
+            BufferedReader in = csv instanceof BufferedReader b ? b : new BufferedReader(csv);
+            String line;
+            int lineNo = 0;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) continue;
+                List<String> fields = parseLine(line);
+                String username = fields.get(0).trim();
+                if (lineNo == 1 && username.equalsIgnoreCase("username")) continue;
+                String password = fields.size() > 1 ? fields.get(1) : "";
+                String role = fields.size() > 2 && !fields.get(2).isBlank()
+                        ? fields.get(2).trim().toLowerCase(Locale.ROOT) : DEFAULT_ROLE;
+                if (username.isEmpty() || password.isBlank()) {
+                    rejected.add("line " + lineNo + ": username and password are required");
+                } else if (!roles.contains(role)) {
+                    rejected.add("line " + lineNo + ": unknown role \"" + role + "\"");
+                } else if (!seen.add(username.toLowerCase(Locale.ROOT))) {
+                    duplicates.add(username);
+                } else {
+                    entries.add(new Entry(username, password, role));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Reading the user list failed", e);
+        }
+
+        Set<String> existing = existingNames(entries);
+        if (!existing.isEmpty()) {
+            List<Entry> fresh = new ArrayList<>(entries.size());
+            for (Entry e : entries) {
+                if (existing.contains(e.username().toLowerCase(Locale.ROOT))) duplicates.add(e.username());
+                else fresh.add(e);
+            }
+            entries = fresh;
+        }
+
+        long hashStart = System.nanoTime();
+        List<String> hashes = hashAll(entries);
+        long hashMillis = (System.nanoTime() - hashStart) / 1_000_000;
+
+        insertAll(entries, hashes);
+        for (Entry e : entries) {
+            Map<String, Object> created = new LinkedHashMap<>();
+            created.put("username", e.username());
+            created.put("role", e.role());
+            AuditLog.getInstance().record("INSERT", "Users", e.username(), null, created);
+        }
+
+        metrics.add("auth.import.created", entries.size());
+        metrics.timer("auth.import").recordSince(start);
+        return new Result(entries.size(), duplicates, rejected, hashMillis, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Returns which of the names are taken, lower-cased, as Access compares names without regard to case.
+     */
+    private Set<String> existingNames(List<Entry> entries) {
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < entries.size(); from += LOOKUP_CHUNK) {
+            List<Entry> chunk = entries.subList(from, Math.min(entries.size(), from + LOOKUP_CHUNK));
+            String sql = "SELECT username FROM Users WHERE username IN ("
+                    + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    ps.setString(i + 1, chunk.get(i).username());
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) existing.add(rs.getString(1).toLowerCase(Locale.ROOT));
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("Checking existing users failed", e);
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Hashes every password, spreading the work over all cores.
+     */
+    private static List<String> hashAll(List<Entry> entries) {
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            return pool.submit(() -> entries.parallelStream()
+                    .map(e -> BCrypt.hashpw(e.password(), BCrypt.gensalt()))
+                    .toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Hashing passwords was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Hashing passwords failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void insertAll(List<Entry> entries, List<String> hashes) {
+        if (entries.isEmpty()) return;
+        String sql = "INSERT INTO Users(username, password_hash, role) VALUES (?, ?, ?)";
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int i = 0; i < entries.size(); i++) {
+                Entry e = entries.get(i);
+                ps.setString(1, e.username());
+                ps.setString(2, hashes.get(i));
+                ps.setString(3, e.role());
+                ps.addBatch();
+            }
+            ConnectionManager.getInstance().executeBatch(ps);
+        } catch (SQLException e) {
+            throw new RuntimeException("Creating users failed; no account was created", e);
+        }
+    }
+
+    /**
+     * Splits one CSV line into fields, honouring double-quoted fields with doubled quotes inside (RFC 4180).
+     * Quoted line breaks are not supported; user names and passwords do not contain them.
+     */
+    static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
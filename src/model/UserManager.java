@@ -2,7 +2,9 @@ package model;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import org.mindrot.jbcrypt.BCrypt;
 
 /**
@@ -35,7 +37,7 @@ public class UserManager {
                           role TEXT(50))
                         """;
                 try (Statement statement = connection.createStatement()) {
-                    statement.executeUpdate(statementString);
+                    ConnectionManager.getInstance().executeWrite(statement, statementString);
                 }
             }
             boolean exists;
@@ -56,49 +58,110 @@ public class UserManager {
     /// JDBC connection used for user.
     private final Connection connection;
 
+    /// Registry receiving login latencies and outcomes.
+    private final Metrics metrics = Metrics.getInstance();
+
+    /// Name of the users table, as recorded in the audit trail.
+    private static final String USERS_TABLE = "Users";
+
+    /// Stands in for password hashes in the audit trail, which must never contain them.
+    private static final String PASSWORD_CHANGED = "(changed)";
+
+    /**
+     * One page of a user listing.
+     *
+     * @param users  the users on this page, ordered by username
+     * @param total  how many users match the filter in all
+     * @param offset position of the first user on this page within all matches
+     */
+    public record UserPage(List<User> users, int total, int offset) { }
+
     public UserManager() {
         connection = ConnectionManager.getInstance().getConnection();
     }
 
     /**
-     * Verifies the given username and password against stored credentials.
-     * Returns a User record if authentication succeeds, or null if it fails.
+     * Verifies the given username and password against stored credentials, for a login on this workstation.
+     * Returns a User record if authentication succeeds, or null if it fails. Failures are only throttled per
+     * username, so one user's typos never lock out a shared workstation.
      *
      * @param username the username to authenticate
      * @param password the plaintext password to verify
      * @return a User object on success, or null if authentication fails
+     * @throws LoginThrottledException if there were too many failed logins recently
      * @throws RuntimeException if a database access error occurs
      */
     public User verifyLogin(String username, String password) {
+        return verifyLogin(username, password, null);
+    }
+
+    /**
+     * Verifies the given username and password against stored credentials.
+     * Attempts following too many failures for the username or host are refused by the {@link LoginThrottle}
+     * without querying the database or checking the hash.
+     *
+     * @param username the username to authenticate
+     * @param password the plaintext password to verify
+     * @param host     where the attempt comes from, e.g. a client's address, or null for this workstation
+     * @return a User object on success, or null if authentication fails
+     * @throws LoginThrottledException if there were too many failed logins recently
+     * @throws RuntimeException if a database access error occurs
+     */
+    public User verifyLogin(String username, String password, String host) {
+        LoginThrottle throttle = LoginThrottle.getInstance();
+        throttle.check(username, host);
         String statement = "SELECT password_hash, role FROM Users WHERE username=?";
+        LoginEvent event = new LoginEvent();
+        event.begin();
+        long start = System.nanoTime();
         try (PreparedStatement ps = connection.prepareStatement(statement)) {
             ps.setString(1, username);
             try(ResultSet rs = ps.executeQuery()){
                 if (rs.next()) {
+                    event.rows = 1;
                     String hashed = rs.getString("password_hash");
                     String role = rs.getString("role");
 
                     if (BCrypt.checkpw(password,hashed)) {
+                        metrics.increment("auth.login.success");
+                        throttle.succeeded(username);
+                        event.success = true;
                         return new User(username,role);
                     }
                 }
             }
         } catch (SQLException e) {
+            metrics.increment("auth.login.errors");
             throw new RuntimeException("Login verification failed. Try again.", e);
+        } finally {
+            metrics.timer("auth.verifyLogin").recordSince(start);
+            if (event.shouldCommit()) {
+                event.username = username;
+                event.commit();
+            }
         }
+        metrics.increment("auth.login.failure");
+        throttle.failed(username, host);
         return null;
     }
     /**
-     * allows admin to change User role
+     * allows admin to change User role; the user's API sessions are revoked
      * @param username username of the account to change role of
      * @param newRole new role for the account
+     * @throws AccessDeniedException if the current user may not manage users
      */
     public void updateUserRole(String username, String newRole) {
+        AccessControl.getInstance().authorizeCurrent(AccessControl.Action.MANAGE_USERS, null);
+        String oldRole = roleOf(username);
         String sql = "UPDATE Users SET role=? WHERE username=?";
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setString(1, newRole);
             ps.setString(2, username);
-            ps.executeUpdate();
+            if (ConnectionManager.getInstance().executeWrite(ps) > 0) {
+                AuditLog.getInstance().record("UPDATE", USERS_TABLE, username,
+                        roleMap(oldRole), roleMap(newRole));
+                SessionManager.getInstance().revokeUser(username);
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Updating user role failed", e);
         }
@@ -112,8 +175,10 @@ public class UserManager {
      * @param password the plaintext password for the new account
      * @param role     the assigned role (e.g. "admin", "user")
      * @throws RuntimeException if a database access error occurs
+     * @throws AccessDeniedException if the current user may not manage users
      */
     public void createUser(String username, String password, String role) throws RuntimeException {
+        AccessControl.getInstance().authorizeCurrent(AccessControl.Action.MANAGE_USERS, null);
         try {
             createUser(connection, username, password, role);
         } catch (RuntimeException e) {
@@ -141,23 +206,33 @@ public class UserManager {
             ps.setString(1, username);
             ps.setString(2, BCrypt.hashpw(password, BCrypt.gensalt()));
             ps.setString(3, role);
-            ps.executeUpdate();
+            ConnectionManager.getInstance().executeWrite(ps);
+            Map<String, Object> created = new LinkedHashMap<>();
+            created.put("username", username);
+            created.put("role", role);
+            AuditLog.getInstance().record("INSERT", USERS_TABLE, username, null, created);
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
     /**
-     * Deletes the user with the specified username.
+     * Deletes the user with the specified username and revokes their API sessions.
      *
      * @param username the username of the account to remove
      * @throws RuntimeException if a database access error occurs
+     * @throws AccessDeniedException if the current user may not manage users
      */
     public void deleteUser(String username) throws RuntimeException {
+        AccessControl.getInstance().authorizeCurrent(AccessControl.Action.MANAGE_USERS, null);
+        String oldRole = roleOf(username);
         String statement = "DELETE FROM Users WHERE username=?";
         try(PreparedStatement ps = connection.prepareStatement(statement)){
             ps.setString(1,username);
-            ps.executeUpdate();
+            if (ConnectionManager.getInstance().executeWrite(ps) > 0) {
+                AuditLog.getInstance().record("DELETE", USERS_TABLE, username, roleMap(oldRole), null);
+                SessionManager.getInstance().revokeUser(username);
+            }
 
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -185,10 +260,12 @@ public class UserManager {
     /**
      * Lists all users in the database.
      * Returns a list of User objects representing each user.
+     * @throws AccessDeniedException if the current user may not manage users
      * @throws RuntimeException if a database access error occurs
      * @return List of users in database
      */
     public List<User> listUsers() {
+        AccessControl.getInstance().authorizeCurrent(AccessControl.Action.MANAGE_USERS, null);
         List<User> users = new ArrayList<>();
         String sql = "SELECT username, role FROM Users";
         try (Statement stmt = connection.createStatement();
@@ -201,23 +278,113 @@ public class UserManager {
         }
         return users;
     }
+
+    /**
+     * Lists one page of users, ordered by username. Only names and roles are read, never password hashes,
+     * and the filter and paging run in SQL, so the cost depends on the page size rather than the number of users.
+     *
+     * @param usernamePrefix only users whose name starts with this; null or blank for all
+     * @param role           only users with this role; null for all
+     * @param offset         number of matching users to skip
+     * @param limit          maximum number of users to return
+     * @return the page and the total number of matches
+     * @throws AccessDeniedException if the current user may not manage users
+     * @throws RuntimeException if a database access error occurs
+     */
+    public UserPage listUsers(String usernamePrefix, String role, int offset, int limit) {
+        AccessControl.getInstance().authorizeCurrent(AccessControl.Action.MANAGE_USERS, null);
+        Query filter = Query.from(USERS_TABLE);
+        if (usernamePrefix != null && !usernamePrefix.isBlank()) {
+            filter.where(Query.Condition.startsWith("username", usernamePrefix.trim()));
+        }
+        if (role != null) filter.where(Query.Condition.equal("role", role));
+        List<Object> params = new ArrayList<>();
+        String where = filter.whereSql(params);
+        where = where.isEmpty() ? "" : " WHERE " + where;
+        filter.orderBy("username", true).limit(limit).offset(offset);
+
+        long start = System.nanoTime();
+        try {
+            int total;
+            try (PreparedStatement ps = connection.prepareStatement("SELECT COUNT(*) FROM Users" + where)) {
+                bind(ps, params);
+                try (ResultSet rs = ps.executeQuery()) {
+                    total = rs.next() ? rs.getInt(1) : 0;
+                }
+            }
+            List<User> users = new ArrayList<>(Math.min(limit, Math.max(total - offset, 0)));
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "SELECT username, role FROM Users" + where + filter.suffixSql())) {
+                bind(ps, params);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        users.add(new User(rs.getString(1), rs.getString(2)));
+                    }
+                }
+            }
+            metrics.timer("auth.listUsers").recordSince(start);
+            return new UserPage(users, total, offset);
+        } catch (SQLException e) {
+            throw new RuntimeException("Listing users failed", e);
+        }
+    }
+
+    private static void bind(PreparedStatement ps, List<Object> params) throws SQLException {
+        for (int i = 0; i < params.size(); i++) {
+            ps.setObject(i + 1, params.get(i));
+        }
+    }
+
     /**
      * Changes the password for the specified user.
-     * Hashes the new password before storing it in the database.
+     * Hashes the new password before storing it in the database, and revokes the user's API sessions.
      * @param username username of the account to change password of
      * @param newPassword new password for the account
+     * @throws AccessDeniedException if it is someone else's account and the current user may not manage users
      */
     public void changePassword(String username, String newPassword) {
+        User current = UserContext.get();
+        if (current == null || !current.getName().equals(username)) {
+            AccessControl.getInstance().authorizeCurrent(AccessControl.Action.MANAGE_USERS, null);
+        }
         String sql = "UPDATE Users SET password_hash=? WHERE username=?";
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setString(1, BCrypt.hashpw(newPassword, BCrypt.gensalt()));
             ps.setString(2, username);
-            ps.executeUpdate();
+            if (ConnectionManager.getInstance().executeWrite(ps) > 0) {
+                AuditLog.getInstance().record("UPDATE", USERS_TABLE, username, null,
+                        Map.of("password_hash", PASSWORD_CHANGED));
+                SessionManager.getInstance().revokeUser(username);
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Password change failed", e);
         }
     }
 
+    /**
+     * Reads a user's current role, for the audit trail.
+     *
+     * @param username the account to look up
+     * @return the role, or null if there is no such user
+     */
+    private String roleOf(String username) {
+        String sql = "SELECT role FROM Users WHERE username=?";
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, username);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Reading user role failed", e);
+        }
+    }
+
+    private static Map<String, Object> roleMap(String role) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("role", role);
+        return m;
+    }
+
 
 
 }